@@ -5,7 +5,9 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
 import org.semanticweb.owlapi.model.IRI;
@@ -104,6 +106,19 @@ public class AnnotationPropertySet {
 		return obsoleteProps;
 	}
 
+	/**
+	 * @return All preferred name, synonym, definition and obsolete properties
+	 *         of this set.
+	 */
+	public Set<OWLAnnotationProperty> getAllProperties() {
+		Set<OWLAnnotationProperty> allProps = new HashSet<>();
+		allProps.addAll(prefNameProps);
+		allProps.addAll(synonymProps);
+		allProps.addAll(definitionProps);
+		allProps.addAll(obsoleteProps);
+		return allProps;
+	}
+
 	/**
 	 * Assemble all default annotation properties for the information we seek.
 	 * 
@@ -7,6 +7,10 @@ public class BioPortalToolConstants {
 	public static final String PROJECTS_EXT = ".pro.json";
 	public static final String ANALYTICS_EXT = ".ana.json";
 	public static final String CLASSES_EXT = ".cls.jsonlst";
+	public static final String CLASSES_INFO_EXT = ".cls.info.json";
+	public static final String CLASSES_BIN_EXT = ".cls.bin";
+	public static final String CLASSES_PREFIXES_EXT = ".cls.prefixes.json";
+	public static final String CLASSES_CLOSURE_EXT = ".cls.closure.jsonlst";
 	public static final String MAPPING_EXT = ".map.json";
 	public static final String DOWNLOAD_FILENAME = "downloadFileName.txt";
 }
@@ -0,0 +1,127 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLOntology;
+
+/**
+ * <p>
+ * An index of annotation values by subject IRI and annotation property. Only
+ * the properties of an {@link AnnotationPropertySet} are indexed. The index is
+ * built with a single pass over the annotation assertion axioms of each
+ * subject instead of one <tt>EntitySearcher.getAnnotations()</tt> call per
+ * class and property.
+ * </p>
+ * <p>
+ * Just like <tt>EntitySearcher.getAnnotations()</tt>, only the axioms of the
+ * ontology itself are used, not those of its imports closure. The values of
+ * each subject and property are in the order in which
+ * <tt>EntitySearcher.getAnnotations()</tt> returns them: in the order of
+ * <tt>OWLOntology.annotationAssertionAxioms(subject)</tt>, including the
+ * annotations of the axioms themselves and without duplicate annotations.
+ * </p>
+ */
+public class ClassAnnotationIndex {
+
+	private Map<IRI, Map<OWLAnnotationProperty, List<OWLAnnotationValue>>> valuesBySubject = new HashMap<>();
+
+	/**
+	 * Creates an empty index. Values may be added via
+	 * {@link #addValue(IRI, OWLAnnotationProperty, OWLAnnotationValue)}.
+	 */
+	public ClassAnnotationIndex() {
+	}
+
+	/**
+	 * Builds the index for the annotation assertion axioms of <tt>o</tt> that
+	 * use one of the properties in <tt>properties</tt>.
+	 *
+	 * @param o
+	 *            The ontology to index.
+	 * @param properties
+	 *            The annotation properties relevant for name extraction.
+	 */
+	public ClassAnnotationIndex(OWLOntology o, AnnotationPropertySet properties) {
+		Set<OWLAnnotationProperty> relevantProperties = properties.getAllProperties();
+		Set<IRI> subjects = new LinkedHashSet<>();
+		for (Iterator<OWLAnnotationAssertionAxiom> iterator = o.axioms(AxiomType.ANNOTATION_ASSERTION)
+				.iterator(); iterator.hasNext();) {
+			OWLAnnotationAssertionAxiom axiom = iterator.next();
+			if (axiom.getSubject() instanceof IRI)
+				subjects.add((IRI) axiom.getSubject());
+		}
+		Set<OWLAnnotation> subjectAnnotations = new LinkedHashSet<>();
+		List<OWLAnnotation> axiomAnnotations = new ArrayList<>();
+		for (IRI subject : subjects) {
+			subjectAnnotations.clear();
+			for (Iterator<OWLAnnotationAssertionAxiom> iterator = o.annotationAssertionAxioms(subject)
+					.iterator(); iterator.hasNext();) {
+				OWLAnnotationAssertionAxiom axiom = iterator.next();
+				if (!axiom.isAnnotated()) {
+					subjectAnnotations.add(axiom.getAnnotation());
+					continue;
+				}
+				// like EntitySearcher, the annotations of an annotated
+				// axiom count as well and are sorted per axiom
+				axiomAnnotations.clear();
+				axiomAnnotations.add(axiom.getAnnotation());
+				axiom.annotations().filter(a -> !a.equals(axiom.getAnnotation())).forEach(axiomAnnotations::add);
+				Collections.sort(axiomAnnotations);
+				subjectAnnotations.addAll(axiomAnnotations);
+			}
+			for (OWLAnnotation annotation : subjectAnnotations) {
+				if (relevantProperties.contains(annotation.getProperty()))
+					addValue(subject, annotation.getProperty(), annotation.getValue());
+			}
+		}
+	}
+
+	public void addValue(IRI subject, OWLAnnotationProperty property, OWLAnnotationValue value) {
+		Map<OWLAnnotationProperty, List<OWLAnnotationValue>> valuesByProperty = valuesBySubject.get(subject);
+		if (valuesByProperty == null) {
+			valuesByProperty = new HashMap<>(4);
+			valuesBySubject.put(subject, valuesByProperty);
+		}
+		List<OWLAnnotationValue> values = valuesByProperty.get(property);
+		if (values == null) {
+			values = new ArrayList<>(1);
+			valuesByProperty.put(property, values);
+		}
+		values.add(value);
+	}
+
+	/**
+	 * Returns the values of <tt>property</tt> for <tt>subject</tt> or an empty
+	 * list if there are none.
+	 *
+	 * @param subject
+	 *            The annotation subject, e.g. a class IRI.
+	 * @param property
+	 *            The annotation property.
+	 * @return The indexed annotation values.
+	 */
+	public List<OWLAnnotationValue> getValues(IRI subject, OWLAnnotationProperty property) {
+		Map<OWLAnnotationProperty, List<OWLAnnotationValue>> valuesByProperty = valuesBySubject.get(subject);
+		if (valuesByProperty == null)
+			return Collections.emptyList();
+		List<OWLAnnotationValue> values = valuesByProperty.get(property);
+		return values != null ? values : Collections.emptyList();
+	}
+
+	public int size() {
+		return valuesBySubject.size();
+	}
+}
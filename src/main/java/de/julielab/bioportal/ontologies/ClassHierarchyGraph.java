@@ -0,0 +1,284 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import com.google.gson.Gson;
+
+import de.julielab.bioportal.ontologies.data.OntologyClass;
+import de.julielab.bioportal.ontologies.data.OntologyClassClosure;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+
+/**
+ * <p>
+ * The parent relation of the classes of a classes file as a graph over dense
+ * <tt>int</tt> node ids. Each class and each parent IRI is a node. The
+ * parents of the nodes are stored in compressed sparse row form: the parents
+ * of node <tt>n</tt> are <tt>parentNodes[parentOffsets[n]]</tt> to
+ * <tt>parentNodes[parentOffsets[n + 1] - 1]</tt>. Thus, the graph takes
+ * memory proportional to the number of nodes and edges.
+ * </p>
+ * <p>
+ * The depths of all nodes are computed once with a memoized depth-first
+ * traversal. Ancestors are collected by a traversal per node that marks the
+ * visited nodes in a shared array, so no ancestor sets are kept. Parent
+ * cycles, which may occur in asserted hierarchies, are cut at the edge that
+ * closes the cycle for the depth computation. Because of the shared state,
+ * the graph must not be queried by multiple threads.
+ * </p>
+ */
+public class ClassHierarchyGraph {
+
+	private static final int UNVISITED = -1;
+	private static final int IN_PROGRESS = -2;
+
+	private Map<String, Integer> nodes = new HashMap<>();
+	private List<String> ids = new ArrayList<>();
+	/**
+	 * The nodes that are classes of the classes file, as opposed to nodes
+	 * that only occur as parents.
+	 */
+	private BitSet classNodes = new BitSet();
+	/**
+	 * The class nodes in the order of the classes file. Node ids are assigned
+	 * on first occurrence, also as a parent, so they differ from this order.
+	 */
+	private int[] classOrder = new int[1024];
+	private int numClasses;
+	private int[] parentOffsets;
+	private int[] parentNodes;
+	private int[] childCounts;
+	private int[] depths;
+	private int[] marks;
+	private int mark;
+
+	/**
+	 * Builds the graph from the classes of a classes file.
+	 * 
+	 * @param classes
+	 *            The classes, e.g. from a {@link ClassRecordJsonReader} or a
+	 *            {@link ClassRecordBinaryReader}.
+	 */
+	public ClassHierarchyGraph(Iterator<OntologyClass> classes) {
+		int[] edgeSources = new int[1024];
+		int[] edgeTargets = new int[1024];
+		int numEdges = 0;
+		while (classes.hasNext()) {
+			OntologyClass c = classes.next();
+			int source = getOrAddNode(c.id);
+			if (!classNodes.get(source)) {
+				classNodes.set(source);
+				if (numClasses == classOrder.length)
+					classOrder = Arrays.copyOf(classOrder, numClasses * 2);
+				classOrder[numClasses++] = source;
+			}
+			List<String> parents = c.parents != null ? c.parents.parents : null;
+			if (parents == null)
+				continue;
+			for (String parent : parents) {
+				if (numEdges == edgeSources.length) {
+					edgeSources = Arrays.copyOf(edgeSources, numEdges * 2);
+					edgeTargets = Arrays.copyOf(edgeTargets, numEdges * 2);
+				}
+				edgeSources[numEdges] = source;
+				edgeTargets[numEdges] = getOrAddNode(parent);
+				++numEdges;
+			}
+		}
+		int numNodes = ids.size();
+		parentOffsets = new int[numNodes + 1];
+		childCounts = new int[numNodes];
+		for (int i = 0; i < numEdges; i++) {
+			++parentOffsets[edgeSources[i] + 1];
+			++childCounts[edgeTargets[i]];
+		}
+		for (int n = 0; n < numNodes; n++)
+			parentOffsets[n + 1] += parentOffsets[n];
+		parentNodes = new int[numEdges];
+		int[] cursors = Arrays.copyOf(parentOffsets, numNodes);
+		for (int i = 0; i < numEdges; i++)
+			parentNodes[cursors[edgeSources[i]]++] = edgeTargets[i];
+		marks = new int[numNodes];
+	}
+
+	private int getOrAddNode(String id) {
+		Integer node = nodes.get(id);
+		if (node == null) {
+			node = ids.size();
+			nodes.put(id, node);
+			ids.add(id);
+		}
+		return node;
+	}
+
+	/**
+	 * @return The number of nodes, i.e. of classes and parent IRIs.
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	/**
+	 * @return The number of parent edges.
+	 */
+	public int getNumEdges() {
+		return parentNodes.length;
+	}
+
+	/**
+	 * @param id
+	 *            A class or parent IRI.
+	 * @return The node of the IRI or <tt>-1</tt> if it does not occur.
+	 */
+	public int getNode(String id) {
+		Integer node = nodes.get(id);
+		return node != null ? node : -1;
+	}
+
+	public String getId(int node) {
+		return ids.get(node);
+	}
+
+	/**
+	 * @param node
+	 *            A node.
+	 * @return Whether the node is a class of the classes file.
+	 */
+	public boolean isClass(int node) {
+		return classNodes.get(node);
+	}
+
+	/**
+	 * @param node
+	 *            A node.
+	 * @return The number of nodes that have <tt>node</tt> as parent.
+	 */
+	public int getChildCount(int node) {
+		return childCounts[node];
+	}
+
+	/**
+	 * @param node
+	 *            A node.
+	 * @return The number of parent edges on the longest path from
+	 *         <tt>node</tt> to a node without parents.
+	 */
+	public int getDepth(int node) {
+		if (depths == null)
+			computeDepths();
+		return depths[node];
+	}
+
+	private void computeDepths() {
+		int numNodes = ids.size();
+		depths = new int[numNodes];
+		Arrays.fill(depths, UNVISITED);
+		int[] stack = new int[numNodes];
+		// the position in the parents of each node on the stack
+		int[] cursors = new int[numNodes];
+		for (int start = 0; start < numNodes; start++) {
+			if (depths[start] != UNVISITED)
+				continue;
+			int stackSize = 0;
+			stack[stackSize++] = start;
+			depths[start] = IN_PROGRESS;
+			cursors[start] = parentOffsets[start];
+			while (stackSize > 0) {
+				int node = stack[stackSize - 1];
+				if (cursors[node] < parentOffsets[node + 1]) {
+					int parent = parentNodes[cursors[node]++];
+					if (depths[parent] == UNVISITED) {
+						depths[parent] = IN_PROGRESS;
+						cursors[parent] = parentOffsets[parent];
+						stack[stackSize++] = parent;
+					}
+				} else {
+					int depth = 0;
+					for (int i = parentOffsets[node]; i < parentOffsets[node + 1]; i++) {
+						// parents in progress close a cycle
+						int parentDepth = depths[parentNodes[i]];
+						if (parentDepth >= 0)
+							depth = Math.max(depth, parentDepth + 1);
+					}
+					depths[node] = depth;
+					--stackSize;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Passes each transitive parent of <tt>node</tt> exactly once to
+	 * <tt>consumer</tt>, excluding <tt>node</tt> itself.
+	 * 
+	 * @param node
+	 *            A node.
+	 * @param consumer
+	 *            Receives the ancestor nodes.
+	 */
+	public void forEachAncestor(int node, IntConsumer consumer) {
+		if (++mark == Integer.MAX_VALUE) {
+			Arrays.fill(marks, 0);
+			mark = 1;
+		}
+		int[] stack = new int[16];
+		int stackSize = 0;
+		marks[node] = mark;
+		stack[stackSize++] = node;
+		while (stackSize > 0) {
+			int current = stack[--stackSize];
+			for (int i = parentOffsets[current]; i < parentOffsets[current + 1]; i++) {
+				int parent = parentNodes[i];
+				if (marks[parent] == mark)
+					continue;
+				marks[parent] = mark;
+				consumer.accept(parent);
+				if (stackSize == stack.length)
+					stack = Arrays.copyOf(stack, stackSize * 2);
+				stack[stackSize++] = parent;
+			}
+		}
+	}
+
+	/**
+	 * @param node
+	 *            A node.
+	 * @return The IRIs of the transitive parents of <tt>node</tt>.
+	 */
+	public List<String> getAncestors(int node) {
+		List<String> ancestors = new ArrayList<>();
+		forEachAncestor(node, ancestor -> ancestors.add(ids.get(ancestor)));
+		return ancestors;
+	}
+
+	/**
+	 * Writes one {@link OntologyClassClosure} JSON line for each class, in the
+	 * order of the classes file.
+	 * 
+	 * @param w
+	 *            The writer to write to.
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	public void writeClosures(Writer w) throws IOException {
+		Gson gson = BioPortalToolUtils.getGson();
+		OntologyClassClosure closure = new OntologyClassClosure();
+		for (int i = 0; i < numClasses; i++) {
+			int node = classOrder[i];
+			closure.id = ids.get(node);
+			closure.depth = getDepth(node);
+			closure.childCount = childCounts[node];
+			closure.ancestors = getAncestors(node);
+			w.write(gson.toJson(closure));
+			w.write("\n");
+		}
+	}
+}
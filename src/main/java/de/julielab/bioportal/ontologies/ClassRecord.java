@@ -0,0 +1,75 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.julielab.bioportal.ontologies.data.OntologyClass;
+import de.julielab.bioportal.ontologies.data.OntologyClassParents;
+import de.julielab.bioportal.ontologies.data.OntologyClassSynonyms;
+
+/**
+ * A mutable, reusable container for the information extracted for a single
+ * ontology class. In contrast to {@link OntologyClass}, a record can be
+ * {@link #clear() cleared} and filled again for the next class so that no
+ * objects need to be created per class when writing the extraction output.
+ */
+public class ClassRecord {
+	public String id;
+	public String prefLabel;
+	public final List<String> synonyms = new ArrayList<>();
+	public String definition;
+	public final List<String> parents = new ArrayList<>();
+	public boolean obsolete;
+
+	public void clear() {
+		id = null;
+		prefLabel = null;
+		synonyms.clear();
+		definition = null;
+		parents.clear();
+		obsolete = false;
+	}
+
+	/**
+	 * @return A copy of this record that is independent of later changes to
+	 *         this record.
+	 */
+	public ClassRecord copy() {
+		ClassRecord copy = new ClassRecord();
+		copy.id = id;
+		copy.prefLabel = prefLabel;
+		copy.synonyms.addAll(synonyms);
+		copy.definition = definition;
+		copy.parents.addAll(parents);
+		copy.obsolete = obsolete;
+		return copy;
+	}
+
+	/**
+	 * Creates the {@link OntologyClass} corresponding to this record. Its JSON
+	 * serialization equals the output of the {@link ClassRecordJsonWriter} for
+	 * this record.
+	 *
+	 * @return A new <tt>OntologyClass</tt> with the information of this
+	 *         record.
+	 */
+	public OntologyClass toOntologyClass() {
+		OntologyClass ontologyClass = new OntologyClass();
+		ontologyClass.id = id;
+		ontologyClass.prefLabel = prefLabel;
+		if (obsolete)
+			ontologyClass.obsolete = true;
+		if (!synonyms.isEmpty()) {
+			ontologyClass.synonym = new OntologyClassSynonyms();
+			ontologyClass.synonym.synonyms = new ArrayList<>(synonyms);
+		}
+		if (definition != null)
+			ontologyClass.definition = Arrays.asList(definition);
+		if (!parents.isEmpty()) {
+			ontologyClass.parents = new OntologyClassParents();
+			ontologyClass.parents.parents = new ArrayList<>(parents);
+		}
+		return ontologyClass;
+	}
+}
@@ -0,0 +1,183 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import de.julielab.bioportal.ontologies.data.OntologyClass;
+import de.julielab.java.utilities.FileUtilities;
+
+/**
+ * <p>
+ * Reads the binary classes files written by the
+ * {@link ClassRecordBinaryWriter}, see there for the format.
+ * </p>
+ * <p>
+ * The records can either be read into a reused {@link ClassRecord} with
+ * {@link #next(ClassRecord)}, which creates no objects besides the strings, or
+ * be iterated as {@link OntologyClass} objects equal to those read from the
+ * JSON classes file.
+ * </p>
+ */
+public class ClassRecordBinaryReader implements Iterator<OntologyClass>, Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private DataInputStream is;
+	private List<String> stringTable = new ArrayList<>();
+	private byte[] bytes = new byte[256];
+	private ClassRecord nextRecord;
+
+	/**
+	 * @param is
+	 *            The uncompressed binary data, starting with the header.
+	 * @throws IOException
+	 *             If the header cannot be read or does not belong to a binary
+	 *             classes file.
+	 */
+	public ClassRecordBinaryReader(InputStream is) throws IOException {
+		this.is = new DataInputStream(new BufferedInputStream(is, BUFFER_SIZE));
+		byte[] magic = new byte[ClassRecordBinaryWriter.MAGIC.length];
+		this.is.readFully(magic);
+		if (!Arrays.equals(magic, ClassRecordBinaryWriter.MAGIC))
+			throw new IOException("The data is not a binary classes file");
+		int version = this.is.read();
+		if (version != ClassRecordBinaryWriter.VERSION)
+			throw new IOException("Unsupported binary classes file version " + version);
+	}
+
+	/**
+	 * Opens a binary classes file, gzipped or not.
+	 *
+	 * @param file
+	 *            The binary classes file.
+	 * @return A reader for the file.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 */
+	public static ClassRecordBinaryReader open(File file) throws IOException {
+		InputStream is = FileUtilities.getInputStreamFromFile(file);
+		try {
+			return new ClassRecordBinaryReader(is);
+		} catch (IOException e) {
+			is.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the next record into <tt>record</tt>.
+	 *
+	 * @param record
+	 *            The record to fill. It is cleared first.
+	 * @return <tt>false</tt> if there are no more records.
+	 * @throws IOException
+	 *             If reading fails or the data is truncated.
+	 */
+	public boolean next(ClassRecord record) throws IOException {
+		int first = is.read();
+		if (first == -1)
+			return false;
+		// the record length is only required to skip records
+		readVarInt(first);
+		record.clear();
+		int flags = readByte();
+		record.obsolete = (flags & ClassRecordBinaryWriter.FLAG_OBSOLETE) != 0;
+		record.id = readString();
+		if ((flags & ClassRecordBinaryWriter.FLAG_PREF_LABEL) != 0)
+			record.prefLabel = readString();
+		int numSynonyms = readVarInt(readByte());
+		for (int i = 0; i < numSynonyms; i++)
+			record.synonyms.add(readString());
+		if ((flags & ClassRecordBinaryWriter.FLAG_DEFINITION) != 0)
+			record.definition = readString();
+		int numParents = readVarInt(readByte());
+		for (int i = 0; i < numParents; i++)
+			record.parents.add(readString());
+		return true;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextRecord == null) {
+			ClassRecord record = new ClassRecord();
+			try {
+				if (next(record))
+					nextRecord = record;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return nextRecord != null;
+	}
+
+	@Override
+	public OntologyClass next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		OntologyClass ontologyClass = nextRecord.toOntologyClass();
+		nextRecord = null;
+		return ontologyClass;
+	}
+
+	/**
+	 * @return The strings of the string table that have been read so far.
+	 */
+	public List<String> getStringTable() {
+		return stringTable;
+	}
+
+	private String readString() throws IOException {
+		int reference = readVarInt(readByte());
+		if (reference >= 2) {
+			int index = reference - 2;
+			if (index >= stringTable.size())
+				throw new IOException("Invalid string table reference " + index + ", the table has "
+						+ stringTable.size() + " entries");
+			return stringTable.get(index);
+		}
+		int length = readVarInt(readByte());
+		if (bytes.length < length)
+			bytes = new byte[Math.max(length, bytes.length * 2)];
+		is.readFully(bytes, 0, length);
+		String s = new String(bytes, 0, length, StandardCharsets.UTF_8);
+		if (reference == ClassRecordBinaryWriter.NEW_STRING)
+			stringTable.add(s);
+		return s;
+	}
+
+	private int readByte() throws IOException {
+		int b = is.read();
+		if (b == -1)
+			throw new EOFException("Truncated record");
+		return b;
+	}
+
+	private int readVarInt(int firstByte) throws IOException {
+		int value = firstByte & 0x7f;
+		int shift = 7;
+		int b = firstByte;
+		while ((b & 0x80) != 0) {
+			b = readByte();
+			value |= (b & 0x7f) << shift;
+			shift += 7;
+		}
+		return value;
+	}
+
+	@Override
+	public void close() throws IOException {
+		is.close();
+	}
+}
@@ -0,0 +1,178 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * Writes {@link ClassRecord ClassRecords} in a compact binary format that can
+ * be read with the {@link ClassRecordBinaryReader} without any JSON parsing.
+ * </p>
+ * <p>
+ * The file starts with the bytes of {@link #MAGIC} followed by the format
+ * {@link #VERSION}. Then follows one entry per record, consisting of the
+ * length of the record in bytes and the record itself. All numbers are
+ * unsigned variable-length integers with seven bits per byte, least
+ * significant group first. A record consists of
+ * <ol>
+ * <li>a flags byte with the bits {@link #FLAG_OBSOLETE},
+ * {@link #FLAG_PREF_LABEL} and {@link #FLAG_DEFINITION},</li>
+ * <li>the class IRI,</li>
+ * <li>the preferred label, if flagged,</li>
+ * <li>the number of synonyms and the synonyms,</li>
+ * <li>the definition, if flagged,</li>
+ * <li>the number of parents and the parent IRIs.</li>
+ * </ol>
+ * Each string is written as a reference into the string table of the file. A
+ * reference of {@link #NEW_STRING} is followed by the UTF-8 byte length and
+ * the bytes of a string that is appended to the table. A reference of
+ * {@link #INLINE_STRING} is followed by a string in the same way that is not
+ * added to the table. Larger references denote the string at table index
+ * <tt>reference - 2</tt>. The string table is thus built while the file is
+ * written and read. Only IRIs, which recur as parents, are added to the table;
+ * labels, synonyms and definitions are mostly unique and written inline.
+ * </p>
+ */
+public class ClassRecordBinaryWriter implements ClassRecordWriter {
+
+	public static final byte[] MAGIC = { 'B', 'P', 'C', 'R' };
+	public static final int VERSION = 1;
+
+	public static final int FLAG_OBSOLETE = 1;
+	public static final int FLAG_PREF_LABEL = 1 << 1;
+	public static final int FLAG_DEFINITION = 1 << 2;
+
+	public static final int NEW_STRING = 0;
+	public static final int INLINE_STRING = 1;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private OutputStream os;
+	private Map<String, Integer> stringTable = new HashMap<>();
+	private byte[] record = new byte[1024];
+	private int recordLength;
+	private byte[] lengthPrefix = new byte[5];
+
+	/**
+	 * Starts a new binary classes file.
+	 *
+	 * @param os
+	 *            The stream to write to.
+	 * @throws IOException
+	 *             If writing the header fails.
+	 */
+	public ClassRecordBinaryWriter(OutputStream os) throws IOException {
+		this.os = new BufferedOutputStream(os, BUFFER_SIZE);
+		this.os.write(MAGIC);
+		this.os.write(VERSION);
+	}
+
+	/**
+	 * Continues a binary classes file that already contains the header and
+	 * some records.
+	 *
+	 * @param os
+	 *            The stream that appends to the file.
+	 * @param stringTable
+	 *            The string table of the existing part of the file, as
+	 *            returned by {@link ClassRecordBinaryReader#getStringTable()}
+	 *            after reading all its records.
+	 */
+	public ClassRecordBinaryWriter(OutputStream os, List<String> stringTable) {
+		this.os = new BufferedOutputStream(os, BUFFER_SIZE);
+		for (int i = 0; i < stringTable.size(); i++)
+			this.stringTable.put(stringTable.get(i), i);
+	}
+
+	@Override
+	public void write(ClassRecord record) throws IOException {
+		recordLength = 0;
+		int flags = 0;
+		if (record.obsolete)
+			flags |= FLAG_OBSOLETE;
+		if (record.prefLabel != null)
+			flags |= FLAG_PREF_LABEL;
+		if (record.definition != null)
+			flags |= FLAG_DEFINITION;
+		writeByte(flags);
+		writeTableString(record.id);
+		if (record.prefLabel != null)
+			writeInlineString(record.prefLabel);
+		writeVarInt(record.synonyms.size());
+		for (int i = 0; i < record.synonyms.size(); i++)
+			writeInlineString(record.synonyms.get(i));
+		if (record.definition != null)
+			writeInlineString(record.definition);
+		writeVarInt(record.parents.size());
+		for (int i = 0; i < record.parents.size(); i++)
+			writeTableString(record.parents.get(i));
+
+		int prefixLength = encodeVarInt(recordLength, lengthPrefix, 0);
+		os.write(lengthPrefix, 0, prefixLength);
+		os.write(this.record, 0, recordLength);
+	}
+
+	private void writeTableString(String s) {
+		Integer index = stringTable.get(s);
+		if (index != null) {
+			writeVarInt(index + 2);
+		} else {
+			stringTable.put(s, stringTable.size());
+			writeVarInt(NEW_STRING);
+			writeStringBytes(s);
+		}
+	}
+
+	private void writeInlineString(String s) {
+		writeVarInt(INLINE_STRING);
+		writeStringBytes(s);
+	}
+
+	private void writeStringBytes(String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, record, recordLength, bytes.length);
+		recordLength += bytes.length;
+	}
+
+	private void writeByte(int b) {
+		ensureCapacity(1);
+		record[recordLength++] = (byte) b;
+	}
+
+	private void writeVarInt(int value) {
+		ensureCapacity(5);
+		recordLength = encodeVarInt(value, record, recordLength);
+	}
+
+	private static int encodeVarInt(int value, byte[] target, int pos) {
+		while ((value & ~0x7f) != 0) {
+			target[pos++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		target[pos++] = (byte) value;
+		return pos;
+	}
+
+	private void ensureCapacity(int additionalBytes) {
+		if (recordLength + additionalBytes > record.length)
+			record = Arrays.copyOf(record, Math.max(record.length * 2, recordLength + additionalBytes));
+	}
+
+	@Override
+	public void flush() throws IOException {
+		os.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		os.close();
+	}
+}
@@ -0,0 +1,250 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import org.apache.commons.lang3.StringUtils;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.julielab.bioportal.util.StringInterner;
+
+/**
+ * <p>
+ * Determines the information written for a single ontology class - preferred
+ * name, synonyms, definition, parents and the obsolete flag - from the
+ * annotation values and super classes of the class. How the annotation values
+ * and super classes are looked up is left to the subclasses so that all
+ * extraction engines produce the same records from the same information.
+ * </p>
+ * <p>
+ * The engines return the values of a property in different orders, the OWL
+ * API even in a different order for each load of the same ontology. The
+ * values are therefore brought into the natural order of the OWL API objects
+ * before the preferred name and the definition are picked and the synonyms
+ * are added, see {@link #sortedAnnotationValues(OWLClass, OWLAnnotationProperty)}.
+ * </p>
+ */
+public abstract class ClassRecordExtractor {
+
+	private static final Logger log = LoggerFactory.getLogger(ClassRecordExtractor.class);
+
+	protected AnnotationPropertySet properties;
+	protected boolean filterDeprecated;
+	/**
+	 * A name of the ontology for log messages.
+	 */
+	protected Object ontologyName;
+	/**
+	 * Interns the IRI strings of the records, may be <tt>null</tt>.
+	 */
+	protected StringInterner stringInterner;
+
+	public ClassRecordExtractor(AnnotationPropertySet properties, boolean filterDeprecated, Object ontologyName) {
+		this.properties = properties;
+		this.filterDeprecated = filterDeprecated;
+		this.ontologyName = ontologyName;
+	}
+
+	/**
+	 * Sets an interner that is shared by the extractions of all ontologies to
+	 * keep a single instance of the class and parent IRIs of the records.
+	 * 
+	 * @param stringInterner
+	 *            The interner or <tt>null</tt> to not intern strings.
+	 */
+	public void setStringInterner(StringInterner stringInterner) {
+		this.stringInterner = stringInterner;
+	}
+
+	protected String intern(String s) {
+		return stringInterner != null ? stringInterner.intern(s) : s;
+	}
+
+	/**
+	 * Returns the values of the <tt>property</tt> annotations of <tt>c</tt>.
+	 * 
+	 * @param c
+	 * @param property
+	 * @return
+	 */
+	protected abstract Iterator<OWLAnnotationValue> annotationValues(OWLClass c, OWLAnnotationProperty property);
+
+	/**
+	 * Returns the values of the <tt>property</tt> annotations of <tt>c</tt> in
+	 * the natural order of the OWL API objects, independent of the order of
+	 * {@link #annotationValues(OWLClass, OWLAnnotationProperty)}.
+	 * 
+	 * @param c
+	 * @param property
+	 * @return The sorted values.
+	 */
+	protected List<OWLAnnotationValue> sortedAnnotationValues(OWLClass c, OWLAnnotationProperty property) {
+		Iterator<OWLAnnotationValue> iterator = annotationValues(c, property);
+		if (!iterator.hasNext())
+			return Collections.emptyList();
+		OWLAnnotationValue first = iterator.next();
+		if (!iterator.hasNext())
+			return Collections.singletonList(first);
+		List<OWLAnnotationValue> values = new ArrayList<>();
+		values.add(first);
+		iterator.forEachRemaining(values::add);
+		Collections.sort(values);
+		return values;
+	}
+
+	/**
+	 * Adds the superclasses of <tt>c</tt> as IRI strings to <tt>parents</tt>.
+	 * Omits anonymous classes.
+	 * 
+	 * @param c
+	 * @param parents
+	 */
+	protected abstract void determineClassParents(OWLClass c, List<String> parents);
+
+	/**
+	 * Determines the preferred name, synonyms, definition and parents of
+	 * <tt>c</tt> and stores them in <tt>record</tt>. Returns <tt>false</tt> if
+	 * <tt>c</tt> is obsolete and obsolete classes should be filtered.
+	 * 
+	 * @param c
+	 * @param record
+	 *            The record to fill. It is cleared first.
+	 * @return Whether <tt>c</tt> should be written to the output.
+	 */
+	public boolean extractClass(OWLClass c, ClassRecord record) {
+		record.clear();
+		boolean obsolete = determineObsolete(c);
+
+		if (obsolete && filterDeprecated) {
+			log.trace("Excluding obsolete class {}", c.getIRI());
+			return false;
+		}
+
+		// class IRIs are unique and the record is written right away, so
+		// they are not interned
+		record.id = c.getIRI().toString();
+		record.prefLabel = determinePreferredName(c);
+		record.obsolete = obsolete;
+		determineSynonyms(c, record.synonyms);
+		record.definition = determineDefinition(c);
+		determineClassParents(c, record.parents);
+		return true;
+	}
+
+	/**
+	 * Returns the first non-null definition on a definition annotation property
+	 * or null if none could be found.
+	 * 
+	 * @param c
+	 * @return
+	 */
+	private String determineDefinition(OWLClass c) {
+		for (OWLAnnotationProperty definitionProp : properties.getDefinitionProps()) {
+			for (OWLAnnotationValue value : sortedAnnotationValues(c, definitionProp)) {
+				String definition;
+				if (value instanceof OWLLiteral)
+					definition = ((OWLLiteral) value).getLiteral();
+				else
+					definition = value.toString();
+				if (!StringUtils.isBlank(definition))
+					return definition;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * In contrast the original BioPortal approach where only synonyms from the
+	 * first existing annotation property are used, we currently use the
+	 * synonyms of all eligible properties we can find. Might change in the
+	 * future if there is too much garbage.
+	 * 
+	 * @param c
+	 * @param synonyms
+	 *            The list to add the synonyms to.
+	 */
+	private void determineSynonyms(OWLClass c, List<String> synonyms) {
+		for (OWLAnnotationProperty synonymProp : properties.getSynonymProps()) {
+			for (OWLAnnotationValue value : sortedAnnotationValues(c, synonymProp)) {
+				String synonym;
+				if (value instanceof OWLLiteral) {
+					synonym = ((OWLLiteral) value).getLiteral();
+				} else
+					synonym = value.toString();
+				{
+
+					if (!StringUtils.isBlank(synonym))
+						synonyms.add(synonym);
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>
+	 * Returns the first property value that is not null or blank. If no
+	 * property is set or has a non-null value, the fragment of the class IRI is
+	 * returned.
+	 * </p>
+	 * <p>
+	 * This approach corresponds to the BioPortal approach got on the mailing
+	 * list from Michael Dorf: <blockquote> We first determine whether the
+	 * prefLabelProperty, synonymProperty, definitionProperty are set and use
+	 * them. If those aren't set, we default to skos:prefLabel and rdfs:label in
+	 * that order. If no skos:prefLabel or rdfs:label exists, we use the last
+	 * fragment of the URI of the class as the prefLabel. A similar rule applies
+	 * to synonyms and definitions using the properties skos:altLabel and
+	 * skos:definition respectively. </blockquote>
+	 * 
+	 * @param c
+	 * @return
+	 */
+	private String determinePreferredName(OWLClass c) {
+		for (OWLAnnotationProperty prefNameProp : properties.getPrefNameProps()) {
+			for (OWLAnnotationValue value : sortedAnnotationValues(c, prefNameProp)) {
+				String preferredName;
+				if (value instanceof OWLLiteral) {
+					preferredName = ((OWLLiteral) value).getLiteral();
+					if (preferredName.isEmpty()) {
+						continue;
+					}
+				} else {
+					preferredName = value.toString();
+				}
+				return preferredName;
+			}
+		}
+		// If we came here, we did not find any preferred name. Use the IRI
+		// fragment. If there is no fragment, take the whole IRI.
+		return c.getIRI().getRemainder().orElse(c.getIRI().getIRIString());
+	}
+
+	private boolean determineObsolete(OWLClass c) {
+		boolean isObsolete = false;
+		for (OWLAnnotationProperty obsoleteProp : properties.getObsoleteProps()) {
+			for (Iterator<OWLAnnotationValue> iterator = annotationValues(c, obsoleteProp); iterator.hasNext();) {
+				Optional<OWLLiteral> optLiteral = iterator.next().asLiteral();
+				if (!optLiteral.isPresent()) {
+					continue;
+				}
+				String literal = optLiteral.get().getLiteral().toLowerCase();
+				if (!literal.equals("true") && !literal.equals("false"))
+					log.warn("The obsolete property value of class {} of ontology {} is neither true nor false",
+							c.getIRI(), ontologyName);
+				// for the weird case that there are multiple obsolete
+				// annotations we consider a class obsolete if at least one
+				// property says so
+				isObsolete |= Boolean.parseBoolean(literal);
+			}
+		}
+		return isObsolete;
+	}
+}
@@ -0,0 +1,102 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import de.julielab.bioportal.ontologies.data.OntologyClass;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+import de.julielab.java.utilities.FileUtilities;
+
+/**
+ * Iterates the {@link OntologyClass OntologyClasses} of a JSON lines classes
+ * file. If the file was written with compact IRIs, see {@link IriPrefixTable},
+ * the class and parent IRIs are expanded to full IRIs.
+ */
+public class ClassRecordJsonReader implements Iterator<OntologyClass>, Closeable {
+
+	private BufferedReader reader;
+	private IriPrefixTable prefixTable;
+	private Gson gson = BioPortalToolUtils.getGson();
+	private OntologyClass nextClass;
+
+	/**
+	 * @param reader
+	 *            The JSON lines.
+	 * @param prefixTable
+	 *            The namespace table to expand compact IRIs with. May be
+	 *            <tt>null</tt> if the IRIs are not compacted.
+	 */
+	public ClassRecordJsonReader(BufferedReader reader, IriPrefixTable prefixTable) {
+		this.reader = reader;
+		this.prefixTable = prefixTable;
+	}
+
+	/**
+	 * Opens a classes file, gzipped or not. The namespace table is read from
+	 * the file returned by
+	 * {@link OntologyClassNameExtractor#getIriPrefixesFile(File)}, if it
+	 * exists.
+	 * 
+	 * @param classesFile
+	 *            The classes file.
+	 * @return A reader for the file.
+	 * @throws IOException
+	 *             If the classes file or the namespace table cannot be read.
+	 */
+	public static ClassRecordJsonReader open(File classesFile) throws IOException {
+		File prefixesFile = OntologyClassNameExtractor.getIriPrefixesFile(classesFile);
+		IriPrefixTable prefixTable = prefixesFile.exists() ? IriPrefixTable.read(prefixesFile) : null;
+		return new ClassRecordJsonReader(FileUtilities.getReaderFromFile(classesFile), prefixTable);
+	}
+
+	@Override
+	public boolean hasNext() {
+		try {
+			String line;
+			while (nextClass == null && (line = reader.readLine()) != null) {
+				if (line.isEmpty())
+					continue;
+				nextClass = gson.fromJson(line, OntologyClass.class);
+				if (prefixTable != null)
+					expandIris(nextClass);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (JsonParseException e) {
+			throw new UncheckedIOException(new IOException("Could not parse the classes file line", e));
+		}
+		return nextClass != null;
+	}
+
+	@Override
+	public OntologyClass next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		OntologyClass ontologyClass = nextClass;
+		nextClass = null;
+		return ontologyClass;
+	}
+
+	private void expandIris(OntologyClass ontologyClass) {
+		ontologyClass.id = prefixTable.expand(ontologyClass.id);
+		if (ontologyClass.parents != null && ontologyClass.parents.parents != null) {
+			List<String> parents = ontologyClass.parents.parents;
+			for (int i = 0; i < parents.size(); i++)
+				parents.set(i, prefixTable.expand(parents.get(i)));
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,117 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.stream.JsonWriter;
+
+import de.julielab.bioportal.ontologies.data.OntologyClass;
+
+/**
+ * <p>
+ * Writes {@link ClassRecord ClassRecords} as JSON lines, one object per line.
+ * The fields are streamed directly into a single buffered {@link JsonWriter}
+ * without creating {@link OntologyClass} objects or intermediate strings.
+ * </p>
+ * <p>
+ * The output is identical to serializing the corresponding
+ * {@link OntologyClass} with the Gson instance of
+ * <tt>BioPortalToolUtils.getGson()</tt>, i.e. with the same field order,
+ * omitted <tt>null</tt> values, empty <tt>synonym</tt> and <tt>parents</tt>
+ * objects and HTML-safe escaping.
+ * </p>
+ * <p>
+ * Optionally, the class and parent IRIs are written in the compact form of an
+ * {@link IriPrefixTable}. The table must then be stored along with the output
+ * so that the {@link ClassRecordJsonReader} can expand the IRIs again.
+ * </p>
+ */
+public class ClassRecordJsonWriter implements ClassRecordWriter {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private Writer writer;
+	private JsonWriter jsonWriter;
+	private IriPrefixTable prefixTable;
+
+	public ClassRecordJsonWriter(OutputStream os) {
+		this(os, null);
+	}
+
+	/**
+	 * @param os
+	 *            The stream to write to.
+	 * @param prefixTable
+	 *            The namespace table to compact the IRIs with. May be
+	 *            <tt>null</tt> to write full IRIs.
+	 */
+	public ClassRecordJsonWriter(OutputStream os, IriPrefixTable prefixTable) {
+		this(new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), BUFFER_SIZE), prefixTable);
+	}
+
+	public ClassRecordJsonWriter(Writer writer) {
+		this(writer, null);
+	}
+
+	public ClassRecordJsonWriter(Writer writer, IriPrefixTable prefixTable) {
+		this.writer = writer;
+		this.prefixTable = prefixTable;
+		this.jsonWriter = new JsonWriter(writer);
+		// multiple top level values, one per line
+		jsonWriter.setLenient(true);
+		jsonWriter.setHtmlSafe(true);
+		jsonWriter.setSerializeNulls(false);
+	}
+
+	@Override
+	public void write(ClassRecord record) throws IOException {
+		jsonWriter.beginObject();
+		jsonWriter.name("@id").value(iri(record.id));
+		jsonWriter.name("prefLabel").value(record.prefLabel);
+		jsonWriter.name("synonym").beginObject();
+		if (!record.synonyms.isEmpty()) {
+			jsonWriter.name("synonyms").beginArray();
+			for (int i = 0; i < record.synonyms.size(); i++)
+				jsonWriter.value(record.synonyms.get(i));
+			jsonWriter.endArray();
+		}
+		jsonWriter.endObject();
+		if (record.definition != null)
+			jsonWriter.name("definition").beginArray().value(record.definition).endArray();
+		jsonWriter.name("parents").beginObject();
+		if (!record.parents.isEmpty()) {
+			jsonWriter.name("parents").beginArray();
+			for (int i = 0; i < record.parents.size(); i++)
+				jsonWriter.value(iri(record.parents.get(i)));
+			jsonWriter.endArray();
+		}
+		jsonWriter.endObject();
+		if (record.obsolete)
+			jsonWriter.name("obsolete").value(true);
+		jsonWriter.endObject();
+		writer.write('\n');
+	}
+
+	private String iri(String iri) {
+		return prefixTable != null && iri != null ? prefixTable.compact(iri) : iri;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		writer.flush();
+	}
+
+	/**
+	 * Closes the underlying writer. The <tt>JsonWriter</tt> itself is not
+	 * closed because it would complain about an incomplete document if no
+	 * record has been written.
+	 */
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
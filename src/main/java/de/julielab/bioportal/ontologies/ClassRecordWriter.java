@@ -0,0 +1,13 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Writes the {@link ClassRecord ClassRecords} of the class name extraction in
+ * some output format.
+ */
+public interface ClassRecordWriter extends Closeable, Flushable {
+	void write(ClassRecord record) throws IOException;
+}
@@ -0,0 +1,131 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLMutableOntology;
+import org.semanticweb.owlapi.model.OWLOntologyBuilder;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLSubClassOfAxiom;
+import org.semanticweb.owlapi.model.parameters.ChangeApplied;
+
+import uk.ac.manchester.cs.owl.owlapi.OWLOntologyImpl;
+import uk.ac.manchester.cs.owl.owlapi.concurrent.ConcurrentOWLOntologyImpl;
+
+/**
+ * <p>
+ * An {@link OWLOntologyBuilder} for ontologies that only keep the axioms
+ * required to extract class names without reasoning: declarations, annotation
+ * assertions and <tt>SubClassOf</tt> axioms between named classes. All other
+ * axioms, e.g. the restrictions of OBO-derived ontologies, are dropped while
+ * the ontology is parsed and thus never indexed.
+ * </p>
+ * <p>
+ * For each dropped axiom, the named classes it refers to are declared so that
+ * the classes in the signature of the ontology are the same as without
+ * filtering. The number of dropped axioms per axiom type is counted until the
+ * counts are {@link #resetCounts() reset}.
+ * </p>
+ */
+public class ExtractionAxiomFilter implements OWLOntologyBuilder {
+
+	private static final long serialVersionUID = 1L;
+
+	private Map<AxiomType<?>, LongAdder> droppedAxioms = new ConcurrentHashMap<>();
+	private LongAdder addedDeclarations = new LongAdder();
+
+	@Override
+	public OWLMutableOntology createOWLOntology(OWLOntologyManager manager, OWLOntologyID ontologyID) {
+		return new ConcurrentOWLOntologyImpl(new FilteringOntology(manager, ontologyID),
+				new ReentrantReadWriteLock());
+	}
+
+	/**
+	 * @param axiom
+	 *            An axiom.
+	 * @return Whether the axiom is required to extract class names without
+	 *         reasoning.
+	 */
+	public static boolean isRequired(OWLAxiom axiom) {
+		AxiomType<?> type = axiom.getAxiomType();
+		if (type == AxiomType.DECLARATION || type == AxiomType.ANNOTATION_ASSERTION)
+			return true;
+		if (type == AxiomType.SUBCLASS_OF) {
+			OWLSubClassOfAxiom subClassOf = (OWLSubClassOfAxiom) axiom;
+			return !subClassOf.getSubClass().isAnonymous() && !subClassOf.getSuperClass().isAnonymous();
+		}
+		return false;
+	}
+
+	/**
+	 * @return The number of dropped axioms per axiom type since the last
+	 *         reset.
+	 */
+	public Map<AxiomType<?>, Long> getDroppedAxiomCounts() {
+		Map<AxiomType<?>, Long> counts = new TreeMap<>((t1, t2) -> t1.getName().compareTo(t2.getName()));
+		for (Map.Entry<AxiomType<?>, LongAdder> entry : droppedAxioms.entrySet())
+			counts.put(entry.getKey(), entry.getValue().sum());
+		return counts;
+	}
+
+	/**
+	 * @return The total number of dropped axioms since the last reset.
+	 */
+	public long getNumDroppedAxioms() {
+		long sum = 0;
+		for (LongAdder count : droppedAxioms.values())
+			sum += count.sum();
+		return sum;
+	}
+
+	/**
+	 * @return The number of declarations that have been added for the classes
+	 *         of dropped axioms since the last reset.
+	 */
+	public long getNumAddedDeclarations() {
+		return addedDeclarations.sum();
+	}
+
+	public void resetCounts() {
+		droppedAxioms.clear();
+		addedDeclarations.reset();
+	}
+
+	private class FilteringOntology extends OWLOntologyImpl {
+
+		private static final long serialVersionUID = 1L;
+
+		private FilteringOntology(OWLOntologyManager manager, OWLOntologyID ontologyID) {
+			super(manager, ontologyID);
+		}
+
+		@Override
+		public ChangeApplied applyDirectChange(OWLOntologyChange change) {
+			if (!change.isAddAxiom() || isRequired(change.getAxiom()))
+				return super.applyDirectChange(change);
+			OWLAxiom axiom = change.getAxiom();
+			droppedAxioms.computeIfAbsent(axiom.getAxiomType(), t -> new LongAdder()).increment();
+			// keep the classes of the axiom in the signature
+			OWLDataFactory df = getOWLOntologyManager().getOWLDataFactory();
+			for (Iterator<OWLClass> it = axiom.classesInSignature().iterator(); it.hasNext();) {
+				OWLClass owlClass = it.next();
+				if (!containsClassInSignature(owlClass.getIRI())) {
+					super.applyDirectChange(new AddAxiom(this, df.getOWLDeclarationAxiom(owlClass)));
+					addedDeclarations.increment();
+				}
+			}
+			return ChangeApplied.NO_OPERATION;
+		}
+	}
+}
@@ -0,0 +1,370 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.input.BoundedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import de.julielab.bioportal.ontologies.data.ExtractionCheckpoint;
+import de.julielab.bioportal.ontologies.data.ExtractionManifestEntry;
+import de.julielab.bioportal.ontologies.data.OntologyExtractionInfo;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+import de.julielab.bioportal.util.CheckpointOutputStream;
+
+/**
+ * <p>
+ * Manages the output of the class name extraction of a single ontology so that
+ * an interrupted extraction neither leaves a truncated classes file nor has to
+ * start from scratch.
+ * </p>
+ * <p>
+ * The classes are written to a partial file next to the classes file that is
+ * only {@link #commit() committed} by an atomic rename when all classes have
+ * been written. Every <tt>checkpointInterval</tt> classes, the partial file is
+ * flushed to disk and a checkpoint file records the number of processed
+ * classes and the length of the partial file. A later extraction of the same
+ * inputs truncates the partial file to the last checkpoint and continues after
+ * the recorded number of classes. This requires the classes to be processed in
+ * the same order in each run.
+ * </p>
+ * <p>
+ * Optionally, the records are also written into a binary classes file, see
+ * {@link ClassRecordBinaryWriter}, with its own partial file. Its checkpoint
+ * offset is recorded in the same checkpoint file. When resuming, the string
+ * table of the binary partial file is restored by reading it up to the
+ * checkpoint.
+ * </p>
+ * <p>
+ * If the IRIs are written in compact form, the {@link IriPrefixTable} is
+ * stored with each checkpoint and restored when resuming. It is written to its
+ * own file, via a partial file, when the classes file is committed.
+ * </p>
+ */
+public class ExtractionCheckpointer implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(ExtractionCheckpointer.class);
+
+	public static final String PART_EXT = ".part";
+	public static final String CHECKPOINT_EXT = ".ckpt";
+
+	private File classesFile;
+	private File partFile;
+	private File checkpointFile;
+	private ExtractionManifestEntry inputs;
+	private String parents;
+	private long checkpointInterval;
+	private CheckpointOutputStream os;
+	private File binaryClassesFile;
+	private File binaryPartFile;
+	private CheckpointOutputStream binaryOs;
+	private ClassRecordBinaryWriter binaryWriter;
+	private File iriPrefixesFile;
+	private IriPrefixTable prefixTable;
+	private ClassRecordWriter writer;
+	private long resumeIndex;
+	private long numClasses;
+	private long numClassesAtCheckpoint;
+	private boolean committed;
+	private Gson gson;
+
+	/**
+	 * @param classesFile
+	 *            The final classes file.
+	 * @param inputs
+	 *            The inputs of the extraction. May be <tt>null</tt> in which
+	 *            case no checkpoints are written and no extraction is resumed.
+	 * @param checkpointInterval
+	 *            The number of classes between two checkpoints. Non-positive
+	 *            values switch checkpoints off.
+	 * @throws IOException
+	 *             If the partial file cannot be opened.
+	 */
+	public ExtractionCheckpointer(File classesFile, ExtractionManifestEntry inputs, long checkpointInterval)
+			throws IOException {
+		this(classesFile, null, null, inputs, null, checkpointInterval);
+	}
+
+	/**
+	 * @param classesFile
+	 *            The final classes file.
+	 * @param binaryClassesFile
+	 *            The final binary classes file. May be <tt>null</tt> in which
+	 *            case no binary output is written.
+	 * @param iriPrefixesFile
+	 *            The file to write the IRI namespace table to. May be
+	 *            <tt>null</tt> in which case full IRIs are written.
+	 * @param inputs
+	 *            The inputs of the extraction. May be <tt>null</tt> in which
+	 *            case no checkpoints are written and no extraction is resumed.
+	 * @param parents
+	 *            Whether the parents of the written classes are inferred or
+	 *            asserted, see {@link OntologyExtractionInfo#parents}. A
+	 *            checkpoint written with other parents is discarded.
+	 * @param checkpointInterval
+	 *            The number of classes between two checkpoints. Non-positive
+	 *            values switch checkpoints off.
+	 * @throws IOException
+	 *             If the partial files cannot be opened.
+	 */
+	public ExtractionCheckpointer(File classesFile, File binaryClassesFile, File iriPrefixesFile,
+			ExtractionManifestEntry inputs, String parents, long checkpointInterval) throws IOException {
+		this.classesFile = classesFile;
+		this.iriPrefixesFile = iriPrefixesFile;
+		this.binaryClassesFile = binaryClassesFile;
+		if (binaryClassesFile != null)
+			this.binaryPartFile = new File(binaryClassesFile.getAbsolutePath() + PART_EXT);
+		this.partFile = new File(classesFile.getAbsolutePath() + PART_EXT);
+		this.checkpointFile = new File(classesFile.getAbsolutePath() + CHECKPOINT_EXT);
+		this.inputs = inputs;
+		this.parents = parents;
+		this.checkpointInterval = inputs != null ? checkpointInterval : 0;
+		this.gson = BioPortalToolUtils.getGson();
+
+		ExtractionCheckpoint checkpoint = readCheckpoint();
+		List<String> binaryStringTable = null;
+		if (checkpoint != null && binaryClassesFile != null) {
+			binaryStringTable = readBinaryStringTable(checkpoint.binaryOffset);
+			if (binaryStringTable == null)
+				checkpoint = null;
+		}
+		if (checkpoint != null && iriPrefixesFile != null && checkpoint.iriNamespaces == null) {
+			log.info("The checkpoint for {} has no IRI namespace table, starting over", classesFile);
+			checkpoint = null;
+		}
+		if (iriPrefixesFile != null)
+			prefixTable = checkpoint != null ? new IriPrefixTable(checkpoint.iriNamespaces) : new IriPrefixTable();
+		long offset = 0;
+		if (checkpoint != null) {
+			resumeIndex = checkpoint.numClasses;
+			offset = checkpoint.offset;
+			log.info("Resuming the extraction into {} after {} classes", classesFile, resumeIndex);
+		} else {
+			Files.deleteIfExists(checkpointFile.toPath());
+		}
+		numClasses = numClassesAtCheckpoint = resumeIndex;
+		os = new CheckpointOutputStream(partFile, offset, isGzip(classesFile));
+		ClassRecordJsonWriter jsonWriter = new ClassRecordJsonWriter(os, prefixTable);
+		writer = jsonWriter;
+		if (binaryClassesFile != null) {
+			if (checkpoint != null) {
+				binaryOs = new CheckpointOutputStream(binaryPartFile, checkpoint.binaryOffset,
+						isGzip(binaryClassesFile));
+				binaryWriter = new ClassRecordBinaryWriter(binaryOs, binaryStringTable);
+			} else {
+				binaryOs = new CheckpointOutputStream(binaryPartFile, 0, isGzip(binaryClassesFile));
+				binaryWriter = new ClassRecordBinaryWriter(binaryOs);
+			}
+			writer = new TeeWriter(jsonWriter, binaryWriter);
+		}
+	}
+
+	private static boolean isGzip(File file) {
+		String lcfn = file.getName().toLowerCase();
+		return lcfn.endsWith(".gz") || lcfn.endsWith(".gzip");
+	}
+
+	/**
+	 * Reads the binary partial file up to the checkpoint to restore its string
+	 * table.
+	 *
+	 * @return The string table or <tt>null</tt> if the binary partial file
+	 *         cannot be resumed.
+	 */
+	private List<String> readBinaryStringTable(Long binaryOffset) {
+		if (binaryOffset == null || !binaryPartFile.exists() || binaryPartFile.length() < binaryOffset)
+			return null;
+		try (InputStream fileStream = new BoundedInputStream(Files.newInputStream(binaryPartFile.toPath()),
+				binaryOffset);
+				ClassRecordBinaryReader reader = new ClassRecordBinaryReader(
+						isGzip(binaryClassesFile) ? new GZIPInputStream(fileStream) : fileStream)) {
+			ClassRecord record = new ClassRecord();
+			while (reader.next(record)) {
+				// only the string table is required
+			}
+			return reader.getStringTable();
+		} catch (IOException e) {
+			log.warn("Could not read the binary partial file {} up to the checkpoint, starting over",
+					binaryPartFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return The checkpoint to resume from if it belongs to the same inputs
+	 *         and parents and the partial file still exists, <tt>null</tt>
+	 *         otherwise.
+	 */
+	private ExtractionCheckpoint readCheckpoint() {
+		if (!isCheckpointing() || !checkpointFile.exists() || !partFile.exists())
+			return null;
+		try (Reader r = Files.newBufferedReader(checkpointFile.toPath(), StandardCharsets.UTF_8)) {
+			ExtractionCheckpoint checkpoint = gson.fromJson(r, ExtractionCheckpoint.class);
+			if (checkpoint != null && inputs.hasSameContent(checkpoint.inputs)
+					&& !Objects.equals(parents, checkpoint.parents)) {
+				log.info("The checkpoint for {} was written with {} instead of {} parents, starting over", classesFile,
+						checkpoint.parents, parents);
+				return null;
+			}
+			if (checkpoint != null && inputs.hasSameContent(checkpoint.inputs)
+					&& partFile.length() >= checkpoint.offset)
+				return checkpoint;
+			log.debug("Checkpoint {} does not match the current inputs, starting over", checkpointFile);
+		} catch (IOException | JsonParseException e) {
+			log.warn("Could not read checkpoint {}, starting over", checkpointFile, e);
+		}
+		return null;
+	}
+
+	public boolean isCheckpointing() {
+		return checkpointInterval > 0;
+	}
+
+	/**
+	 * @return The number of classes, in extraction order, that have already
+	 *         been written by a previous extraction and must be skipped.
+	 */
+	public long getResumeIndex() {
+		return resumeIndex;
+	}
+
+	/**
+	 * @return The writer for the records of the processed classes. Writes to
+	 *         the binary classes file, too, if one was given.
+	 */
+	public ClassRecordWriter getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Must be called after the records of processed classes have been written.
+	 * Writes a checkpoint if <tt>checkpointInterval</tt> classes have been
+	 * processed since the last one.
+	 * 
+	 * @param n
+	 *            The number of processed classes, including classes for which
+	 *            no record was written.
+	 * @throws IOException
+	 *             If writing the checkpoint fails.
+	 */
+	public void classesProcessed(int n) throws IOException {
+		numClasses += n;
+		if (isCheckpointing() && numClasses - numClassesAtCheckpoint >= checkpointInterval)
+			checkpoint();
+	}
+
+	private void checkpoint() throws IOException {
+		writer.flush();
+		ExtractionCheckpoint checkpoint = new ExtractionCheckpoint();
+		checkpoint.inputs = inputs;
+		checkpoint.parents = parents;
+		checkpoint.numClasses = numClasses;
+		checkpoint.offset = os.checkpoint();
+		if (binaryOs != null)
+			checkpoint.binaryOffset = binaryOs.checkpoint();
+		if (prefixTable != null)
+			checkpoint.iriNamespaces = new ArrayList<>(prefixTable.getNamespaces());
+		File tmpFile = new File(checkpointFile.getAbsolutePath() + ".tmp");
+		try (Writer w = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+			gson.toJson(checkpoint, w);
+		}
+		Files.move(tmpFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		numClassesAtCheckpoint = numClasses;
+		log.debug("Checkpoint for {} after {} classes at offset {}", classesFile, numClasses, checkpoint.offset);
+	}
+
+	/**
+	 * Closes the partial file, atomically renames it to the classes file and
+	 * deletes the checkpoint. The IRI namespace table is written to a partial
+	 * file, too, and renamed before the classes file so that a complete table
+	 * exists whenever the classes file exists.
+	 * 
+	 * @throws IOException
+	 *             If closing or renaming fails.
+	 */
+	public void commit() throws IOException {
+		writer.close();
+		if (prefixTable != null) {
+			File iriPrefixesPartFile = new File(iriPrefixesFile.getAbsolutePath() + PART_EXT);
+			OutputStream prefixesOs = new FileOutputStream(iriPrefixesPartFile);
+			if (isGzip(iriPrefixesFile))
+				prefixesOs = BioPortalToolUtils.getGzipOutputStream(prefixesOs);
+			try (Writer w = new BufferedWriter(new OutputStreamWriter(prefixesOs, StandardCharsets.UTF_8))) {
+				prefixTable.write(w);
+			}
+			Files.move(iriPrefixesPartFile.toPath(), iriPrefixesFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		}
+		if (binaryClassesFile != null)
+			Files.move(binaryPartFile.toPath(), binaryClassesFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		Files.move(partFile.toPath(), classesFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		Files.deleteIfExists(checkpointFile.toPath());
+		committed = true;
+	}
+
+	/**
+	 * Closes the partial file if it has not been committed. The partial file
+	 * and the checkpoint are left for a later extraction to resume from.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!committed)
+			writer.close();
+	}
+
+	/**
+	 * Writes each record to the JSON and the binary writer.
+	 */
+	private static class TeeWriter implements ClassRecordWriter {
+		private ClassRecordWriter first;
+		private ClassRecordWriter second;
+
+		private TeeWriter(ClassRecordWriter first, ClassRecordWriter second) {
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public void write(ClassRecord record) throws IOException {
+			first.write(record);
+			second.write(record);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			first.flush();
+			second.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				first.close();
+			} finally {
+				second.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package de.julielab.bioportal.ontologies;
+
+/**
+ * The ways to read the class information of an ontology for class name
+ * extraction.
+ */
+public enum ExtractionEngine {
+	/**
+	 * Loads the ontology with the OWL API. Required for reasoning and supports
+	 * all OWL syntaxes and imports.
+	 */
+	OWLAPI,
+	/**
+	 * Streams the RDF triples of the ontology file with the
+	 * {@link StreamingRDFClassReader} without building an OWL API ontology.
+	 * Only used for single RDF files without reasoning; other ontologies are
+	 * loaded with the OWL API.
+	 */
+	RDF_STREAM,
+	/**
+	 * Reads the stanzas of OBO files with the {@link OboStanzaReader} without
+	 * translating them into an OWL API ontology. Only used for OBO files
+	 * without reasoning.
+	 */
+	OBO
+}
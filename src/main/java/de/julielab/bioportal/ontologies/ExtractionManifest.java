@@ -0,0 +1,203 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import de.julielab.bioportal.ontologies.data.ExtractionManifestEntry;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+
+/**
+ * <p>
+ * Records in the output directory of the {@link OntologyClassNameExtractor}
+ * from which inputs the class names of each ontology have been extracted. The
+ * inputs are identified by the SHA-256 hashes of the ontology file or
+ * directory and of the submission file together with the extractor settings.
+ * An ontology only needs to be extracted again if one of these has changed.
+ * </p>
+ * <p>
+ * The hashes are only recomputed for files whose size or modification time
+ * differs from the values recorded in the manifest. The manifest is saved
+ * after each update so that an interrupted run loses no finished work.
+ * </p>
+ */
+public class ExtractionManifest {
+
+	private static final Logger log = LoggerFactory.getLogger(ExtractionManifest.class);
+
+	public static final String MANIFEST_FILENAME = "extraction-manifest.json";
+
+	private File manifestFile;
+	private Map<String, ExtractionManifestEntry> entries;
+	private Gson gson;
+
+	private ExtractionManifest(File manifestFile, Map<String, ExtractionManifestEntry> entries) {
+		this.manifestFile = manifestFile;
+		this.entries = entries;
+		this.gson = BioPortalToolUtils.getGson();
+	}
+
+	/**
+	 * Reads the manifest of the given output directory. If there is no
+	 * manifest yet or it cannot be read, an empty manifest is returned.
+	 * 
+	 * @param outputDir
+	 *            The output directory of the class name extraction.
+	 * @return The manifest.
+	 * @throws IOException
+	 *             If reading the manifest file fails.
+	 */
+	public static ExtractionManifest load(File outputDir) throws IOException {
+		File manifestFile = new File(outputDir.getAbsolutePath() + File.separator + MANIFEST_FILENAME);
+		Map<String, ExtractionManifestEntry> entries = null;
+		if (manifestFile.exists()) {
+			Type type = new TypeToken<TreeMap<String, ExtractionManifestEntry>>() {
+			}.getType();
+			try (Reader r = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+				entries = BioPortalToolUtils.getGson().fromJson(r, type);
+			} catch (JsonParseException e) {
+				log.warn("Could not read the extraction manifest {}. All ontologies will be extracted again.",
+						manifestFile, e);
+			}
+		}
+		if (entries == null)
+			entries = new TreeMap<>();
+		log.debug("Loaded {} entries from the extraction manifest {}", entries.size(), manifestFile);
+		return new ExtractionManifest(manifestFile, entries);
+	}
+
+	/**
+	 * Creates the entry describing the current state of the inputs of an
+	 * ontology. Hashes are taken from the existing entry of the ontology if
+	 * the respective file has the same size and modification time.
+	 * 
+	 * @param acronym
+	 *            The ontology acronym.
+	 * @param ontologyFileOrDirectory
+	 *            The ontology file or directory.
+	 * @param submissionFile
+	 *            The submission file of the ontology. Does not need to exist.
+	 * @param settings
+	 *            The signature of the extractor settings.
+	 * @return The entry for the current inputs.
+	 * @throws IOException
+	 *             If hashing an input fails.
+	 */
+	public ExtractionManifestEntry createEntry(String acronym, File ontologyFileOrDirectory, File submissionFile,
+			String settings) throws IOException {
+		ExtractionManifestEntry previous = getEntry(acronym);
+		ExtractionManifestEntry entry = new ExtractionManifestEntry();
+		entry.acronym = acronym;
+		entry.input = ontologyFileOrDirectory.getName();
+		entry.settings = settings;
+		entry.inputSize = ontologyFileOrDirectory.isDirectory() ? FileUtils.sizeOfDirectory(ontologyFileOrDirectory)
+				: ontologyFileOrDirectory.length();
+		entry.inputLastModified = lastModified(ontologyFileOrDirectory);
+		if (previous != null && entry.input.equals(previous.input) && entry.inputSize == previous.inputSize
+				&& entry.inputLastModified == previous.inputLastModified)
+			entry.inputHash = previous.inputHash;
+		else
+			entry.inputHash = BioPortalToolUtils.sha256(ontologyFileOrDirectory);
+		if (submissionFile.exists()) {
+			entry.submissionSize = submissionFile.length();
+			entry.submissionLastModified = submissionFile.lastModified();
+			if (previous != null && entry.submissionSize == previous.submissionSize
+					&& entry.submissionLastModified == previous.submissionLastModified)
+				entry.submissionHash = previous.submissionHash;
+			else
+				entry.submissionHash = BioPortalToolUtils.sha256(submissionFile);
+		}
+		return entry;
+	}
+
+	private long lastModified(File fileOrDirectory) {
+		if (!fileOrDirectory.isDirectory())
+			return fileOrDirectory.lastModified();
+		long lastModified = fileOrDirectory.lastModified();
+		for (File file : fileOrDirectory.listFiles())
+			lastModified = Math.max(lastModified, lastModified(file));
+		return lastModified;
+	}
+
+	public synchronized ExtractionManifestEntry getEntry(String acronym) {
+		return entries.get(acronym);
+	}
+
+	/**
+	 * @param entry
+	 *            An entry describing the current inputs of an ontology.
+	 * @return Whether the manifest contains an entry for the same ontology
+	 *         with the same content.
+	 */
+	public synchronized boolean isUnchanged(ExtractionManifestEntry entry) {
+		return entry.hasSameContent(entries.get(entry.acronym));
+	}
+
+	/**
+	 * Stores the given entry, replacing a previous entry for the same ontology,
+	 * and saves the manifest.
+	 * 
+	 * @param entry
+	 *            The entry to store.
+	 * @throws IOException
+	 *             If writing the manifest fails.
+	 */
+	public synchronized void update(ExtractionManifestEntry entry) throws IOException {
+		entries.put(entry.acronym, entry);
+		save();
+	}
+
+	/**
+	 * Removes the entries of all ontologies that are not contained in
+	 * <tt>existingAcronyms</tt> and saves the manifest.
+	 * 
+	 * @param existingAcronyms
+	 *            The acronyms of the ontologies that still exist in the input.
+	 * @return The acronyms of the removed entries.
+	 * @throws IOException
+	 *             If writing the manifest fails.
+	 */
+	public synchronized List<String> removeEntriesNotIn(Collection<String> existingAcronyms) throws IOException {
+		List<String> removedAcronyms = new ArrayList<>(entries.keySet());
+		removedAcronyms.removeAll(existingAcronyms);
+		if (!removedAcronyms.isEmpty()) {
+			entries.keySet().removeAll(removedAcronyms);
+			save();
+		}
+		return removedAcronyms;
+	}
+
+	/**
+	 * Writes the manifest to a temporary file which then replaces the manifest
+	 * file so that the manifest is never left half written.
+	 * 
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	private void save() throws IOException {
+		File tmpFile = new File(manifestFile.getAbsolutePath() + ".tmp");
+		try (Writer w = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+			gson.toJson(entries, w);
+		}
+		Files.move(tmpFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,149 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import de.julielab.bioportal.ontologies.data.OntologyExtractionInfo;
+import de.julielab.bioportal.util.StringInterner;
+
+public class ExtractionStats {
+
+	private List<OntologyExtractionInfo> extractionInfos = Collections.synchronizedList(new ArrayList<>());
+	private StringInterner stringInterner;
+	private ImportCache importCache;
+	private InferredHierarchyCache hierarchyCache;
+
+	public void addExtractionInfo(OntologyExtractionInfo info) {
+		extractionInfos.add(info);
+	}
+
+	/**
+	 * @param stringInterner
+	 *            The interner used by the extraction, for its hit rate. May be
+	 *            <tt>null</tt>.
+	 */
+	public void setStringInterner(StringInterner stringInterner) {
+		this.stringInterner = stringInterner;
+	}
+
+	/**
+	 * @param importCache
+	 *            The import cache used by the extraction, for its hits and
+	 *            misses. May be <tt>null</tt>.
+	 */
+	public void setImportCache(ImportCache importCache) {
+		this.importCache = importCache;
+	}
+
+	/**
+	 * @param hierarchyCache
+	 *            The inferred hierarchy cache used by the extraction, for its
+	 *            hits and misses. May be <tt>null</tt>.
+	 */
+	public void setHierarchyCache(InferredHierarchyCache hierarchyCache) {
+		this.hierarchyCache = hierarchyCache;
+	}
+
+	public List<OntologyExtractionInfo> getExtractionInfos() {
+		return extractionInfos;
+	}
+
+	public int getNumReasoningTimeouts() {
+		synchronized (extractionInfos) {
+			return (int) extractionInfos.stream().filter(info -> info.reasoningTimedOut).count();
+		}
+	}
+
+	public String report() {
+		List<OntologyExtractionInfo> infos;
+		synchronized (extractionInfos) {
+			infos = new ArrayList<>(extractionInfos);
+		}
+		infos.sort(Comparator.comparing(info -> info.acronym));
+		StringBuilder sb = new StringBuilder();
+		sb.append("Number of ontologies with extracted class names: " + infos.size() + "\n");
+		sb.append("The following ontologies exceeded the reasoning timeout and have asserted parents only:\n");
+		for (OntologyExtractionInfo info : infos) {
+			if (info.reasoningTimedOut) {
+				sb.append("\t");
+				sb.append(info.acronym);
+				sb.append("\n");
+			}
+		}
+		if (getNumReasoningTimeouts() == 0)
+			sb.append("<none>\n");
+
+		sb.append("\n");
+		sb.append("Times in milliseconds per ontology (acronym, parents, reasoner, loading, reasoning, writing):\n");
+		for (OntologyExtractionInfo info : infos) {
+			sb.append("\t");
+			sb.append(info.acronym);
+			sb.append("\t");
+			sb.append(info.parents);
+			sb.append("\t");
+			sb.append(info.reasoner != null ? info.reasoner : "-");
+			sb.append("\t");
+			sb.append(info.loadingTime);
+			sb.append("\t");
+			sb.append(info.reasoningTime);
+			sb.append("\t");
+			sb.append(info.writingTime);
+			sb.append("\n");
+		}
+		if (infos.stream().anyMatch(info -> info.reasoningModules > 0)) {
+			sb.append("\n");
+			sb.append(
+					"Modular classification (acronym, modules, reasoning time, summed module reasoning time, parallelism):\n");
+			for (OntologyExtractionInfo info : infos) {
+				if (info.reasoningModules == 0)
+					continue;
+				sb.append("\t");
+				sb.append(info.acronym);
+				sb.append("\t");
+				sb.append(info.reasoningModules);
+				sb.append("\t");
+				sb.append(info.reasoningTime);
+				sb.append("\t");
+				sb.append(info.summedModuleReasoningTime);
+				sb.append("\t");
+				sb.append(String.format("%.2f",
+						info.reasoningTime > 0 ? (double) info.summedModuleReasoningTime / info.reasoningTime : 1d));
+				sb.append("\n");
+			}
+		}
+		if (infos.stream().anyMatch(info -> info.droppedAxioms > 0)) {
+			sb.append("\n");
+			sb.append(
+					"Axioms dropped while loading because they are not required without reasoning (acronym, dropped axioms, estimated heap saved in bytes at "
+							+ OntologyAdmissionController.DEFAULT_HEAP_BYTES_PER_AXIOM
+							+ " bytes per dropped axiom, not measured):\n");
+			for (OntologyExtractionInfo info : infos) {
+				if (info.droppedAxioms == 0)
+					continue;
+				sb.append("\t");
+				sb.append(info.acronym);
+				sb.append("\t");
+				sb.append(info.droppedAxioms);
+				sb.append("\t");
+				sb.append(info.estimatedHeapSaved);
+				sb.append("\n");
+			}
+		}
+		if (stringInterner != null) {
+			sb.append("\n");
+			sb.append("String interning: " + stringInterner + "\n");
+		}
+		if (importCache != null) {
+			sb.append("\n");
+			sb.append("Import cache: " + importCache + "\n");
+		}
+		if (hierarchyCache != null) {
+			sb.append("\n");
+			sb.append("Inferred hierarchy cache: " + hierarchyCache + "\n");
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,280 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLOntologyStorageException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import de.julielab.bioportal.ontologies.data.ImportCacheEntry;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+
+/**
+ * <p>
+ * A directory of imported ontologies that is shared by the
+ * {@link OntologyLoader OntologyLoaders} of all workers and kept across runs.
+ * Many ontologies import the same modules, e.g. BFO, RO or IAO. Without the
+ * cache, these are parsed again for each importing ontology and possibly
+ * downloaded from the web.
+ * </p>
+ * <p>
+ * After an ontology has been loaded, each ontology of its imports closure
+ * that has not been loaded from the cache is stored in OWL functional syntax
+ * together with a JSON {@link ImportCacheEntry}. Entries are keyed by the
+ * ontology IRI, the version IRI and whether the ontology has been loaded with
+ * all axioms or annotation-only. The IRIs by which the ontology has been
+ * imported are mapped to the cached document by
+ * {@link #getDocumentIRI(IRI, boolean)}.
+ * </p>
+ * <p>
+ * Since the version IRI does not identify the content of imports without
+ * one, their key also includes the document they have been loaded from and,
+ * for local files, its modification time. Such an entry is not used anymore
+ * when its local source file has been modified since; the import is then
+ * loaded from the file and stored anew. Unversioned imports loaded from the
+ * web cannot be checked without downloading them again and are used as long
+ * as their entry exists.
+ * </p>
+ */
+public class ImportCache {
+
+	private static final Logger log = LoggerFactory.getLogger(ImportCache.class);
+
+	public static final String ENTRY_EXT = ".import.json";
+	public static final String DOCUMENT_EXT = ".ofn";
+
+	private File cacheDir;
+	private String cacheDirUri;
+	/**
+	 * The entries by the import IRI, prefixed with the loading mode.
+	 */
+	private Map<String, ImportCacheEntry> entriesByImportIRI = new ConcurrentHashMap<>();
+	private Gson gson = BioPortalToolUtils.getGson();
+	private LongAdder hits = new LongAdder();
+	private LongAdder misses = new LongAdder();
+	private LongAdder stored = new LongAdder();
+
+	/**
+	 * Opens the cache in the given directory, reading the existing entries
+	 * that are not outdated.
+	 * 
+	 * @param cacheDir
+	 *            The cache directory. It is created if it does not exist.
+	 * @throws IOException
+	 *             If the directory cannot be created.
+	 */
+	public ImportCache(File cacheDir) throws IOException {
+		this.cacheDir = cacheDir;
+		Files.createDirectories(cacheDir.toPath());
+		this.cacheDirUri = cacheDir.getAbsoluteFile().toURI().toString();
+		File[] entryFiles = cacheDir.listFiles((dir, name) -> name.endsWith(ENTRY_EXT));
+		for (File entryFile : entryFiles) {
+			try (Reader r = Files.newBufferedReader(entryFile.toPath(), StandardCharsets.UTF_8)) {
+				ImportCacheEntry entry = gson.fromJson(r, ImportCacheEntry.class);
+				if (entry != null && entry.importIRIs != null && new File(cacheDir, entry.document).exists()
+						&& !isOutdated(entry))
+					addEntry(entry);
+			} catch (IOException | JsonParseException e) {
+				log.warn("Could not read import cache entry {}, ignoring it", entryFile, e);
+			}
+		}
+		log.info("Using the import cache in {} with {} imported ontologies", cacheDir, entryFiles.length);
+	}
+
+	private void addEntry(ImportCacheEntry entry) {
+		for (String importIRI : entry.importIRIs)
+			entriesByImportIRI.put(key(importIRI, entry.annotationOnly), entry);
+	}
+
+	private static String key(String importIRI, boolean annotationOnly) {
+		return (annotationOnly ? "annotationonly " : "complete ") + importIRI;
+	}
+
+	/**
+	 * Looks up the cached document of an import. Meant to be called by an
+	 * {@link org.semanticweb.owlapi.model.OWLOntologyIRIMapper}; each found
+	 * document is counted as a hit.
+	 * 
+	 * @param importIRI
+	 *            The IRI of an imports declaration.
+	 * @param annotationOnly
+	 *            Whether the ontologies are loaded annotation-only, see
+	 *            {@link OntologyLoader#setAnnotationOnly(boolean)}.
+	 * @return The IRI of the cached document or <tt>null</tt> if the import
+	 *         is not cached.
+	 */
+	public IRI getDocumentIRI(IRI importIRI, boolean annotationOnly) {
+		ImportCacheEntry entry = entriesByImportIRI.get(key(importIRI.toString(), annotationOnly));
+		if (entry == null)
+			return null;
+		File document = new File(cacheDir, entry.document);
+		if (!document.exists() || isOutdated(entry))
+			return null;
+		hits.increment();
+		log.debug("Loading import {} from the import cache", importIRI);
+		return IRI.create(document);
+	}
+
+	/**
+	 * @return Whether the entry has no version IRI and its local source file
+	 *         has been modified or removed since it was stored. Unversioned
+	 *         entries stored without their source document are outdated, too.
+	 */
+	private static boolean isOutdated(ImportCacheEntry entry) {
+		if (entry.versionIRI != null)
+			return false;
+		if (entry.sourceDocument == null)
+			return true;
+		if (entry.sourceModificationTime == null)
+			return false;
+		File source = getLocalFile(IRI.create(entry.sourceDocument));
+		return source == null || source.lastModified() != entry.sourceModificationTime;
+	}
+
+	/**
+	 * @return The local file of the document IRI or <tt>null</tt> if it is not
+	 *         a file IRI.
+	 */
+	private static File getLocalFile(IRI documentIRI) {
+		return "file".equals(documentIRI.getScheme()) ? new File(documentIRI.toURI()) : null;
+	}
+
+	/**
+	 * Stores the ontologies of the imports closure of <tt>o</tt> that have not
+	 * been loaded from the cache. Anonymous ontologies are not stored since
+	 * they have no key. Storage errors are logged and do not affect the loaded
+	 * ontology.
+	 * 
+	 * @param o
+	 *            A loaded ontology.
+	 * @param annotationOnly
+	 *            Whether the ontology has been loaded annotation-only.
+	 */
+	public void storeImports(OWLOntology o, boolean annotationOnly) {
+		OWLOntologyManager manager = o.getOWLOntologyManager();
+		// the IRIs by which each ontology of the closure is imported
+		Map<OWLOntology, Set<String>> importIRIs = new HashMap<>();
+		for (Iterator<OWLOntology> it = o.importsClosure().iterator(); it.hasNext();) {
+			OWLOntology importing = it.next();
+			for (Iterator<OWLImportsDeclaration> declIt = importing.importsDeclarations().iterator(); declIt
+					.hasNext();) {
+				OWLImportsDeclaration declaration = declIt.next();
+				OWLOntology imported = manager.getImportedOntology(declaration);
+				if (imported != null)
+					importIRIs.computeIfAbsent(imported, k -> new LinkedHashSet<>())
+							.add(declaration.getIRI().toString());
+			}
+		}
+		for (Map.Entry<OWLOntology, Set<String>> imported : importIRIs.entrySet()) {
+			OWLOntology importedOntology = imported.getKey();
+			if (importedOntology == o
+					|| manager.getOntologyDocumentIRI(importedOntology).toString().startsWith(cacheDirUri))
+				continue;
+			misses.increment();
+			OWLOntologyID id = importedOntology.getOntologyID();
+			if (!id.getOntologyIRI().isPresent())
+				continue;
+			try {
+				store(importedOntology, imported.getValue(), annotationOnly);
+			} catch (IOException | OWLOntologyStorageException e) {
+				log.warn("Could not store the imported ontology {} in the import cache", id, e);
+			}
+		}
+	}
+
+	private synchronized void store(OWLOntology imported, Set<String> importIRIs, boolean annotationOnly)
+			throws IOException, OWLOntologyStorageException {
+		OWLOntologyID id = imported.getOntologyID();
+		ImportCacheEntry entry = new ImportCacheEntry();
+		entry.ontologyIRI = id.getOntologyIRI().get().toString();
+		entry.versionIRI = id.getVersionIRI().isPresent() ? id.getVersionIRI().get().toString() : null;
+		entry.annotationOnly = annotationOnly;
+		IRI sourceDocument = imported.getOWLOntologyManager().getOntologyDocumentIRI(imported);
+		entry.sourceDocument = sourceDocument.toString();
+		File sourceFile = getLocalFile(sourceDocument);
+		if (sourceFile != null && sourceFile.exists())
+			entry.sourceModificationTime = sourceFile.lastModified();
+		String key = entry.ontologyIRI + " " + entry.versionIRI + " " + annotationOnly;
+		if (entry.versionIRI == null)
+			key += " " + entry.sourceDocument + " " + entry.sourceModificationTime;
+		String name = BioPortalToolUtils.sha256(key);
+		entry.document = name + DOCUMENT_EXT;
+		Set<String> allImportIRIs = new LinkedHashSet<>(importIRIs);
+		allImportIRIs.add(entry.ontologyIRI);
+		if (entry.versionIRI != null)
+			allImportIRIs.add(entry.versionIRI);
+		ImportCacheEntry existingEntry = entriesByImportIRI.get(key(entry.ontologyIRI, annotationOnly));
+		if (existingEntry != null && existingEntry.document.equals(entry.document))
+			allImportIRIs.addAll(existingEntry.importIRIs);
+		entry.importIRIs = new ArrayList<>(allImportIRIs);
+
+		File document = new File(cacheDir, entry.document);
+		File tmpDocument = new File(cacheDir, entry.document + ".tmp");
+		try (OutputStream os = Files.newOutputStream(tmpDocument.toPath())) {
+			imported.getOWLOntologyManager().saveOntology(imported, new FunctionalSyntaxDocumentFormat(), os);
+		}
+		Files.move(tmpDocument.toPath(), document.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		File entryFile = new File(cacheDir, name + ENTRY_EXT);
+		File tmpEntryFile = new File(cacheDir, name + ENTRY_EXT + ".tmp");
+		try (Writer w = Files.newBufferedWriter(tmpEntryFile.toPath(), StandardCharsets.UTF_8)) {
+			gson.toJson(entry, w);
+		}
+		Files.move(tmpEntryFile.toPath(), entryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		addEntry(entry);
+		stored.increment();
+		log.debug("Stored imported ontology {} in the import cache as {}", id, document);
+	}
+
+	/**
+	 * @return The number of imports that have been loaded from the cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of imports that have been loaded from elsewhere.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The number of imports that have been stored in the cache.
+	 */
+	public long getNumStored() {
+		return stored.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses, %d imports stored in %s", getHits(), getMisses(), getNumStored(),
+				cacheDir);
+	}
+}
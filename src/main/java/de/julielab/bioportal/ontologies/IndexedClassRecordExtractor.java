@@ -0,0 +1,43 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLClass;
+
+/**
+ * A {@link ClassRecordExtractor} for classes that have been read without
+ * building an OWL API ontology. The annotation values come from a
+ * {@link ClassAnnotationIndex} and the parents from a map of asserted named
+ * super classes.
+ */
+class IndexedClassRecordExtractor extends ClassRecordExtractor {
+
+	private ClassAnnotationIndex annotationIndex;
+	private Map<IRI, List<OWLClass>> superClasses;
+
+	IndexedClassRecordExtractor(AnnotationPropertySet properties, boolean filterDeprecated, Object ontologyName,
+			ClassAnnotationIndex annotationIndex, Map<IRI, List<OWLClass>> superClasses) {
+		super(properties, filterDeprecated, ontologyName);
+		this.annotationIndex = annotationIndex;
+		this.superClasses = superClasses;
+	}
+
+	@Override
+	protected Iterator<OWLAnnotationValue> annotationValues(OWLClass c, OWLAnnotationProperty property) {
+		return annotationIndex.getValues(c.getIRI(), property).iterator();
+	}
+
+	@Override
+	protected void determineClassParents(OWLClass c, List<String> parents) {
+		List<OWLClass> superClassList = superClasses.get(c.getIRI());
+		if (superClassList != null) {
+			for (OWLClass superClass : superClassList)
+				parents.add(intern(superClass.getIRI().toString()));
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.reasoner.Node;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+/**
+ * <p>
+ * The direct named super classes of all classes of a classified ontology,
+ * collected with a single top-down walk over the class hierarchy of a
+ * reasoner. Starting from the node of <tt>owl:Thing</tt>, the direct sub
+ * nodes of each node are visited once. Each class of a sub node gets all
+ * classes of the super node as parents. Thus, the parents equal those of
+ * {@link OWLReasoner#getSuperClasses(org.semanticweb.owlapi.model.OWLClassExpression, boolean)
+ * getSuperClasses(c, true)}, including all members of equivalent class
+ * nodes, without querying the reasoner for each class. The parents of each
+ * class are sorted in the natural order of {@link OWLClass}, i.e. by IRI,
+ * since the walk visits them in a different order than the reasoner returns
+ * them. {@link OWLOntologyClassRecordExtractor} sorts the parents it queries
+ * from the reasoner in the same way.
+ * </p>
+ * <p>
+ * Unsatisfiable classes, which belong to the bottom node, are not part of the
+ * walk. For them and for classes unknown to the reasoner,
+ * {@link #getParents(OWLClass)} returns <tt>null</tt>. After construction,
+ * the hierarchy is read-only and may be queried by multiple threads.
+ * </p>
+ * <p>
+ * The hierarchy can be {@link #write(OutputStream) written} and
+ * {@link #read(InputStream, OWLDataFactory) read} for the
+ * {@link InferredHierarchyCache}. The format consists of a header, the
+ * reasoner name, a table of all class IRIs and, for each class with parents,
+ * the table indexes of the class and its parents.
+ * </p>
+ */
+public class InferredClassHierarchy {
+
+	private static final String MAGIC = "BPIH";
+	private static final int VERSION = 2;
+
+	private Map<OWLClass, List<OWLClass>> parents = new HashMap<>();
+	private int numNodes;
+	private String reasonerName;
+
+	/**
+	 * Walks the class hierarchy of the reasoner. The class hierarchy should
+	 * have been precomputed.
+	 * 
+	 * @param reasoner
+	 *            A reasoner with a precomputed class hierarchy.
+	 */
+	public InferredClassHierarchy(OWLReasoner reasoner) {
+		reasonerName = reasoner.getReasonerName();
+		Node<OWLClass> top = reasoner.getTopClassNode();
+		Deque<Node<OWLClass>> queue = new ArrayDeque<>();
+		Set<OWLClass> visited = new HashSet<>();
+		queue.add(top);
+		visited.add(top.getRepresentativeElement());
+		while (!queue.isEmpty()) {
+			Node<OWLClass> node = queue.poll();
+			++numNodes;
+			List<OWLClass> nodeClasses = node.entities().collect(Collectors.toList());
+			for (Iterator<Node<OWLClass>> it = reasoner.getSubClasses(node.getRepresentativeElement(), true).nodes()
+					.iterator(); it.hasNext();) {
+				Node<OWLClass> subNode = it.next();
+				if (subNode.isBottomNode())
+					continue;
+				for (Iterator<OWLClass> classIt = subNode.entities().iterator(); classIt.hasNext();)
+					parents.computeIfAbsent(classIt.next(), c -> new ArrayList<>(1)).addAll(nodeClasses);
+				if (visited.add(subNode.getRepresentativeElement()))
+					queue.add(subNode);
+			}
+		}
+		for (List<OWLClass> classParents : parents.values())
+			Collections.sort(classParents);
+	}
+
+	/**
+	 * Walks the class hierarchy of the reasoner and then queries the reasoner
+	 * for the parents of the given classes that are not part of the walked
+	 * hierarchy. Thus, {@link #getParents(OWLClass)} returns the parents for
+	 * all given classes without needing the reasoner.
+	 * 
+	 * @param reasoner
+	 *            A reasoner with a precomputed class hierarchy.
+	 * @param classes
+	 *            The classes of the ontology.
+	 */
+	public InferredClassHierarchy(OWLReasoner reasoner, Stream<OWLClass> classes) {
+		this(reasoner);
+		for (Iterator<OWLClass> it = classes.iterator(); it.hasNext();) {
+			OWLClass c = it.next();
+			if (!parents.containsKey(c))
+				parents.put(c, reasoner.getSuperClasses(c, true).entities().sorted().collect(Collectors.toList()));
+		}
+	}
+
+	private InferredClassHierarchy(Map<OWLClass, List<OWLClass>> parents, String reasonerName) {
+		this.parents = parents;
+		this.reasonerName = reasonerName;
+	}
+
+	/**
+	 * Creates a hierarchy from parents that have been determined elsewhere,
+	 * e.g. merged from the hierarchies of ontology modules.
+	 * 
+	 * @param parents
+	 *            The direct named super classes by class.
+	 * @param reasonerName
+	 *            The name of the reasoner that inferred the parents.
+	 * @return The hierarchy.
+	 */
+	static InferredClassHierarchy fromParents(Map<OWLClass, List<OWLClass>> parents, String reasonerName) {
+		return new InferredClassHierarchy(parents, reasonerName);
+	}
+
+	/**
+	 * @param c
+	 *            A class of the ontology.
+	 * @return The direct named super classes of <tt>c</tt>, possibly empty,
+	 *         or <tt>null</tt> if <tt>c</tt> is not part of the satisfiable
+	 *         class hierarchy below <tt>owl:Thing</tt>.
+	 */
+	public List<OWLClass> getParents(OWLClass c) {
+		return parents.get(c);
+	}
+
+	/**
+	 * @return The number of classes with parents.
+	 */
+	public int size() {
+		return parents.size();
+	}
+
+	/**
+	 * @return The number of visited hierarchy nodes, 0 if the hierarchy has
+	 *         been read.
+	 */
+	public int getNumNodes() {
+		return numNodes;
+	}
+
+	/**
+	 * @return The name of the reasoner that inferred the hierarchy.
+	 */
+	public String getReasonerName() {
+		return reasonerName;
+	}
+
+	/**
+	 * Writes the hierarchy. The stream is not closed.
+	 * 
+	 * @param os
+	 *            The stream to write to.
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	public void write(OutputStream os) throws IOException {
+		DataOutputStream dos = new DataOutputStream(os);
+		dos.writeUTF(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeUTF(reasonerName != null ? reasonerName : "");
+		Map<OWLClass, Integer> classIndexes = new HashMap<>();
+		List<OWLClass> classTable = new ArrayList<>();
+		for (Map.Entry<OWLClass, List<OWLClass>> entry : parents.entrySet()) {
+			classIndexes.computeIfAbsent(entry.getKey(), c -> addClass(c, classTable));
+			for (OWLClass parent : entry.getValue())
+				classIndexes.computeIfAbsent(parent, c -> addClass(c, classTable));
+		}
+		dos.writeInt(classTable.size());
+		for (OWLClass c : classTable)
+			dos.writeUTF(c.getIRI().toString());
+		dos.writeInt(parents.size());
+		for (Map.Entry<OWLClass, List<OWLClass>> entry : parents.entrySet()) {
+			dos.writeInt(classIndexes.get(entry.getKey()));
+			dos.writeInt(entry.getValue().size());
+			for (OWLClass parent : entry.getValue())
+				dos.writeInt(classIndexes.get(parent));
+		}
+		dos.flush();
+	}
+
+	private static int addClass(OWLClass c, List<OWLClass> classTable) {
+		classTable.add(c);
+		return classTable.size() - 1;
+	}
+
+	/**
+	 * Reads a hierarchy written with {@link #write(OutputStream)}. The stream
+	 * is not closed.
+	 * 
+	 * @param is
+	 *            The stream to read from.
+	 * @param dataFactory
+	 *            The factory to create the classes with.
+	 * @return The hierarchy.
+	 * @throws IOException
+	 *             If reading fails or the data is not a hierarchy.
+	 */
+	public static InferredClassHierarchy read(InputStream is, OWLDataFactory dataFactory) throws IOException {
+		DataInputStream dis = new DataInputStream(is);
+		if (!MAGIC.equals(dis.readUTF()))
+			throw new IOException("The data is not an inferred class hierarchy");
+		int version = dis.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported inferred class hierarchy version " + version);
+		String reasonerName = dis.readUTF();
+		OWLClass[] classTable = new OWLClass[dis.readInt()];
+		for (int i = 0; i < classTable.length; i++)
+			classTable[i] = dataFactory.getOWLClass(IRI.create(dis.readUTF()));
+		int numEntries = dis.readInt();
+		Map<OWLClass, List<OWLClass>> parents = new HashMap<>(numEntries * 4 / 3 + 1);
+		for (int i = 0; i < numEntries; i++) {
+			OWLClass c = classTable[dis.readInt()];
+			int numParents = dis.readInt();
+			List<OWLClass> classParents = new ArrayList<>(numParents);
+			for (int j = 0; j < numParents; j++)
+				classParents.add(classTable[dis.readInt()]);
+			parents.put(c, classParents);
+		}
+		return new InferredClassHierarchy(parents, reasonerName.isEmpty() ? null : reasonerName);
+	}
+}
@@ -0,0 +1,179 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.io.FileUtils;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.julielab.bioportal.util.BioPortalToolUtils;
+import de.julielab.java.utilities.FileUtilities;
+
+/**
+ * <p>
+ * A directory of {@link InferredClassHierarchy inferred class hierarchies}
+ * that is kept across extraction runs. A hierarchy is stored under the hash
+ * of the content of the ontology file or directory and the
+ * {@link ReasonerSelector#getIdentity() identity} of the reasoners. If the
+ * same ontology is classified with the same reasoners again, the hierarchy is
+ * read from the cache and no reasoner is created. Imports that are not part
+ * of the ontology file or directory do not contribute to the key.
+ * </p>
+ * <p>
+ * Each use of a hierarchy updates the modification time of its file. After a
+ * hierarchy has been stored, hierarchies that have not been used for longer
+ * than the maximum age are deleted and then the least recently used
+ * hierarchies until the cache fits into the maximum size.
+ * </p>
+ */
+public class InferredHierarchyCache {
+
+	private static final Logger log = LoggerFactory.getLogger(InferredHierarchyCache.class);
+
+	public static final String CACHE_EXT = ".hierarchy.gz";
+
+	private File cacheDir;
+	private long maxSize;
+	private long maxAge;
+	private LongAdder hits = new LongAdder();
+	private LongAdder misses = new LongAdder();
+
+	/**
+	 * @param cacheDir
+	 *            The cache directory. It is created if it does not exist.
+	 * @param maxSize
+	 *            The maximum total size of the cached files in bytes, a
+	 *            non-positive value for no limit.
+	 * @param maxAge
+	 *            The maximum time in milliseconds since the last use of a
+	 *            cached hierarchy, a non-positive value for no limit.
+	 * @throws IOException
+	 *             If the directory cannot be created.
+	 */
+	public InferredHierarchyCache(File cacheDir, long maxSize, long maxAge) throws IOException {
+		this.cacheDir = cacheDir;
+		this.maxSize = maxSize;
+		this.maxAge = maxAge;
+		Files.createDirectories(cacheDir.toPath());
+	}
+
+	/**
+	 * @param inputHash
+	 *            The content hash of the ontology file or directory.
+	 * @param reasonerIdentity
+	 *            The identity of the reasoners, see
+	 *            {@link ReasonerSelector#getIdentity()}.
+	 * @return The cache key.
+	 */
+	public static String getKey(String inputHash, String reasonerIdentity) {
+		return BioPortalToolUtils.sha256(inputHash + " " + reasonerIdentity);
+	}
+
+	private File getFile(String key) {
+		return new File(cacheDir, key + CACHE_EXT);
+	}
+
+	/**
+	 * Reads the hierarchy stored under <tt>key</tt>. A hierarchy that cannot
+	 * be read is deleted.
+	 * 
+	 * @param key
+	 *            The cache key.
+	 * @param dataFactory
+	 *            The factory to create the classes with.
+	 * @return The hierarchy or <tt>null</tt> if it is not cached.
+	 */
+	public InferredClassHierarchy load(String key, OWLDataFactory dataFactory) {
+		File file = getFile(key);
+		if (!file.exists()) {
+			misses.increment();
+			return null;
+		}
+		try (InputStream is = FileUtilities.getInputStreamFromFile(file)) {
+			InferredClassHierarchy hierarchy = InferredClassHierarchy.read(is, dataFactory);
+			file.setLastModified(System.currentTimeMillis());
+			hits.increment();
+			return hierarchy;
+		} catch (IOException | RuntimeException e) {
+			log.warn("Could not read the cached class hierarchy {}, deleting it", file, e);
+			FileUtils.deleteQuietly(file);
+			misses.increment();
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the hierarchy under <tt>key</tt> and evicts old hierarchies.
+	 * Storage errors are logged only.
+	 * 
+	 * @param key
+	 *            The cache key.
+	 * @param hierarchy
+	 *            The hierarchy to store.
+	 */
+	public void store(String key, InferredClassHierarchy hierarchy) {
+		File file = getFile(key);
+		File tmpFile = new File(cacheDir, key + ".hierarchy.tmp.gz");
+		try {
+			try (OutputStream os = BioPortalToolUtils.getOutputStreamToFile(tmpFile)) {
+				hierarchy.write(os);
+			}
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			log.debug("Stored the class hierarchy of {} classes in {}", hierarchy.size(), file);
+		} catch (IOException e) {
+			log.warn("Could not store the class hierarchy in {}", file, e);
+			FileUtils.deleteQuietly(tmpFile);
+		}
+		evict();
+	}
+
+	private synchronized void evict() {
+		File[] files = cacheDir.listFiles((dir, name) -> name.endsWith(CACHE_EXT));
+		if (files == null)
+			return;
+		// least recently used first
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		long now = System.currentTimeMillis();
+		long totalSize = Arrays.stream(files).mapToLong(File::length).sum();
+		for (File file : files) {
+			boolean tooOld = maxAge > 0 && now - file.lastModified() > maxAge;
+			boolean tooLarge = maxSize > 0 && totalSize > maxSize;
+			if (!tooOld && !tooLarge)
+				break;
+			long size = file.length();
+			if (file.delete()) {
+				totalSize -= size;
+				log.debug("Evicted the cached class hierarchy {}", file);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of hierarchies read from the cache.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of hierarchies that were not cached.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d hits, %d misses in %s", getHits(), getMisses(), cacheDir);
+	}
+}
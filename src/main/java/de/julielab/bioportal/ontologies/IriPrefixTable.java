@@ -0,0 +1,154 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import de.julielab.bioportal.util.BioPortalToolUtils;
+import de.julielab.java.utilities.FileUtilities;
+
+/**
+ * <p>
+ * A table of IRI namespaces to write IRIs in a compact form. An IRI is split
+ * after its last <tt>#</tt> or <tt>/</tt> into the namespace and the local
+ * name. It is then written as the index of the namespace in the table, a colon
+ * and the local name, e.g. <tt>3:GO_0000001</tt> for
+ * <tt>http://purl.obolibrary.org/obo/GO_0000001</tt> if the OBO namespace has
+ * index 3. Namespaces are added to the table when they are first seen.
+ * </p>
+ * <p>
+ * Compact IRIs cannot be confused with full IRIs because the scheme of an IRI
+ * must start with a letter. IRIs without a namespace are kept as they are.
+ * </p>
+ */
+public class IriPrefixTable {
+
+	private List<String> namespaces = new ArrayList<>();
+	private Map<String, Integer> namespaceIndex = new HashMap<>();
+
+	public IriPrefixTable() {
+	}
+
+	/**
+	 * @param namespaces
+	 *            The namespaces of an existing table, see
+	 *            {@link #getNamespaces()}.
+	 */
+	public IriPrefixTable(List<String> namespaces) {
+		for (String namespace : namespaces)
+			addNamespace(namespace);
+	}
+
+	/**
+	 * Returns the compact form of <tt>iri</tt>, adding its namespace to the
+	 * table if necessary.
+	 * 
+	 * @param iri
+	 *            A full IRI.
+	 * @return The compact IRI.
+	 */
+	public String compact(String iri) {
+		int localNameStart = Math.max(iri.lastIndexOf('#'), iri.lastIndexOf('/')) + 1;
+		if (localNameStart == 0)
+			return iri;
+		String namespace = iri.substring(0, localNameStart);
+		Integer index = namespaceIndex.get(namespace);
+		if (index == null)
+			index = addNamespace(namespace);
+		return index + ":" + iri.substring(localNameStart);
+	}
+
+	/**
+	 * Returns the full form of <tt>iri</tt> if it is a compact IRI of this
+	 * table and <tt>iri</tt> itself otherwise.
+	 * 
+	 * @param iri
+	 *            A compact or full IRI.
+	 * @return The full IRI.
+	 */
+	public String expand(String iri) {
+		int index = 0;
+		int i = 0;
+		for (; i < iri.length() && Character.isDigit(iri.charAt(i)); i++)
+			index = index * 10 + (iri.charAt(i) - '0');
+		if (i == 0 || i == iri.length() || iri.charAt(i) != ':')
+			return iri;
+		if (index >= namespaces.size())
+			throw new IllegalArgumentException("The compact IRI " + iri + " refers to namespace " + index
+					+ " but the table has only " + namespaces.size() + " namespaces");
+		return namespaces.get(index) + iri.substring(i + 1);
+	}
+
+	private int addNamespace(String namespace) {
+		int index = namespaces.size();
+		namespaces.add(namespace);
+		namespaceIndex.put(namespace, index);
+		return index;
+	}
+
+	/**
+	 * @return The namespaces in the order of their indices.
+	 */
+	public List<String> getNamespaces() {
+		return Collections.unmodifiableList(namespaces);
+	}
+
+	/**
+	 * Writes the namespaces as a JSON array to <tt>file</tt>, gzipped if the
+	 * file name ends with <tt>.gz</tt>.
+	 * 
+	 * @param file
+	 *            The output file.
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	public void write(File file) throws IOException {
+		try (Writer w = BioPortalToolUtils.getWriterToFile(file)) {
+			write(w);
+		}
+	}
+
+	/**
+	 * Writes the namespaces as a JSON array to <tt>w</tt> without closing it.
+	 * 
+	 * @param w
+	 *            The writer.
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	public void write(Writer w) throws IOException {
+		BioPortalToolUtils.getGson().toJson(namespaces, w);
+	}
+
+	/**
+	 * Reads a table written by {@link #write(File)}.
+	 * 
+	 * @param file
+	 *            The namespace file.
+	 * @return The table.
+	 * @throws IOException
+	 *             If reading fails or the file is no namespace table.
+	 */
+	public static IriPrefixTable read(File file) throws IOException {
+		Gson gson = BioPortalToolUtils.getGson();
+		try (Reader r = FileUtilities.getReaderFromFile(file)) {
+			List<String> namespaces = gson.fromJson(r, new TypeToken<List<String>>() {
+			}.getType());
+			if (namespaces == null)
+				throw new IOException("The namespace file " + file + " is empty");
+			return new IriPrefixTable(namespaces);
+		} catch (JsonParseException e) {
+			throw new IOException("Could not read the namespace file " + file, e);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.semanticweb.owlapi.search.EntitySearcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import uk.ac.manchester.cs.owlapi.modularity.SyntacticLocalityModuleExtractor;
+
+/**
+ * <p>
+ * Classifies an ontology by classifying syntactic locality modules of it in
+ * parallel, each with its own reasoner. The classes of the ontology are
+ * partitioned into groups and for each group, the ⊥-module of the group
+ * classes is extracted with the {@link SyntacticLocalityModuleExtractor} and
+ * classified. A ⊥-module preserves all subsumptions between the classes of
+ * its signature, so the direct super classes of the group classes in the
+ * module are those in the whole ontology. The parents of all groups are
+ * merged into one {@link InferredClassHierarchy}.
+ * </p>
+ * <p>
+ * The result is exact for any partition; the partition only determines how
+ * much the modules overlap and thus the speedup. Classes are grouped by the
+ * top-level class of their first asserted super class chain. These branches
+ * are distributed over the groups so that the groups have similar numbers of
+ * classes. Ontologies with a few large, interconnected branches may yield
+ * modules close to the whole ontology and little speedup.
+ * </p>
+ */
+public class ModularClassifier {
+
+	private static final Logger log = LoggerFactory.getLogger(ModularClassifier.class);
+
+	private ExecutorService executor;
+	private int numModules;
+
+	/**
+	 * @param executor
+	 *            The executor to classify the modules on.
+	 * @param numModules
+	 *            The number of modules to split each ontology into.
+	 */
+	public ModularClassifier(ExecutorService executor, int numModules) {
+		this.executor = executor;
+		this.numModules = numModules;
+	}
+
+	/**
+	 * Classifies <tt>o</tt> in modules. The time limit of
+	 * <tt>reasoningTimeLimiter</tt> applies to each module.
+	 * 
+	 * @param o
+	 *            The ontology to classify.
+	 * @param reasonerFactory
+	 *            The factory to create the reasoners for the modules with.
+	 * @param reasoningTimeLimiter
+	 *            Creates the classified reasoners.
+	 * @return The result or <tt>null</tt> if the classification of a module
+	 *         exceeded the time limit. In this case, the classification of the
+	 *         other modules is cancelled without waiting for them.
+	 * @throws InterruptedException
+	 *             If waiting for the modules is interrupted.
+	 */
+	public Result classify(OWLOntology o, OWLReasonerFactory reasonerFactory,
+			ReasoningTimeLimiter reasoningTimeLimiter) throws InterruptedException {
+		long time = System.currentTimeMillis();
+		List<List<OWLClass>> groups = partition(o, numModules);
+		// the ontology is only read on this thread
+		List<OWLAxiom> axioms = o.axioms(Imports.INCLUDED).collect(Collectors.toList());
+		CompletionService<ModuleResult> completionService = new ExecutorCompletionService<>(executor);
+		List<Future<ModuleResult>> futures = new ArrayList<>(groups.size());
+		for (List<OWLClass> group : groups)
+			futures.add(completionService
+					.submit(() -> classifyModule(axioms, group, reasonerFactory, reasoningTimeLimiter)));
+
+		Result result = new Result();
+		result.numModules = groups.size();
+		Map<OWLClass, List<OWLClass>> parents = new HashMap<>();
+		String reasonerName = null;
+		try {
+			// in the order of completion so that a timed out module is noticed
+			// without waiting for the others
+			for (int i = 0; i < futures.size(); i++) {
+				ModuleResult moduleResult = completionService.take().get();
+				if (moduleResult == null)
+					return null;
+				parents.putAll(moduleResult.parents);
+				reasonerName = moduleResult.reasonerName;
+				result.summedModuleTime += moduleResult.time;
+				result.largestModule = Math.max(result.largestModule, moduleResult.numAxioms);
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("The classification of a module of ontology " + o.getOntologyID()
+					+ " failed", e.getCause());
+		} finally {
+			for (Future<ModuleResult> future : futures)
+				future.cancel(true);
+		}
+		result.hierarchy = InferredClassHierarchy.fromParents(parents, reasonerName);
+		result.time = System.currentTimeMillis() - time;
+		log.info(
+				"Classified ontology {} in {} modules of at most {} of {} axioms in {} ms, {} ms summed over the modules, parallelism {}",
+				o.getOntologyID(), result.numModules, result.largestModule, axioms.size(), result.time,
+				result.summedModuleTime, String.format("%.2f", result.getParallelism()));
+		return result;
+	}
+
+	private ModuleResult classifyModule(List<OWLAxiom> axioms, List<OWLClass> group,
+			OWLReasonerFactory reasonerFactory, ReasoningTimeLimiter reasoningTimeLimiter)
+			throws OWLOntologyCreationException {
+		long time = System.currentTimeMillis();
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLDataFactory dataFactory = manager.getOWLDataFactory();
+		SyntacticLocalityModuleExtractor extractor = new SyntacticLocalityModuleExtractor(manager,
+				axioms.stream(), ModuleType.BOT);
+		Set<OWLAxiom> moduleAxioms = extractor
+				.extract(group.stream().map(OWLEntity.class::cast).collect(Collectors.toSet()));
+		// declare the group classes which may not occur in the module
+		OWLOntology module = manager.createOntology(
+				Stream.concat(moduleAxioms.stream(), group.stream().map(dataFactory::getOWLDeclarationAxiom)));
+		OWLReasoner reasoner = reasoningTimeLimiter.createClassifiedReasoner(module, reasonerFactory);
+		if (reasoner == null)
+			return null;
+		try {
+			InferredClassHierarchy moduleHierarchy = new InferredClassHierarchy(reasoner, group.stream());
+			ModuleResult result = new ModuleResult();
+			for (OWLClass c : group)
+				result.parents.put(c, moduleHierarchy.getParents(c));
+			result.reasonerName = reasoner.getReasonerName();
+			result.numAxioms = moduleAxioms.size();
+			result.time = System.currentTimeMillis() - time;
+			return result;
+		} finally {
+			reasoner.dispose();
+		}
+	}
+
+	/**
+	 * Partitions the classes of <tt>o</tt> into at most <tt>numGroups</tt>
+	 * groups by their top-level asserted super class.
+	 * 
+	 * @param o
+	 *            The ontology.
+	 * @param numGroups
+	 *            The maximum number of groups.
+	 * @return The non-empty groups.
+	 */
+	static List<List<OWLClass>> partition(OWLOntology o, int numGroups) {
+		Map<OWLClass, OWLClass> roots = new HashMap<>();
+		Map<OWLClass, List<OWLClass>> branches = new HashMap<>();
+		for (Iterator<OWLClass> it = o.classesInSignature(Imports.INCLUDED).iterator(); it.hasNext();) {
+			OWLClass c = it.next();
+			branches.computeIfAbsent(findRoot(c, o, roots), k -> new ArrayList<>()).add(c);
+		}
+		List<List<OWLClass>> sortedBranches = new ArrayList<>(branches.values());
+		sortedBranches.sort(Comparator.comparingInt((List<OWLClass> b) -> b.size()).reversed());
+		List<List<OWLClass>> groups = new ArrayList<>();
+		for (int i = 0; i < Math.max(1, numGroups); i++)
+			groups.add(new ArrayList<>());
+		// the largest branches first, each to the smallest group
+		for (List<OWLClass> branch : sortedBranches)
+			Collections.min(groups, Comparator.comparingInt(List::size)).addAll(branch);
+		groups.removeIf(List::isEmpty);
+		return groups;
+	}
+
+	/**
+	 * Follows the first asserted named super class of <tt>c</tt> up to a class
+	 * without one.
+	 */
+	private static OWLClass findRoot(OWLClass c, OWLOntology o, Map<OWLClass, OWLClass> roots) {
+		List<OWLClass> path = new ArrayList<>();
+		Set<OWLClass> visited = new HashSet<>();
+		OWLClass current = c;
+		OWLClass root = null;
+		while (root == null) {
+			root = roots.get(current);
+			if (root != null)
+				break;
+			if (!visited.add(current)) {
+				// a cycle of asserted super classes
+				root = current;
+				break;
+			}
+			path.add(current);
+			OWLClass superClass = EntitySearcher.getSuperClasses(current, o.importsClosure())
+					.filter(ce -> !ce.isAnonymous()).map(OWLClassExpression::asOWLClass)
+					.filter(sc -> !sc.isOWLThing()).findFirst().orElse(null);
+			if (superClass == null)
+				root = current;
+			else
+				current = superClass;
+		}
+		for (OWLClass pathClass : path)
+			roots.put(pathClass, root);
+		return root;
+	}
+
+	/**
+	 * The merged hierarchy of a modular classification with the module
+	 * statistics.
+	 */
+	public static class Result {
+		private InferredClassHierarchy hierarchy;
+		private int numModules;
+		private int largestModule;
+		private long time;
+		private long summedModuleTime;
+
+		public InferredClassHierarchy getHierarchy() {
+			return hierarchy;
+		}
+
+		public int getNumModules() {
+			return numModules;
+		}
+
+		/**
+		 * @return The number of axioms of the largest module.
+		 */
+		public int getLargestModule() {
+			return largestModule;
+		}
+
+		/**
+		 * @return The wall clock time of the classification in milliseconds.
+		 */
+		public long getTime() {
+			return time;
+		}
+
+		/**
+		 * @return The sum of the module extraction and classification times of
+		 *         all modules in milliseconds.
+		 */
+		public long getSummedModuleTime() {
+			return summedModuleTime;
+		}
+
+		/**
+		 * @return The summed module time divided by the wall clock time, i.e.
+		 *         the average number of modules classified at the same time.
+		 *         This is not the speedup over the classification as a whole
+		 *         which requires the time of the latter.
+		 */
+		public double getParallelism() {
+			return time > 0 ? (double) summedModuleTime / time : 1;
+		}
+	}
+
+	private static class ModuleResult {
+		private Map<OWLClass, List<OWLClass>> parents = new HashMap<>();
+		private String reasonerName;
+		private int numAxioms;
+		private long time;
+	}
+}
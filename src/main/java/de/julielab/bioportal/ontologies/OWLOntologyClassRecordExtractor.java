@@ -0,0 +1,102 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.search.EntitySearcher;
+
+/**
+ * Extracts class records from a loaded {@link OWLOntology}. The parents are
+ * taken from an {@link InferredClassHierarchy} or a reasoner, if given, or
+ * from the asserted super classes.
+ */
+public class OWLOntologyClassRecordExtractor extends ClassRecordExtractor {
+
+	private OWLOntology o;
+	private OWLReasoner reasoner;
+	private ClassAnnotationIndex annotationIndex;
+	private InferredClassHierarchy classHierarchy;
+
+	/**
+	 * @param properties
+	 * @param filterDeprecated
+	 * @param o
+	 * @param reasoner
+	 *            The reasoner to determine the parents or <tt>null</tt> to use
+	 *            the asserted super classes.
+	 * @param annotationIndex
+	 *            The annotation index of <tt>o</tt> or <tt>null</tt> to search
+	 *            the ontology for the annotations of each class.
+	 */
+	public OWLOntologyClassRecordExtractor(AnnotationPropertySet properties, boolean filterDeprecated, OWLOntology o,
+			OWLReasoner reasoner, ClassAnnotationIndex annotationIndex) {
+		super(properties, filterDeprecated, o.getOntologyID());
+		this.o = o;
+		this.reasoner = reasoner;
+		this.annotationIndex = annotationIndex;
+	}
+
+	/**
+	 * Sets the class hierarchy of the reasoner, computed in advance, from
+	 * which the parents are taken instead of querying the reasoner for each
+	 * class. The reasoner is only queried for the classes that are not part of
+	 * the hierarchy.
+	 * 
+	 * @param classHierarchy
+	 *            The class hierarchy of the reasoner or <tt>null</tt>.
+	 */
+	public void setClassHierarchy(InferredClassHierarchy classHierarchy) {
+		this.classHierarchy = classHierarchy;
+	}
+
+	/**
+	 * If an annotation index is given, the values are taken from the index.
+	 * Otherwise, the ontology is searched for the annotations.
+	 */
+	@Override
+	protected Iterator<OWLAnnotationValue> annotationValues(OWLClass c, OWLAnnotationProperty property) {
+		if (annotationIndex != null)
+			return annotationIndex.getValues(c.getIRI(), property).iterator();
+		return EntitySearcher.getAnnotations(c, o, property).map(OWLAnnotation::getValue).iterator();
+	}
+
+	@Override
+	protected void determineClassParents(OWLClass c, List<String> parents) {
+		List<OWLClass> hierarchyParents = classHierarchy != null ? classHierarchy.getParents(c) : null;
+		if (hierarchyParents != null) {
+			for (int i = 0; i < hierarchyParents.size(); i++)
+				parents.add(intern(hierarchyParents.get(i).getIRI().toString()));
+		} else if (reasoner != null) {
+			// reasoners are not required to be thread safe; this matters for
+			// parallel class extraction. The parents are sorted like those of
+			// the InferredClassHierarchy.
+			synchronized (reasoner) {
+				collectClassParents(
+						reasoner.getSuperClasses(c, true).entities().sorted().map(OWLClassExpression.class::cast),
+						parents);
+			}
+		} else {
+			// sorted and without duplicates like the parents read by the
+			// other engines
+			collectClassParents(EntitySearcher.getSuperClasses(c, o).distinct().sorted(), parents);
+		}
+	}
+
+	private void collectClassParents(Stream<OWLClassExpression> superClasses, List<String> parents) {
+		for (Iterator<OWLClassExpression> iterator = superClasses.iterator(); iterator.hasNext();) {
+			OWLClassExpression classExpr = iterator.next();
+			if (!classExpr.isAnonymous()) {
+				OWLClass owlClass = classExpr.asOWLClass();
+				parents.add(intern(owlClass.getIRI().toString()));
+			}
+		}
+	}
+}
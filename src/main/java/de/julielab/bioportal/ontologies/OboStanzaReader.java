@@ -0,0 +1,478 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.julielab.bioportal.util.OboFormatException;
+import de.julielab.bioportal.util.StringInterner;
+import de.julielab.java.utilities.FileUtilities;
+
+/**
+ * <p>
+ * Reads the class information required for class name extraction directly
+ * from the stanzas of an OBO file without translating the file into an OWL API
+ * ontology. The tags <tt>name</tt>, <tt>synonym</tt>, <tt>def</tt>,
+ * <tt>comment</tt> and <tt>is_obsolete</tt> of the <tt>[Term]</tt> stanzas are
+ * stored as the annotation values that the OWL API OBO translation would
+ * create, e.g. <tt>rdfs:label</tt> for <tt>name</tt> and
+ * <tt>oboInOwl:hasExactSynonym</tt> for an exact synonym. The <tt>is_a</tt>
+ * tags become the parents. Thus, the {@link ClassRecordExtractor} produces the
+ * same records as for the translated ontology.
+ * </p>
+ * <p>
+ * OBO identifiers are converted into IRIs like the OWL API does: a prefixed
+ * identifier <tt>GO:0008150</tt> becomes
+ * <tt>http://purl.obolibrary.org/obo/GO_0008150</tt>. Like the OWL API, the
+ * <tt>idspace</tt> header tag is ignored. Classes that are only
+ * referenced, e.g. by <tt>is_a</tt> or <tt>relationship</tt>, are classes of
+ * the ontology, too. Imports are not followed.
+ * </p>
+ */
+public class OboStanzaReader {
+
+	private static final Logger log = LoggerFactory.getLogger(OboStanzaReader.class);
+
+	public static final String OBO_IRI_PREFIX = "http://purl.obolibrary.org/obo/";
+	private static final String OBO_IN_OWL = "http://www.geneontology.org/formats/oboInOwl#";
+	private static final String IAO_DEFINITION = OBO_IRI_PREFIX + "IAO_0000115";
+	private static final Pattern TAG_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	/**
+	 * The relevant annotation properties by the OBO tag or synonym scope they
+	 * are created from.
+	 */
+	private Map<String, OWLAnnotationProperty> tagProperties = new HashMap<>();
+	private OWLAnnotationProperty deprecatedProperty;
+
+	private ClassAnnotationIndex annotationIndex = new ClassAnnotationIndex();
+	private Map<IRI, List<OWLClass>> superClasses = new HashMap<>();
+	private Set<String> classes = new HashSet<>();
+
+	private String defaultIdSpace = "";
+	private int numImports;
+	private int numTerms;
+	private StringInterner stringInterner;
+
+	public OboStanzaReader(AnnotationPropertySet properties) {
+		Set<OWLAnnotationProperty> relevantProperties = properties.getAllProperties();
+		addTagProperty("name", df.getRDFSLabel(), relevantProperties);
+		addTagProperty("comment", df.getRDFSComment(), relevantProperties);
+		addTagProperty("def", df.getOWLAnnotationProperty(IRI.create(IAO_DEFINITION)), relevantProperties);
+		for (String scope : new String[] { "EXACT", "NARROW", "BROAD", "RELATED" }) {
+			String scopeName = scope.charAt(0) + scope.substring(1).toLowerCase();
+			addTagProperty(scope, df.getOWLAnnotationProperty(IRI.create(OBO_IN_OWL + "has" + scopeName + "Synonym")),
+					relevantProperties);
+		}
+		OWLAnnotationProperty deprecated = df.getOWLDeprecated();
+		if (relevantProperties.contains(deprecated))
+			deprecatedProperty = deprecated;
+	}
+
+	/**
+	 * Sets an interner that is shared by the extractions of all ontologies.
+	 * The class IRIs and the annotation values are interned with it.
+	 * 
+	 * @param stringInterner
+	 *            The interner or <tt>null</tt> to not intern strings.
+	 */
+	public void setStringInterner(StringInterner stringInterner) {
+		this.stringInterner = stringInterner;
+	}
+
+	private String intern(String s) {
+		return stringInterner != null ? stringInterner.intern(s) : s;
+	}
+
+	private void addTagProperty(String tag, OWLAnnotationProperty property,
+			Set<OWLAnnotationProperty> relevantProperties) {
+		if (relevantProperties.contains(property))
+			tagProperties.put(tag, property);
+	}
+
+	/**
+	 * @param file
+	 *            An ontology file.
+	 * @return Whether the file name, ignoring compression suffixes, has the
+	 *         <tt>.obo</tt> extension.
+	 */
+	public static boolean isOboFile(File file) {
+		String lcfn = file.getName().toLowerCase();
+		if (lcfn.endsWith(".gz"))
+			lcfn = lcfn.substring(0, lcfn.length() - 3);
+		else if (lcfn.endsWith(".gzip"))
+			lcfn = lcfn.substring(0, lcfn.length() - 5);
+		return lcfn.endsWith(".obo");
+	}
+
+	/**
+	 * Reads the stanzas of <tt>file</tt>.
+	 *
+	 * @param file
+	 *            An OBO file.
+	 * @throws IOException
+	 *             If reading the file fails.
+	 * @throws OboFormatException
+	 *             If the file is no OBO file, e.g. an OWL file with the
+	 *             <tt>.obo</tt> extension.
+	 */
+	public void read(File file) throws IOException, OboFormatException {
+		try (BufferedReader br = FileUtilities.getReaderFromFile(file)) {
+			Stanza stanza = null;
+			boolean header = true;
+			String line;
+			int lineNumber = 0;
+			while ((line = br.readLine()) != null) {
+				++lineNumber;
+				line = line.trim();
+				if (line.isEmpty() || line.charAt(0) == '!')
+					continue;
+				if (line.charAt(0) == '[') {
+					if (stanza != null)
+						addTerm(stanza);
+					header = false;
+					stanza = line.startsWith("[Term]") || line.startsWith("[Instance]") ? new Stanza(line) : null;
+					continue;
+				}
+				int colon = line.indexOf(':');
+				String tag = colon > 0 ? line.substring(0, colon) : null;
+				if (tag == null || !TAG_PATTERN.matcher(tag).matches()) {
+					// e.g. OWL/XML or functional syntax in a file with the .obo
+					// extension
+					if (header)
+						throw new OboFormatException("File " + file + " is not in OBO format, line " + lineNumber
+								+ " is no tag-value pair: " + line);
+					log.debug("Ignoring line {} of {} which is no tag-value pair: {}", lineNumber, file, line);
+					continue;
+				}
+				String value = line.substring(colon + 1).trim();
+				if (header)
+					readHeaderTag(tag, value);
+				else if (stanza != null)
+					readStanzaTag(stanza, tag, value);
+			}
+			if (stanza != null)
+				addTerm(stanza);
+		}
+		if (numImports > 0)
+			log.warn("Ontology file {} has {} imports that are not followed by the OBO extraction.", file,
+					numImports);
+		for (List<OWLClass> parents : superClasses.values()) {
+			if (parents.size() > 1) {
+				// sorted and without duplicates, like the OWL API axioms
+				Collections.sort(parents);
+				for (int i = parents.size() - 1; i > 0; i--) {
+					if (parents.get(i).equals(parents.get(i - 1)))
+						parents.remove(i);
+				}
+			}
+		}
+		log.debug("Read {} terms with {} classes from {}", numTerms, classes.size(), file);
+	}
+
+	private void readHeaderTag(String tag, String value) {
+		switch (tag) {
+		case "ontology":
+			defaultIdSpace = value;
+			break;
+		case "import":
+			++numImports;
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void readStanzaTag(Stanza stanza, String tag, String value) {
+		switch (tag) {
+		case "id":
+			stanza.id = firstToken(value);
+			break;
+		case "name":
+		case "comment":
+			stanza.annotations.add(new String[] { tag, unquotedString(value) });
+			break;
+		case "def":
+			String definition = quotedString(value);
+			if (definition != null)
+				stanza.annotations.add(new String[] { tag, definition });
+			break;
+		case "synonym":
+			addSynonym(stanza, value, null);
+			break;
+		case "exact_synonym":
+		case "narrow_synonym":
+		case "broad_synonym":
+		case "related_synonym":
+			// OBO 1.2 synonym tags
+			addSynonym(stanza, value, tag.substring(0, tag.indexOf('_')).toUpperCase());
+			break;
+		case "is_obsolete":
+			stanza.obsolete = "true".equals(firstToken(value));
+			break;
+		case "is_a":
+			if (stanza.isTerm)
+				stanza.parents.add(firstToken(value));
+			break;
+		case "intersection_of":
+		case "relationship":
+			// [<relation>] <class>
+			String[] tokens = tokens(value);
+			if (stanza.isTerm && tokens.length > 0)
+				stanza.referencedClasses.add(tokens[tokens.length - 1]);
+			break;
+		case "union_of":
+		case "disjoint_from":
+		case "equivalent_to":
+			if (stanza.isTerm)
+				stanza.referencedClasses.add(firstToken(value));
+			break;
+		case "instance_of":
+			stanza.referencedClasses.add(firstToken(value));
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void addSynonym(Stanza stanza, String value, String scope) {
+		int end = value.indexOf('"') >= 0 ? closingQuote(value, value.indexOf('"')) : -1;
+		if (end < 0)
+			return;
+		String synonym = quotedString(value);
+		if (scope == null) {
+			String[] modifiers = tokens(value.substring(end + 1));
+			// the scope is optional and defaults to RELATED
+			scope = modifiers.length > 0 && modifiers[0].matches("EXACT|NARROW|BROAD|RELATED") ? modifiers[0]
+					: "RELATED";
+		}
+		stanza.annotations.add(new String[] { scope, synonym });
+	}
+
+	private void addTerm(Stanza stanza) {
+		for (String referencedClass : stanza.referencedClasses)
+			classes.add(intern(toIRI(referencedClass).toString()));
+		for (String parent : stanza.parents)
+			classes.add(intern(toIRI(parent).toString()));
+		if (!stanza.isTerm || stanza.id == null)
+			return;
+		++numTerms;
+		IRI iri = toIRI(stanza.id);
+		classes.add(intern(iri.toString()));
+		for (String[] annotation : stanza.annotations) {
+			OWLAnnotationProperty property = tagProperties.get(annotation[0]);
+			if (property != null)
+				addAnnotationValue(iri, property, df.getOWLLiteral(intern(annotation[1])));
+		}
+		if (stanza.obsolete && deprecatedProperty != null)
+			addAnnotationValue(iri, deprecatedProperty, df.getOWLLiteral(true));
+		if (!stanza.parents.isEmpty()) {
+			List<OWLClass> parents = new ArrayList<>(stanza.parents.size());
+			for (String parent : stanza.parents)
+				parents.add(df.getOWLClass(toIRI(parent)));
+			superClasses.computeIfAbsent(iri, k -> new ArrayList<>(parents.size())).addAll(parents);
+		}
+	}
+
+	private void addAnnotationValue(IRI subject, OWLAnnotationProperty property, OWLAnnotationValue value) {
+		// the OWL API keeps each annotation assertion once
+		if (!annotationIndex.getValues(subject, property).contains(value))
+			annotationIndex.addValue(subject, property, value);
+	}
+
+	/**
+	 * Converts an OBO identifier into an IRI the way the OWL API OBO
+	 * translation does.
+	 *
+	 * @param id
+	 *            An OBO identifier.
+	 * @return The IRI of the identifier.
+	 */
+	IRI toIRI(String id) {
+		if (id.startsWith("http:") || id.startsWith("https:") || id.startsWith("ftp:") || id.startsWith("urn:"))
+			return IRI.create(id);
+		int colon = id.indexOf(':');
+		if (colon < 0)
+			return IRI.create(OBO_IRI_PREFIX + defaultIdSpace + "#" + id);
+		String prefix = id.substring(0, colon);
+		String localId = id.substring(colon + 1);
+		// the OWL API separates local identifiers with underscores by '#_'
+		String separator = localId.indexOf('_') >= 0 ? "#_" : "_";
+		try {
+			return IRI.create(OBO_IRI_PREFIX + prefix + separator + URLEncoder.encode(localId, "US-ASCII"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return The classes of the ontology in the natural order of the OWL API
+	 *         objects.
+	 */
+	public List<OWLClass> getClasses() {
+		List<OWLClass> owlClasses = new ArrayList<>(classes.size());
+		for (String iri : classes)
+			owlClasses.add(df.getOWLClass(IRI.create(iri)));
+		Collections.sort(owlClasses);
+		return owlClasses;
+	}
+
+	public int getNumTerms() {
+		return numTerms;
+	}
+
+	/**
+	 * @param properties
+	 *            The annotation properties that have been given to the
+	 *            constructor.
+	 * @param filterDeprecated
+	 *            Whether obsolete classes should be omitted.
+	 * @param ontologyName
+	 *            A name of the ontology for log messages.
+	 * @return A record extractor for the classes that have been read.
+	 */
+	public ClassRecordExtractor getRecordExtractor(AnnotationPropertySet properties, boolean filterDeprecated,
+			Object ontologyName) {
+		return new IndexedClassRecordExtractor(properties, filterDeprecated, ontologyName, annotationIndex,
+				superClasses);
+	}
+
+	/**
+	 * @return The first whitespace separated token of a tag value, ignoring
+	 *         trailing qualifiers and comments.
+	 */
+	private static String firstToken(String value) {
+		String[] tokens = tokens(value);
+		return tokens.length > 0 ? tokens[0] : value;
+	}
+
+	/**
+	 * @return The whitespace separated tokens of a tag value up to a trailing
+	 *         qualifier block or comment.
+	 */
+	private static String[] tokens(String value) {
+		int end = value.length();
+		int qualifiers = value.indexOf('{');
+		if (qualifiers >= 0)
+			end = qualifiers;
+		int comment = value.indexOf(" !");
+		if (comment >= 0 && comment < end)
+			end = comment;
+		String tokens = value.substring(0, end).trim();
+		return tokens.isEmpty() ? new String[0] : tokens.split("\\s+");
+	}
+
+	/**
+	 * @return The unescaped value of a tag with an unquoted string value, e.g.
+	 *         <tt>name</tt>, up to the first unescaped <tt>!</tt> of a trailing
+	 *         comment or <tt>{</tt> of a trailing qualifier block.
+	 */
+	private static String unquotedString(String value) {
+		int end = value.length();
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\') {
+				++i;
+			} else if (c == '!' || c == '{') {
+				end = i;
+				break;
+			}
+		}
+		return unescape(value.substring(0, end).trim());
+	}
+
+	/**
+	 * @return The unescaped content of the first quoted string of a tag value
+	 *         or <tt>null</tt> if there is none.
+	 */
+	private static String quotedString(String value) {
+		int start = value.indexOf('"');
+		if (start < 0)
+			return null;
+		int end = closingQuote(value, start);
+		if (end < 0)
+			return null;
+		return unescape(value.substring(start + 1, end));
+	}
+
+	private static int closingQuote(String value, int start) {
+		for (int i = start + 1; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\')
+				++i;
+			else if (c == '"')
+				return i;
+		}
+		return -1;
+	}
+
+	private static String unescape(String value) {
+		if (value.indexOf('\\') < 0)
+			return value;
+		StringBuilder sb = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char escaped = value.charAt(++i);
+				switch (escaped) {
+				case 'n':
+					sb.append('\n');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'W':
+					sb.append(' ');
+					break;
+				default:
+					sb.append(escaped);
+					break;
+				}
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * The tag values of a single <tt>[Term]</tt> or <tt>[Instance]</tt>
+	 * stanza. The values are only converted when the stanza is complete because
+	 * the <tt>id</tt> tag is not required to come first.
+	 */
+	private static class Stanza {
+		private boolean isTerm;
+		private String id;
+		private boolean obsolete;
+		/**
+		 * Pairs of an OBO tag or synonym scope and the value.
+		 */
+		private List<String[]> annotations = new ArrayList<>();
+		private List<String> parents = new ArrayList<>(2);
+		private List<String> referencedClasses = new ArrayList<>(0);
+
+		private Stanza(String header) {
+			isTerm = header.startsWith("[Term]");
+		}
+	}
+}
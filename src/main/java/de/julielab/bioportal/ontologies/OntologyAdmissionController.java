@@ -0,0 +1,153 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Limits the number of ontologies that are loaded at the same time by their
+ * estimated heap footprint. Before an ontology is loaded, it must be
+ * {@link #admit(File) admitted}. The caller blocks until the estimated
+ * footprint of the ontology fits into the heap budget together with the
+ * ontologies that are currently loaded. An ontology that is larger than the
+ * whole budget is admitted as soon as no other ontology is loaded.
+ * </p>
+ * <p>
+ * The footprint is first estimated from the file size. After loading, the
+ * estimate can be {@link Admission#refine(long) refined} from the number of
+ * axioms. A lower refined estimate releases the difference for other
+ * ontologies. A higher refined estimate is only logged since waiting for more
+ * budget while holding an admission could deadlock the workers.
+ * </p>
+ */
+public class OntologyAdmissionController {
+
+	private static final Logger log = LoggerFactory.getLogger(OntologyAdmissionController.class);
+
+	/**
+	 * Estimated heap bytes per byte of an uncompressed ontology file.
+	 */
+	public static final int DEFAULT_HEAP_BYTES_PER_FILE_BYTE = 10;
+	/**
+	 * Estimated heap bytes per byte of a gzipped ontology file.
+	 */
+	public static final int DEFAULT_HEAP_BYTES_PER_GZIP_BYTE = 100;
+	/**
+	 * Estimated heap bytes per loaded axiom, including the OWL API indexes.
+	 */
+	public static final int DEFAULT_HEAP_BYTES_PER_AXIOM = 1000;
+
+	private long budget;
+	private long used;
+	private int numAdmitted;
+
+	public OntologyAdmissionController(long budget) {
+		this.budget = budget;
+		log.info("Ontologies are admitted for loading within a heap budget of {}",
+				FileUtils.byteCountToDisplaySize(budget));
+	}
+
+	/**
+	 * Estimates the heap footprint of an ontology file or directory from its
+	 * size on disk.
+	 *
+	 * @param ontologyFileOrDirectory
+	 *            The ontology file or directory.
+	 * @return The estimated heap footprint in bytes.
+	 */
+	public long estimateFootprint(File ontologyFileOrDirectory) {
+		if (ontologyFileOrDirectory.isDirectory()) {
+			long footprint = 0;
+			for (File file : ontologyFileOrDirectory.listFiles())
+				footprint += estimateFootprint(file);
+			return footprint;
+		}
+		String lcfn = ontologyFileOrDirectory.getName().toLowerCase();
+		boolean gzip = lcfn.endsWith(".gz") || lcfn.endsWith(".gzip");
+		return ontologyFileOrDirectory.length()
+				* (gzip ? DEFAULT_HEAP_BYTES_PER_GZIP_BYTE : DEFAULT_HEAP_BYTES_PER_FILE_BYTE);
+	}
+
+	/**
+	 * Blocks until the estimated footprint of the given ontology fits into the
+	 * heap budget.
+	 *
+	 * @param ontologyFileOrDirectory
+	 *            The ontology file or directory to load.
+	 * @return The admission that must be closed when the ontology has been
+	 *         removed from memory.
+	 * @throws InterruptedException
+	 *             If the thread is interrupted while waiting.
+	 */
+	public synchronized Admission admit(File ontologyFileOrDirectory) throws InterruptedException {
+		long footprint = estimateFootprint(ontologyFileOrDirectory);
+		long start = System.currentTimeMillis();
+		while (numAdmitted > 0 && used + footprint > budget)
+			wait();
+		used += footprint;
+		++numAdmitted;
+		log.debug("Admitted {} with an estimated footprint of {} after waiting {}ms. Currently used budget: {}",
+				ontologyFileOrDirectory, FileUtils.byteCountToDisplaySize(footprint),
+				System.currentTimeMillis() - start, FileUtils.byteCountToDisplaySize(used));
+		return new Admission(ontologyFileOrDirectory, footprint);
+	}
+
+	private synchronized void release(long footprint, boolean leave) {
+		used -= footprint;
+		if (leave)
+			--numAdmitted;
+		notifyAll();
+	}
+
+	public synchronized long getUsedBudget() {
+		return used;
+	}
+
+	/**
+	 * The admission of a single ontology. Closing the admission returns its
+	 * footprint to the budget.
+	 */
+	public class Admission implements AutoCloseable {
+		private File ontologyFileOrDirectory;
+		private long footprint;
+		private boolean closed;
+
+		private Admission(File ontologyFileOrDirectory, long footprint) {
+			this.ontologyFileOrDirectory = ontologyFileOrDirectory;
+			this.footprint = footprint;
+		}
+
+		/**
+		 * Refines the footprint estimate with the number of axioms of the
+		 * loaded ontology, including its imports.
+		 *
+		 * @param axiomCount
+		 *            The number of loaded axioms.
+		 */
+		public void refine(long axiomCount) {
+			long refinedFootprint = axiomCount * DEFAULT_HEAP_BYTES_PER_AXIOM;
+			if (refinedFootprint < footprint) {
+				release(footprint - refinedFootprint, false);
+				log.debug("Footprint estimate of {} lowered from {} to {} after loading {} axioms",
+						ontologyFileOrDirectory, FileUtils.byteCountToDisplaySize(footprint),
+						FileUtils.byteCountToDisplaySize(refinedFootprint), axiomCount);
+				footprint = refinedFootprint;
+			} else if (refinedFootprint > footprint) {
+				log.debug("{} has {} axioms and probably needs {} instead of the estimated {}",
+						ontologyFileOrDirectory, axiomCount, FileUtils.byteCountToDisplaySize(refinedFootprint),
+						FileUtils.byteCountToDisplaySize(footprint));
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				release(footprint, true);
+				closed = true;
+			}
+		}
+	}
+}
@@ -2,52 +2,53 @@ package de.julielab.bioportal.ontologies;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InterruptedIOException;
+import java.io.Writer;
 import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.io.UnparsableOntologyException;
-import org.semanticweb.owlapi.model.OWLAnnotation;
-import org.semanticweb.owlapi.model.OWLAnnotationProperty;
-import org.semanticweb.owlapi.model.OWLAnnotationValue;
 import org.semanticweb.owlapi.model.OWLClass;
-import org.semanticweb.owlapi.model.OWLClassExpression;
-import org.semanticweb.owlapi.model.OWLLiteral;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.parameters.Imports;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
-import org.semanticweb.owlapi.search.EntitySearcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.Gson;
-
-import de.julielab.bioportal.ontologies.data.OntologyClass;
-import de.julielab.bioportal.ontologies.data.OntologyClassParents;
-import de.julielab.bioportal.ontologies.data.OntologyClassSynonyms;
+import de.julielab.bioportal.ontologies.data.ExtractionManifestEntry;
+import de.julielab.bioportal.ontologies.data.OntologyExtractionInfo;
 import de.julielab.bioportal.util.BioPortalToolUtils;
-import de.julielab.java.utilities.FileUtilities;
+import de.julielab.bioportal.util.OboFormatException;
+import de.julielab.bioportal.util.StringInterner;
 
 /**
  * The error "[Fatal Error] :1:1: Content is not allowed in prolog." for OBO
  * ontologies is just a STDERR leak before the next parser is tried by the OWL
- * API. Just ignore it. https://github.com/owlcs/owlapi/issues/550
+ * API. Just ignore it. https://github.com/owlcs/owlapi/issues/550 Since the
+ * {@link OntologyLoader} passes the format detected by the
+ * {@link OntologyFormatSniffer} to the OWL API, it only occurs for files whose
+ * format could not be detected.
  * 
  * @author faessler
  *
@@ -57,12 +58,78 @@ public class OntologyClassNameExtractor {
 	private static final Logger log = LoggerFactory.getLogger(OntologyClassNameExtractor.class);
 	private static final Logger logUnparsableOntologies = LoggerFactory
 			.getLogger(OntologyClassNameExtractor.class.getCanonicalName() + ".unparsable");
-
-	private Gson gson;
+	/**
+	 * The default number of classes extracted by one task of the
+	 * {@link #classExtractionPool}.
+	 */
+	static final int DEFAULT_CLASS_CHUNK_SIZE = 1000;
+	public static final long DEFAULT_CHECKPOINT_INTERVAL = 100000;
 
 	private ExecutorService executor;
-	private OWLReasonerFactory reasonerFactory;
+	private int classChunkSize = DEFAULT_CLASS_CHUNK_SIZE;
+	/**
+	 * Chooses the reasoner for each ontology. Is <tt>null</tt> if no
+	 * reasoning is applied.
+	 */
+	private ReasonerSelector reasonerSelector;
 	private boolean filterDeprecated;
+	private boolean useAnnotationIndex = true;
+	/**
+	 * Used to extract the classes of a single ontology in parallel. Is
+	 * <tt>null</tt> if classes are extracted sequentially.
+	 */
+	private ForkJoinPool classExtractionPool;
+	/**
+	 * Classifies large ontologies in modules on the
+	 * {@link #modularReasoningPool}. Is <tt>null</tt> if ontologies are
+	 * classified as a whole.
+	 */
+	private ModularClassifier modularClassifier;
+	private ExecutorService modularReasoningPool;
+	/**
+	 * Limits the ontologies loaded at the same time to a heap budget. Is
+	 * <tt>null</tt> if the number of loaded ontologies is only limited by the
+	 * {@link #executor}.
+	 */
+	private OntologyAdmissionController admissionController;
+	/**
+	 * The maximum time in milliseconds for the classification of a single
+	 * ontology. Non-positive values mean no limit.
+	 */
+	private long reasoningTimeout;
+	private ReasoningTimeLimiter reasoningTimeLimiter;
+	private ExtractionStats extractionStats = new ExtractionStats();
+	/**
+	 * The manifest of the output directory of the current run. Used to skip
+	 * ontologies whose inputs have not changed since their last extraction.
+	 */
+	private ExtractionManifest manifest;
+	/**
+	 * The number of classes between two checkpoints of the extraction of a
+	 * single ontology.
+	 */
+	private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+	private Set<ExtractionEngine> extractionEngines = EnumSet.of(ExtractionEngine.OWLAPI);
+	private boolean readAhead;
+	private boolean writeBinaryOutput;
+	private boolean compactIris;
+	private boolean writeClosures;
+	private boolean annotationOnlyLoading;
+	/**
+	 * Shared by all workers to keep a single instance of frequent IRI strings
+	 * and literals. Is <tt>null</tt> if strings are not interned.
+	 */
+	private StringInterner stringInterner;
+	/**
+	 * Shared by all workers to load commonly imported ontologies only once.
+	 * Is <tt>null</tt> if imports are not cached.
+	 */
+	private ImportCache importCache;
+	/**
+	 * Stores the inferred class hierarchies across runs. Is <tt>null</tt> if
+	 * hierarchies are not cached.
+	 */
+	private InferredHierarchyCache hierarchyCache;
 
 	/**
 	 * Constructs an <tt>OntologyClassNameExtractor</tt> with a fixed threadpool
@@ -74,9 +141,9 @@ public class OntologyClassNameExtractor {
 
 	/**
 	 * Constructs an <tt>OntologyClassNameExtractor</tt> with he given
-	 * {@link ExecutorService} for multithreading and prepares a HermiT
-	 * {@link OWLReasonerFactory} if <tt>applyReasoning</tt> is set to
-	 * <tt>true</tt>.
+	 * {@link ExecutorService} for multithreading and prepares a
+	 * {@link ReasonerSelector} with {@link ReasonerStrategy#AUTO} if
+	 * <tt>applyReasoning</tt> is set to <tt>true</tt>.
 	 * 
 	 * @param executor
 	 *            An <tt>ExecutorService</tt> for parallel name extraction in
@@ -94,9 +161,9 @@ public class OntologyClassNameExtractor {
 
 	/**
 	 * Constructs an <tt>OntologyClassNameExtractor</tt> with he given
-	 * {@link ExecutorService} for multithreading and prepares a HermiT
-	 * {@link OWLReasonerFactory} if <tt>applyReasoning</tt> is set to
-	 * <tt>true</tt>.
+	 * {@link ExecutorService} for multithreading and prepares a
+	 * {@link ReasonerSelector} with {@link ReasonerStrategy#AUTO} if
+	 * <tt>applyReasoning</tt> is set to <tt>true</tt>.
 	 * 
 	 * @param executor
 	 *            An <tt>ExecutorService</tt> for parallel name extraction in
@@ -112,14 +179,334 @@ public class OntologyClassNameExtractor {
 	 */
 	public OntologyClassNameExtractor(ExecutorService executor, boolean applyReasoning,
 			boolean filterDeprecated) {
-		this.gson = BioPortalToolUtils.getGson();
 		this.executor = executor;
 		if (applyReasoning) {
-			reasonerFactory = new org.semanticweb.HermiT.ReasonerFactory();
+			reasonerSelector = new ReasonerSelector(ReasonerStrategy.AUTO);
 		}
 		this.filterDeprecated = filterDeprecated;
 	}
 
+	/**
+	 * If set to <tt>true</tt> - the default - the annotation values of all
+	 * classes of an ontology are collected into a {@link ClassAnnotationIndex}
+	 * with a single pass over the annotation assertion axioms before the
+	 * classes are written. Otherwise, the annotations are queried for each
+	 * class and annotation property separately. Both modes produce the same
+	 * output but the index is much faster for large ontologies.
+	 * 
+	 * @param useAnnotationIndex
+	 *            Whether to build an annotation index for each ontology.
+	 */
+	public void setUseAnnotationIndex(boolean useAnnotationIndex) {
+		this.useAnnotationIndex = useAnnotationIndex;
+	}
+
+	/**
+	 * If set to <tt>true</tt>, the class records are additionally written in
+	 * the binary format of the {@link ClassRecordBinaryWriter} into a file
+	 * with the extension {@link BioPortalToolConstants#CLASSES_BIN_EXT} next
+	 * to each classes file. Both files are written in the same pass. Off by
+	 * default.
+	 * 
+	 * @param writeBinaryOutput
+	 *            Whether to write binary classes files.
+	 */
+	public void setWriteBinaryOutput(boolean writeBinaryOutput) {
+		this.writeBinaryOutput = writeBinaryOutput;
+	}
+
+	/**
+	 * Sets the interner that is shared by the extraction of all ontologies to
+	 * keep a single instance of the strings that repeat and are kept in memory
+	 * while an ontology is extracted: the parent IRIs and the class IRIs and
+	 * short literals held by the streaming and OBO readers, e.g. the IRIs of
+	 * commonly imported upper level ontologies. The IRIs of the written
+	 * classes are not interned since each occurs once. Its hit rate is part of
+	 * the {@link #getExtractionStats() extraction statistics}. Off by default
+	 * because the pool itself takes heap; only worth it if the hit rate is
+	 * high.
+	 * 
+	 * @param stringInterner
+	 *            The interner or <tt>null</tt> to not intern strings.
+	 */
+	public void setStringInterner(StringInterner stringInterner) {
+		this.stringInterner = stringInterner;
+	}
+
+	/**
+	 * If set to <tt>true</tt> and no reasoning is applied, ontologies that are
+	 * loaded with the OWL API only keep the axioms required for the extraction,
+	 * see {@link ExtractionAxiomFilter}. The number of dropped axioms and the
+	 * estimated heap saved are part of the extraction info of each ontology.
+	 * Off by default.
+	 * 
+	 * @param annotationOnlyLoading
+	 *            Whether to drop the axioms that are not required without
+	 *            reasoning while loading.
+	 */
+	public void setAnnotationOnlyLoading(boolean annotationOnlyLoading) {
+		this.annotationOnlyLoading = annotationOnlyLoading;
+	}
+
+	/**
+	 * Sets a directory in which the ontologies imported by the extracted
+	 * ontologies are cached, see {@link ImportCache}. The directory may be
+	 * shared by subsequent runs. The cache hits and misses are part of the
+	 * {@link #getExtractionStats() extraction statistics}. Not set by default.
+	 * 
+	 * @param importCacheDirectory
+	 *            The cache directory or <tt>null</tt> to not cache imports.
+	 * @throws IOException
+	 *             If the cache directory cannot be created.
+	 */
+	public void setImportCacheDirectory(File importCacheDirectory) throws IOException {
+		this.importCache = importCacheDirectory != null ? new ImportCache(importCacheDirectory) : null;
+	}
+
+	/**
+	 * Sets a directory in which the inferred class hierarchies are cached
+	 * across runs when reasoning is applied, see
+	 * {@link InferredHierarchyCache}. If an ontology with the same content is
+	 * classified with the same reasoners again, the hierarchy is read from the
+	 * cache instead of creating a reasoner. The ontology is then loaded
+	 * annotation-only, if {@link #setAnnotationOnlyLoading(boolean) enabled}.
+	 * Not set by default.
+	 * 
+	 * @param hierarchyCacheDirectory
+	 *            The cache directory or <tt>null</tt> to not cache
+	 *            hierarchies.
+	 * @param maxSize
+	 *            The maximum size of the cache in bytes, a non-positive value
+	 *            for no limit.
+	 * @param maxAge
+	 *            The maximum time in milliseconds since the last use of a
+	 *            cached hierarchy, a non-positive value for no limit.
+	 * @throws IOException
+	 *             If the cache directory cannot be created.
+	 */
+	public void setHierarchyCache(File hierarchyCacheDirectory, long maxSize, long maxAge) throws IOException {
+		this.hierarchyCache = hierarchyCacheDirectory != null
+				? new InferredHierarchyCache(hierarchyCacheDirectory, maxSize, maxAge)
+				: null;
+	}
+
+	/**
+	 * If set to <tt>true</tt>, the class and parent IRIs in the JSON classes
+	 * files are written in the compact form of an {@link IriPrefixTable}, i.e.
+	 * as namespace index and local name. The namespace table of each classes
+	 * file is written to the file returned by
+	 * {@link #getIriPrefixesFile(File)}. The {@link ClassRecordJsonReader}
+	 * expands the IRIs again. Off by default.
+	 * 
+	 * @param compactIris
+	 *            Whether to write compact IRIs.
+	 */
+	public void setCompactIris(boolean compactIris) {
+		this.compactIris = compactIris;
+	}
+
+	/**
+	 * @param classesFile
+	 *            A JSON classes file.
+	 * @return The file with the IRI namespace table that belongs to
+	 *         <tt>classesFile</tt>.
+	 */
+	public static File getIriPrefixesFile(File classesFile) {
+		return new File(classesFile.getParentFile(), classesFile.getName()
+				.replace(BioPortalToolConstants.CLASSES_EXT, BioPortalToolConstants.CLASSES_PREFIXES_EXT));
+	}
+
+	/**
+	 * @param classesFile
+	 *            A JSON classes file.
+	 * @return The binary classes file that belongs to <tt>classesFile</tt>.
+	 */
+	public static File getBinaryClassesFile(File classesFile) {
+		return new File(classesFile.getParentFile(), classesFile.getName()
+				.replace(BioPortalToolConstants.CLASSES_EXT, BioPortalToolConstants.CLASSES_BIN_EXT));
+	}
+
+	/**
+	 * If set to <tt>true</tt>, the ancestors, the depth and the number of
+	 * children of each class are written into the file returned by
+	 * {@link #getClosuresFile(File)} next to each classes file, see
+	 * {@link ClassHierarchyGraph}. They are computed from the parents in the
+	 * written classes file, i.e. from the inferred parents if reasoning is
+	 * applied. Off by default.
+	 * 
+	 * @param writeClosures
+	 *            Whether to write class closure files.
+	 */
+	public void setWriteClosures(boolean writeClosures) {
+		this.writeClosures = writeClosures;
+	}
+
+	/**
+	 * @param classesFile
+	 *            A JSON classes file.
+	 * @return The class closures file that belongs to <tt>classesFile</tt>.
+	 */
+	public static File getClosuresFile(File classesFile) {
+		return new File(classesFile.getParentFile(), classesFile.getName()
+				.replace(BioPortalToolConstants.CLASSES_EXT, BioPortalToolConstants.CLASSES_CLOSURE_EXT));
+	}
+
+	/**
+	 * If set to <tt>true</tt>, gzipped ontology files are decompressed on a
+	 * separate thread while the OWL API parses them, see
+	 * {@link OntologyLoader#setReadAhead(boolean)}. Off by default.
+	 * 
+	 * @param readAhead
+	 *            Whether to decompress gzipped ontology files ahead.
+	 */
+	public void setReadAhead(boolean readAhead) {
+		this.readAhead = readAhead;
+	}
+
+	/**
+	 * Sets the number of threads used to extract the classes of a single
+	 * ontology. This is independent from the {@link ExecutorService} given to
+	 * the constructor which processes multiple ontologies in parallel. With
+	 * more than one thread, the classes of each ontology are split into chunks
+	 * that are processed on a shared {@link ForkJoinPool}. The output order is
+	 * the same as with a single thread, which is the default.
+	 * 
+	 * @param numThreads
+	 *            The number of class extraction threads.
+	 */
+	public void setClassExtractionThreads(int numThreads) {
+		if (classExtractionPool != null)
+			classExtractionPool.shutdown();
+		classExtractionPool = numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+	}
+
+	/**
+	 * Sets the number of classes extracted by one task when the classes of an
+	 * ontology are extracted by multiple threads. Only meant for tests, which
+	 * need several chunks for small ontologies.
+	 * 
+	 * @param classChunkSize
+	 *            The number of classes per chunk.
+	 */
+	void setClassChunkSize(int classChunkSize) {
+		this.classChunkSize = classChunkSize;
+	}
+
+	/**
+	 * Sets the heap budget for the ontologies that are loaded at the same
+	 * time. Before an ontology is loaded, with any {@link ExtractionEngine},
+	 * its heap footprint is estimated and the loading waits until the
+	 * footprint fits into the budget. Without a
+	 * budget, which is the default, all ontologies submitted to the
+	 * {@link ExecutorService} are loaded concurrently.
+	 * 
+	 * @param heapBudget
+	 *            The heap budget in bytes or a non-positive value to disable
+	 *            the budget.
+	 * @see OntologyAdmissionController
+	 */
+	public void setHeapBudget(long heapBudget) {
+		admissionController = heapBudget > 0 ? new OntologyAdmissionController(heapBudget) : null;
+	}
+
+	/**
+	 * Sets how the reasoner is chosen for each ontology when reasoning is
+	 * applied. The chosen reasoner and the classification time are logged and
+	 * recorded in the extraction info file of each ontology. The default is
+	 * {@link ReasonerStrategy#AUTO}.
+	 * 
+	 * @param reasonerStrategy
+	 *            The reasoner strategy.
+	 * @throws IllegalStateException
+	 *             If the strategy requires ELK which is not on the classpath.
+	 */
+	public void setReasonerStrategy(ReasonerStrategy reasonerStrategy) {
+		if (reasonerSelector != null)
+			reasonerSelector = new ReasonerSelector(reasonerStrategy);
+	}
+
+	/**
+	 * Sets the number of modules in which each ontology is classified in
+	 * parallel when reasoning is applied, see {@link ModularClassifier}. The
+	 * modules are classified on a pool with one thread per module that is
+	 * shared by all ontologies. The number of modules and the summed module
+	 * classification time are recorded in the extraction info of each
+	 * ontology; the report shows the resulting parallelism. With less than
+	 * two modules, which is the default, ontologies are classified as a
+	 * whole.
+	 * 
+	 * @param numModules
+	 *            The number of modules per ontology.
+	 */
+	public void setModularReasoning(int numModules) {
+		if (modularReasoningPool != null)
+			modularReasoningPool.shutdown();
+		if (numModules > 1) {
+			modularReasoningPool = Executors.newFixedThreadPool(numModules);
+			modularClassifier = new ModularClassifier(modularReasoningPool, numModules);
+		} else {
+			modularReasoningPool = null;
+			modularClassifier = null;
+		}
+	}
+
+	/**
+	 * Sets the maximum time for the classification of a single ontology when
+	 * reasoning is applied. If the classification of an ontology takes longer,
+	 * the reasoner is interrupted and the asserted super classes are used as
+	 * class parents for this ontology. This is recorded in the extraction info
+	 * file of the ontology and in the {@link #getExtractionStats() extraction
+	 * statistics}. The default is no limit.
+	 * 
+	 * @param reasoningTimeout
+	 *            The reasoning timeout in milliseconds or a non-positive value
+	 *            for no limit.
+	 * @see ReasoningTimeLimiter
+	 */
+	public void setReasoningTimeout(long reasoningTimeout) {
+		this.reasoningTimeout = reasoningTimeout;
+	}
+
+	/**
+	 * Sets the number of classes after which the extraction of an ontology
+	 * writes a checkpoint. If the extraction is interrupted, e.g. by a crash,
+	 * the next run resumes from the last checkpoint, provided the ontology
+	 * and its submission have not changed. The default is
+	 * {@value #DEFAULT_CHECKPOINT_INTERVAL}.
+	 * 
+	 * @param checkpointInterval
+	 *            The number of classes between checkpoints or a non-positive
+	 *            value to switch checkpoints off.
+	 * @see ExtractionCheckpointer
+	 */
+	public void setCheckpointInterval(long checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+
+	/**
+	 * Sets the engines used to read the ontologies. The engine is chosen per
+	 * ontology file: if no reasoning is applied, OBO files are read with the
+	 * {@link ExtractionEngine#OBO} engine and other RDF files with the
+	 * {@link ExtractionEngine#RDF_STREAM} engine, if enabled. Ontology
+	 * directories, all other files and files the enabled engines fail on are
+	 * loaded with the {@link ExtractionEngine#OWLAPI OWL API} which is always
+	 * enabled. The default is to use only the OWL API.
+	 * 
+	 * @param extractionEngines
+	 *            The enabled extraction engines.
+	 */
+	public void setExtractionEngines(ExtractionEngine... extractionEngines) {
+		this.extractionEngines = EnumSet.of(ExtractionEngine.OWLAPI, extractionEngines);
+	}
+
+	/**
+	 * @return The statistics of the last call to
+	 *         {@link #run(File, File, File, Set)}.
+	 */
+	public ExtractionStats getExtractionStats() {
+		return extractionStats;
+	}
+
 	/**
 	 * Starts the extraction of ontology class names of ontologies in the
 	 * <tt>input</tt> directory. The results are written in JSON format into the
@@ -147,7 +534,7 @@ public class OntologyClassNameExtractor {
 	 *             If the thread execution files for a worker thread.
 	 */
 	public int run(File input, File submissionsDirectory, File output)
-			throws InterruptedException, ExecutionException {
+			throws InterruptedException, ExecutionException, IOException {
 		return run(input, submissionsDirectory, output, null);
 	}
 
@@ -161,7 +548,11 @@ public class OntologyClassNameExtractor {
 	 * name extraction only to those ontologies where the ontology file name
 	 * without extension (i.e. the filename up to the first dot) is contained in
 	 * the set. For BioPortal ontologies that have been downloaded using the
-	 * {@link OntologyDownloader}, this is just the acronym.
+	 * {@link OntologyDownloader}, this is just the acronym. Ontologies whose
+	 * file, submission and the extractor settings have not changed since the
+	 * last run into <tt>outputDir</tt> are skipped, and the output of
+	 * ontologies that have been removed from <tt>input</tt> is deleted, see
+	 * {@link ExtractionManifest}.
 	 * 
 	 * @param input
 	 *            A directory of ontologies or a single ontology file.
@@ -190,7 +581,7 @@ public class OntologyClassNameExtractor {
 	 *             If the thread execution files for a worker thread.
 	 */
 	public int run(File input, File submissionsDirectory, File outputDir, Set<String> ontologiesToExtract)
-			throws InterruptedException, ExecutionException {
+			throws InterruptedException, ExecutionException, IOException {
 		if (!outputDir.exists())
 			outputDir.mkdirs();
 
@@ -216,24 +607,137 @@ public class OntologyClassNameExtractor {
 			log.info("Extracting class names for all ontologies in {}", input);
 
 		File[] files = input.listFiles();
-		List<Future<Void>> futures = new ArrayList<>(files.length);
+		List<File> ontologyFiles = new ArrayList<>(files.length);
 		for (int i = 0; i < files.length; i++) {
 			File file = files[i];
 			if (ontologiesToExtract != null && !ontologiesToExtract.isEmpty()
 					&& !ontologiesToExtract.contains(BioPortalToolUtils.getAcronymFromFileName(file)))
 				continue;
+			ontologyFiles.add(file);
+		}
+		manifest = ExtractionManifest.load(outputDir);
+		removeOutdatedOutput(files, outputDir);
+		// Start with the most expensive ontologies so that no large ontology
+		// is started at the end of the run and determines the total time on
+		// its own.
+		OntologyCostEstimator costEstimator = new OntologyCostEstimator(submissionsDirectory);
+		Map<File, Long> estimatedCosts = costEstimator.estimateCosts(ontologyFiles);
+		ontologyFiles = costEstimator.sortByDescendingCost(ontologyFiles, estimatedCosts);
+
+		extractionStats = new ExtractionStats();
+		extractionStats.setStringInterner(stringInterner);
+		extractionStats.setImportCache(importCache);
+		extractionStats.setHierarchyCache(hierarchyCache);
+		if (reasonerSelector != null)
+			reasoningTimeLimiter = new ReasoningTimeLimiter(reasoningTimeout);
+
+		long time = System.currentTimeMillis();
+		Map<File, Long> extractionTimes = new ConcurrentHashMap<>();
+		List<Future<Void>> futures = new ArrayList<>(ontologyFiles.size());
+		for (File file : ontologyFiles) {
 			Future<Void> future = executor
-					.submit(new NameExtractorWorker(file, submissionsDirectory, input, outputDir));
+					.submit(new NameExtractorWorker(file, submissionsDirectory, outputDir, extractionTimes));
 			futures.add(future);
 			++numOntologies;
 		}
 		for (Future<Void> future : futures)
 			future.get();
+		time = System.currentTimeMillis() - time;
+		logCriticalPath(ontologyFiles, estimatedCosts, extractionTimes, time);
+		if (stringInterner != null)
+			log.info("String interning: {}", stringInterner);
+		if (importCache != null)
+			log.info("Import cache: {}", importCache);
+		if (hierarchyCache != null)
+			log.info("Inferred hierarchy cache: {}", hierarchyCache);
 		log.info("Shutting down executor service.");
-		executor.shutdown();
+		shutDown();
 		return numOntologies;
 	}
 
+	/**
+	 * Deletes the output of ontologies that are recorded in the
+	 * {@link #manifest} but do not exist in the input directory any more.
+	 * 
+	 * @param inputFiles
+	 *            All files of the input directory.
+	 * @param outputDir
+	 *            The output directory.
+	 * @throws IOException
+	 *             If updating the manifest fails.
+	 */
+	private void removeOutdatedOutput(File[] inputFiles, File outputDir) throws IOException {
+		Set<String> existingAcronyms = new HashSet<>();
+		for (File file : inputFiles)
+			existingAcronyms.add(BioPortalToolUtils.getAcronymFromFileName(file));
+		for (String acronym : manifest.removeEntriesNotIn(existingAcronyms)) {
+			log.info("Ontology {} does not exist any more in the input, deleting its extracted class names.",
+					acronym);
+			String classesPath = outputDir.getAbsolutePath() + File.separator + acronym
+					+ BioPortalToolConstants.CLASSES_EXT + ".gz";
+			String binaryClassesPath = outputDir.getAbsolutePath() + File.separator + acronym
+					+ BioPortalToolConstants.CLASSES_BIN_EXT + ".gz";
+			String prefixesPath = outputDir.getAbsolutePath() + File.separator + acronym
+					+ BioPortalToolConstants.CLASSES_PREFIXES_EXT + ".gz";
+			for (String path : new String[] { classesPath, classesPath + ExtractionCheckpointer.PART_EXT,
+					classesPath + ExtractionCheckpointer.CHECKPOINT_EXT, binaryClassesPath,
+					binaryClassesPath + ExtractionCheckpointer.PART_EXT, prefixesPath,
+					prefixesPath + ExtractionCheckpointer.PART_EXT,
+					outputDir.getAbsolutePath() + File.separator + acronym
+							+ BioPortalToolConstants.CLASSES_CLOSURE_EXT + ".gz",
+					outputDir.getAbsolutePath() + File.separator + acronym
+							+ BioPortalToolConstants.CLASSES_INFO_EXT + ".gz" })
+				Files.deleteIfExists(new File(path).toPath());
+		}
+	}
+
+	/**
+	 * @return A signature of the settings that influence the extracted class
+	 *         information. Changed settings cause a new extraction.
+	 */
+	private String getSettingsSignature() {
+		return "reasoning=" + (reasonerSelector != null ? reasonerSelector.getStrategy() : "false")
+				+ ",filterDeprecated=" + filterDeprecated + ",engines="
+				+ extractionEngines + ",binary=" + writeBinaryOutput + ",compactIris=" + compactIris
+				+ ",closures=" + writeClosures;
+	}
+
+	/**
+	 * Logs which ontology was expected to take the longest, according to the
+	 * estimated costs, and which ontology actually took the longest. Since the
+	 * ontologies are processed in parallel, the longest ontology is the lower
+	 * bound for the total extraction time.
+	 * 
+	 * @param ontologyFiles
+	 *            The ontology files, sorted by descending estimated cost.
+	 * @param estimatedCosts
+	 *            The estimated extraction cost of each file.
+	 * @param extractionTimes
+	 *            The actual extraction time of each file in milliseconds.
+	 * @param totalTime
+	 *            The total time in milliseconds.
+	 */
+	private void logCriticalPath(List<File> ontologyFiles, Map<File, Long> estimatedCosts,
+			Map<File, Long> extractionTimes, long totalTime) {
+		if (ontologyFiles.isEmpty() || extractionTimes.isEmpty())
+			return;
+		File expectedLongest = ontologyFiles.get(0);
+		long totalCost = 0;
+		for (File file : ontologyFiles)
+			totalCost += estimatedCosts.get(file);
+		File actualLongest = null;
+		for (File file : extractionTimes.keySet()) {
+			if (actualLongest == null || extractionTimes.get(file) > extractionTimes.get(actualLongest))
+				actualLongest = file;
+		}
+		log.info(
+				"Expected critical path: {} with {}% of the estimated total cost, actual time {}ms. Actual critical path: {} with {}ms. Total extraction time: {}ms.",
+				expectedLongest.getName(),
+				totalCost > 0 ? Math.round(100d * estimatedCosts.get(expectedLongest) / totalCost) : 0,
+				extractionTimes.getOrDefault(expectedLongest, 0L), actualLongest.getName(),
+				extractionTimes.get(actualLongest), totalTime);
+	}
+
 	/**
 	 * These workers are used to extract ontology names for multiple ontologies
 	 * in parallel. They basically just call
@@ -248,57 +752,29 @@ public class OntologyClassNameExtractor {
 		private File submissionsDirectory;
 		private File outputDir;
 		private OntologyLoader ontologyLoader;
-		private File ontosDir;
+		private Map<File, Long> extractionTimes;
 
-		public NameExtractorWorker(File file, File submissionsDirectory, File ontosDir, File outputDir) {
+		public NameExtractorWorker(File file, File submissionsDirectory, File outputDir,
+				Map<File, Long> extractionTimes) {
 			this.file = file;
 			this.submissionsDirectory = submissionsDirectory;
-			this.ontosDir = ontosDir;
 			this.outputDir = outputDir;
+			this.extractionTimes = extractionTimes;
 			this.ontologyLoader = new OntologyLoader();
+			this.ontologyLoader.setReadAhead(readAhead);
+			this.ontologyLoader.setAnnotationOnly(annotationOnlyLoading && reasonerSelector == null);
+			this.ontologyLoader.setImportCache(importCache);
 		}
 
 		@Override
 		public Void call() throws Exception {
 			// directories are allowed if they contain the downloadFileName.txt file; otherwise it is not an ontology download directory
 			if (BioPortalToolUtils.isSupportedOntologyFile(file) || (file.isDirectory() && file.listFiles((f,name)->name.equals(BioPortalToolConstants.DOWNLOAD_FILENAME)).length == 1)) {
+				long time = System.currentTimeMillis();
 				try {
-					extractNamesForOntology(file, submissionsDirectory, outputDir, ontologyLoader);
-				} catch (UnparsableOntologyException e) {
-					log.error("Could not parse ontology file {}", file);
-					if (BioPortalToolUtils.isUMLSOntology(file)) {
-						log.warn("The unparsable ontology is in UMLS format. Those have sometimes issues by chemical"
-								+ " names containing the character sequence ''' which is mistakenly interpreted as a string"
-								+ " end quote for \"\"\" by the turtle parser in OWL API 5.x. It will be tried to remove such"
-								+ " lines and then try parsing again.");
-						File backupDir = new File(ontosDir.getAbsoluteFile().getParentFile().getAbsolutePath()
-								+ File.separator + ontosDir.getName() + "-backup");
-						if (!backupDir.exists())
-							backupDir.mkdir();
-						File backupFile = new File(backupDir.getAbsolutePath() + File.separator + file.getName());
-						log.info("Creating backup of file {} to {}", file, backupFile);
-						if (!backupFile.exists())
-							Files.copy(file.toPath(), backupFile.toPath());
-						else
-							log.info("File {} already exists, skipping.", backupFile);
-						log.warn(
-								"Replacing file {} with a copy where lines in question have been removed. Please note that the origin file is overwritten.",
-								file);
-						Files.delete(file.toPath());
-						AtomicInteger removedLines = BioPortalToolUtils.fixUmlsFile(backupFile, file);
-						log.info("{} lines have been removed from {}", removedLines, backupFile);
-						try {
-							extractNamesForOntology(file, submissionsDirectory, outputDir, ontologyLoader);
-						} catch (UnparsableOntologyException e2) {
-							log.error(
-									"Fixed file also couldn't be parsed. Deleting fixed file and giving up. The backup file is left at {}",
-									backupFile);
-							logUnparsableOntologies.error("File: {}", file, e);
-							Files.delete(file.toPath());
-						}
-					} else {
-						logUnparsableOntologies.error("File: {}", file, e);
-					}
+					extractNames();
+				} finally {
+					extractionTimes.put(file, System.currentTimeMillis() - time);
 				}
 			} else {
 				log.debug("Ignoring file \"{}\" because it doesn't look like an ontology file", file);
@@ -306,6 +782,15 @@ public class OntologyClassNameExtractor {
 			return null;
 		}
 
+		private void extractNames() throws Exception {
+			try {
+				extractNamesForOntology(file, submissionsDirectory, outputDir, ontologyLoader);
+			} catch (UnparsableOntologyException e) {
+				log.error("Could not parse ontology file {}", file);
+				logUnparsableOntologies.error("File: {}", file, e);
+			}
+		}
+
 	}
 
 	/**
@@ -327,9 +812,12 @@ public class OntologyClassNameExtractor {
 	 *             If reading or writing goes wrong.
 	 * @throws OWLOntologyCreationException
 	 *             If loading an ontology fails.
+	 * @throws InterruptedException
+	 *             If waiting for the admission to load the ontology is
+	 *             interrupted.
 	 */
 	private void extractNamesForOntology(File ontologyFileOrDirectory, File submissionsDirectory, File outputDir,
-			OntologyLoader ontologyLoader) throws IOException, OWLOntologyCreationException {
+			OntologyLoader ontologyLoader) throws IOException, OWLOntologyCreationException, InterruptedException {
 		log.info("Processing file or directory \"{}\"", ontologyFileOrDirectory);
 		String acronym = BioPortalToolUtils.getAcronymFromFileName(ontologyFileOrDirectory);
 		File submissionFile = new File(submissionsDirectory.getAbsolutePath() + File.separator + acronym
@@ -338,223 +826,406 @@ public class OntologyClassNameExtractor {
 				submissionFile);
 		File classesFile = new File(
 				outputDir.getAbsolutePath() + File.separator + acronym + BioPortalToolConstants.CLASSES_EXT + ".gz");
-		if (classesFile.exists() && classesFile.length() > 0) {
-			log.info("Classes file {} already exists and is not empty. Not extracting class names again.", classesFile);
+		ExtractionManifestEntry manifestEntry = manifest.createEntry(acronym, ontologyFileOrDirectory,
+				submissionFile, getSettingsSignature());
+		boolean outputExists = classesFile.exists() && classesFile.length() > 0
+				&& (!writeBinaryOutput || getBinaryClassesFile(classesFile).exists())
+				&& (!compactIris || getIriPrefixesFile(classesFile).exists())
+				&& (!writeClosures || getClosuresFile(classesFile).exists());
+		if (outputExists && manifest.isUnchanged(manifestEntry)) {
+			log.info("The inputs of classes file {} have not changed. Not extracting class names again.",
+					classesFile);
 			return;
 		}
+		if (outputExists && manifest.getEntry(acronym) == null) {
+			// output from before the manifest existed; its inputs are unknown,
+			// it might stem from an older version of the ontology
+			log.info("Classes file {} is not recorded in the extraction manifest. Extracting class names again.",
+					classesFile);
+		}
 
-		OWLOntology o;
+		OntologyExtractionInfo extractionInfo = new OntologyExtractionInfo();
+		extractionInfo.acronym = acronym;
+		// the other engines also hold all classes of the ontology in memory and
+		// are admitted like the OWL API
+		OntologyAdmissionController.Admission admission = admissionController != null
+				? admissionController.admit(ontologyFileOrDirectory)
+				: null;
 		try {
-			log.debug("Loading ontology from {} {}", ontologyFileOrDirectory.isFile() ? "file" : "directory",
-					ontologyFileOrDirectory);
-			o = ontologyLoader.loadOntology(ontologyFileOrDirectory);
-			log.trace("Loading done for {}", ontologyFileOrDirectory);
-		} catch (OWLOntologyCreationException e) {
-			log.error("Error while loading ontology {}.", acronym);
-			throw e;
-		}
+			if (reasonerSelector == null && ontologyFileOrDirectory.isFile()
+					&& extractNamesWithoutOWLAPI(ontologyFileOrDirectory, properties, classesFile, manifestEntry,
+							extractionInfo)) {
+				finishExtraction(extractionInfo, outputDir, manifestEntry);
+				return;
+			}
 
-		OWLReasoner reasoner = reasonerFactory != null ? reasonerFactory.createReasoner(o) : null;
+			extractionInfo.engine = ExtractionEngine.OWLAPI.name();
+			InferredClassHierarchy classHierarchy = null;
+			String hierarchyCacheKey = null;
+			if (reasonerSelector != null && hierarchyCache != null) {
+				hierarchyCacheKey = InferredHierarchyCache.getKey(manifestEntry.inputHash,
+						reasonerSelector.getIdentity());
+				classHierarchy = hierarchyCache.load(hierarchyCacheKey, OWLManager.getOWLDataFactory());
+			}
+			// the axioms for reasoning are not required with a cached hierarchy
+			ontologyLoader
+					.setAnnotationOnly(annotationOnlyLoading && (reasonerSelector == null || classHierarchy != null));
+			long time = System.currentTimeMillis();
+			OWLOntology o;
+			try {
+				log.debug("Loading ontology from {} {}", ontologyFileOrDirectory.isFile() ? "file" : "directory",
+						ontologyFileOrDirectory);
+				o = ontologyLoader.loadOntology(ontologyFileOrDirectory);
+				log.trace("Loading done for {}", ontologyFileOrDirectory);
+			} catch (OWLOntologyCreationException e) {
+				log.error("Error while loading ontology {}.", acronym);
+				throw e;
+			}
+			extractionInfo.loadingTime = System.currentTimeMillis() - time;
+			ExtractionAxiomFilter axiomFilter = ontologyLoader.getAxiomFilter();
+			if (axiomFilter != null) {
+				extractionInfo.droppedAxioms = axiomFilter.getNumDroppedAxioms();
+				extractionInfo.estimatedHeapSaved = Math.max(0,
+						(extractionInfo.droppedAxioms - axiomFilter.getNumAddedDeclarations())
+								* OntologyAdmissionController.DEFAULT_HEAP_BYTES_PER_AXIOM);
+				log.info("Dropped {} axioms not required without reasoning while loading {}, estimated heap saved: {}",
+						extractionInfo.droppedAxioms, acronym,
+						FileUtils.byteCountToDisplaySize(extractionInfo.estimatedHeapSaved));
+				log.debug("Dropped axioms of {} by type: {}", acronym, axiomFilter.getDroppedAxiomCounts());
+			}
+			if (admission != null)
+				admission.refine(o.getAxiomCount(Imports.INCLUDED));
+
+			OWLReasoner reasoner = null;
+			if (classHierarchy != null) {
+				extractionInfo.reasoner = classHierarchy.getReasonerName();
+				extractionInfo.hierarchyCached = true;
+				log.info("Using the cached class hierarchy of ontology {} inferred by {}", acronym,
+						extractionInfo.reasoner);
+			} else if (reasoningTimeLimiter != null) {
+				time = System.currentTimeMillis();
+				OWLReasonerFactory reasonerFactory = reasonerSelector.select(o);
+				extractionInfo.reasoner = reasonerFactory.getReasonerName();
+				boolean classified;
+				if (modularClassifier != null) {
+					ModularClassifier.Result result = modularClassifier.classify(o, reasonerFactory,
+							reasoningTimeLimiter);
+					classified = result != null;
+					if (result != null) {
+						classHierarchy = result.getHierarchy();
+						extractionInfo.reasoningModules = result.getNumModules();
+						extractionInfo.summedModuleReasoningTime = result.getSummedModuleTime();
+					}
+				} else {
+					reasoner = reasoningTimeLimiter.createClassifiedReasoner(o, reasonerFactory);
+					classified = reasoner != null;
+				}
+				extractionInfo.reasoningTime = System.currentTimeMillis() - time;
+				extractionInfo.reasoningTimedOut = !classified;
+				log.info("Classified ontology {} with {} in {} ms{}", acronym, extractionInfo.reasoner,
+						extractionInfo.reasoningTime, classified ? "" : " (timed out)");
+				if (!classified)
+					log.warn("Using the asserted super classes as parents for the classes of ontology {}", acronym);
+			}
+			if (reasoner != null) {
+				time = System.currentTimeMillis();
+				// with the parents of all classes so that a cached hierarchy
+				// does not need the reasoner
+				classHierarchy = new InferredClassHierarchy(reasoner, o.classesInSignature(Imports.INCLUDED));
+				log.debug("Collected the parents of {} classes from {} hierarchy nodes in {} ms",
+						classHierarchy.size(), classHierarchy.getNumNodes(), System.currentTimeMillis() - time);
+			}
+			if (classHierarchy != null && !extractionInfo.hierarchyCached && hierarchyCacheKey != null)
+				hierarchyCache.store(hierarchyCacheKey, classHierarchy);
+			extractionInfo.parents = classHierarchy != null ? OntologyExtractionInfo.PARENTS_INFERRED
+					: OntologyExtractionInfo.PARENTS_ASSERTED;
 
-		log.debug("Writing extracted class names for ontology {} to {}", acronym, classesFile);
-		writeNames(properties, classesFile, o, reasoner);
+			log.debug("Writing extracted class names for ontology {} to {}", acronym, classesFile);
+			time = System.currentTimeMillis();
+			writeNames(properties, classesFile, o, reasoner, classHierarchy, manifestEntry, extractionInfo.parents);
+			extractionInfo.writingTime = System.currentTimeMillis() - time;
+			if (reasoner != null)
+				reasoner.dispose();
 
-		ontologyLoader.clearLoadedOntologies();
+			finishExtraction(extractionInfo, outputDir, manifestEntry);
+		} finally {
+			ontologyLoader.clearLoadedOntologies();
+			if (admission != null)
+				admission.close();
+		}
 	}
 
-	private void writeNames(AnnotationPropertySet properties, File classesFile, OWLOntology o, OWLReasoner reasoner)
-			throws IOException {
-		try (OutputStream os = FileUtilities.getOutputStreamToFile(classesFile)) {
-			Stream<OWLClass> classesInSignature = o.classesInSignature(Imports.INCLUDED);
-			for (Iterator<OWLClass> iterator = classesInSignature.iterator(); iterator.hasNext();) {
-				OWLClass c = iterator.next();
-				boolean obsolete = determineObsolete(o, c, properties);
-
-				if (obsolete && filterDeprecated) {
-					log.trace("Excluding obsolete class {}", c.getIRI());
-					continue;
-				}
-				
-				String preferredName = determinePreferredName(o, c, properties);
-				OntologyClassSynonyms synonyms = determineSynonyms(o, c, properties);
-				String definition = determineDefinition(o, c, properties);
-				OntologyClassParents ontologyClassParents = determineClassParents(o, c, reasoner);
-
-				OntologyClass ontologyClass = new OntologyClass();
-				ontologyClass.id = c.getIRI().toString();
-				ontologyClass.prefLabel = preferredName;
-				if (obsolete) {
-					ontologyClass.obsolete = true;
-				}
-				if (synonyms.synonyms != null && !synonyms.synonyms.isEmpty())
-					ontologyClass.synonym = synonyms;
-				if (!StringUtils.isBlank(definition))
-					ontologyClass.definition = Arrays.asList(definition);
-				if (ontologyClassParents.parents != null && !ontologyClassParents.parents.isEmpty())
-					ontologyClass.parents = ontologyClassParents;
-
-				IOUtils.write(gson.toJson(ontologyClass) + "\n", os, "UTF-8");
+	/**
+	 * Extracts the class names of an ontology file with the
+	 * {@link OboStanzaReader} or the {@link StreamingRDFClassReader}, if the
+	 * respective engine is enabled and the file has a matching format.
+	 * 
+	 * @param ontologyFile
+	 * @param properties
+	 * @param classesFile
+	 * @param manifestEntry
+	 * @param extractionInfo
+	 * @return <tt>false</tt> if no engine besides the OWL API applies to the
+	 *         file or the file could not be parsed. The file should then be
+	 *         loaded with the OWL API.
+	 * @throws IOException
+	 */
+	private boolean extractNamesWithoutOWLAPI(File ontologyFile, AnnotationPropertySet properties, File classesFile,
+			ExtractionManifestEntry manifestEntry, OntologyExtractionInfo extractionInfo) throws IOException {
+		long time = System.currentTimeMillis();
+		ExtractionEngine engine;
+		List<OWLClass> classes;
+		ClassRecordExtractor recordExtractor;
+		try {
+			if (extractionEngines.contains(ExtractionEngine.OBO) && OboStanzaReader.isOboFile(ontologyFile)) {
+				engine = ExtractionEngine.OBO;
+				OboStanzaReader reader = new OboStanzaReader(properties);
+				reader.setStringInterner(stringInterner);
+				reader.read(ontologyFile);
+				classes = reader.getClasses();
+				recordExtractor = reader.getRecordExtractor(properties, filterDeprecated, extractionInfo.acronym);
+			} else if (extractionEngines.contains(ExtractionEngine.RDF_STREAM)
+					&& StreamingRDFClassReader.getRDFFormat(ontologyFile).isPresent()) {
+				engine = ExtractionEngine.RDF_STREAM;
+				StreamingRDFClassReader reader = new StreamingRDFClassReader(properties);
+				reader.setStringInterner(stringInterner);
+				reader.read(ontologyFile);
+				classes = reader.getClasses();
+				recordExtractor = reader.getRecordExtractor(properties, filterDeprecated, extractionInfo.acronym);
+			} else {
+				return false;
 			}
+		} catch (RDFParseException | OboFormatException e) {
+			log.warn("Could not read {} without the OWL API ({}). Loading it with the OWL API instead.",
+					ontologyFile, e.getMessage());
+			return false;
 		}
+		recordExtractor.setStringInterner(stringInterner);
+		extractionInfo.engine = engine.name();
+		extractionInfo.loadingTime = System.currentTimeMillis() - time;
+		extractionInfo.parents = OntologyExtractionInfo.PARENTS_ASSERTED;
+
+		log.debug("Writing extracted class names for ontology {} to {}", extractionInfo.acronym, classesFile);
+		time = System.currentTimeMillis();
+		// the classes are already sorted
+		writeRecords(recordExtractor, classes.stream(), classesFile, manifestEntry, extractionInfo.parents, false);
+		extractionInfo.writingTime = System.currentTimeMillis() - time;
+		return true;
 	}
 
 	/**
-	 * Returns the superclasses of <tt>c</tt> as IRI strings wrapped in an
-	 * {@link OntologyClassParents} instance. Omits anonymous classes.
+	 * Writes the class closures file, if enabled, and the extraction info file,
+	 * adds the extraction info to the {@link #extractionStats} and records the
+	 * inputs of the extraction in the {@link #manifest}.
 	 * 
-	 * @param o
-	 * @param c
-	 * @param reasoner
-	 * @return
-	 */
-	private OntologyClassParents determineClassParents(OWLOntology o, OWLClass c, OWLReasoner reasoner) {
-		Stream<OWLClassExpression> superClasses = reasoner != null
-				? reasoner.getSuperClasses(c, true).entities().map(OWLClassExpression.class::cast)
-				: EntitySearcher.getSuperClasses(c, o);
-				
-		OntologyClassParents classParents = new OntologyClassParents();
-		for (Iterator<OWLClassExpression> iterator = superClasses.iterator(); iterator.hasNext();) {
-			OWLClassExpression classExpr = iterator.next();
-			if (!classExpr.isAnonymous()) {
-				OWLClass owlClass = classExpr.asOWLClass();
-				classParents.addParent(owlClass.getIRI().toString());
+	 * @param extractionInfo
+	 * @param outputDir
+	 * @param manifestEntry
+	 * @throws IOException
+	 */
+	private void finishExtraction(OntologyExtractionInfo extractionInfo, File outputDir,
+			ExtractionManifestEntry manifestEntry) throws IOException {
+		if (writeClosures) {
+			long time = System.currentTimeMillis();
+			writeClosures(new File(outputDir.getAbsolutePath() + File.separator + extractionInfo.acronym
+					+ BioPortalToolConstants.CLASSES_EXT + ".gz"));
+			extractionInfo.closureTime = System.currentTimeMillis() - time;
+		}
+		File extractionInfoFile = new File(outputDir.getAbsolutePath() + File.separator + extractionInfo.acronym
+				+ BioPortalToolConstants.CLASSES_INFO_EXT + ".gz");
+		try (Writer w = BioPortalToolUtils.getWriterToFile(extractionInfoFile)) {
+			w.write(BioPortalToolUtils.getGson().toJson(extractionInfo));
+		}
+		extractionStats.addExtractionInfo(extractionInfo);
+		manifest.update(manifestEntry);
+	}
+
+	/**
+	 * Reads the parents of all classes from <tt>classesFile</tt>, or from its
+	 * binary classes file if it is written, and writes the class closures file.
+	 * 
+	 * @param classesFile
+	 *            The written classes file.
+	 * @throws IOException
+	 *             If reading the classes or writing the closures fails.
+	 */
+	private void writeClosures(File classesFile) throws IOException {
+		ClassHierarchyGraph graph;
+		File binaryClassesFile = getBinaryClassesFile(classesFile);
+		if (writeBinaryOutput && binaryClassesFile.exists()) {
+			try (ClassRecordBinaryReader reader = ClassRecordBinaryReader.open(binaryClassesFile)) {
+				graph = new ClassHierarchyGraph(reader);
 			}
+		} else {
+			try (ClassRecordJsonReader reader = ClassRecordJsonReader.open(classesFile)) {
+				graph = new ClassHierarchyGraph(reader);
+			}
+		}
+		File closuresFile = getClosuresFile(classesFile);
+		try (Writer w = BioPortalToolUtils.getWriterToFile(closuresFile)) {
+			graph.writeClosures(w);
 		}
+		log.debug("Wrote the closures of {} nodes with {} parent edges to {}", graph.size(), graph.getNumEdges(),
+				closuresFile);
+	}
 
-		return classParents;
+	private void writeNames(AnnotationPropertySet properties, File classesFile, OWLOntology o, OWLReasoner reasoner)
+			throws IOException {
+		writeNames(properties, classesFile, o, reasoner, null, null, null);
 	}
 
 	/**
-	 * Returns the first non-null definition on a definition annotation property
-	 * or null if none could be found.
+	 * Writes the extracted class information of <tt>o</tt> into
+	 * <tt>classesFile</tt>. The file is only created when all classes have been
+	 * written. If the inputs of the extraction are given, checkpoints are
+	 * written every {@link #checkpointInterval} classes and an interrupted
+	 * extraction of the same inputs is resumed from the last checkpoint.
 	 * 
-	 * @param o
-	 * @param c
 	 * @param properties
-	 * @return
-	 */
-	private String determineDefinition(OWLOntology o, OWLClass c, AnnotationPropertySet properties) {
-		for (OWLAnnotationProperty definitionProp : properties.getDefinitionProps()) {
-			Stream<OWLAnnotation> definitionAnnotations = EntitySearcher.getAnnotations(c, o, definitionProp);
-			for (Iterator<OWLAnnotation> iterator = definitionAnnotations.iterator(); iterator.hasNext();) {
-				String definition;
-				OWLAnnotation owlAnnotation = iterator.next();
-				OWLAnnotationValue value = owlAnnotation.getValue();
-				if (value instanceof OWLLiteral)
-					definition = ((OWLLiteral) value).getLiteral();
-				else
-					definition = value.toString();
-				if (!StringUtils.isBlank(definition))
-					return definition;
-			}
+	 * @param classesFile
+	 * @param o
+	 * @param reasoner
+	 * @param classHierarchy
+	 *            The inferred class hierarchy to take the parents from or
+	 *            <tt>null</tt>.
+	 * @param inputs
+	 *            The inputs of the extraction or <tt>null</tt> to switch
+	 *            checkpoints off.
+	 * @param parents
+	 *            Whether the parents are inferred or asserted, recorded in the
+	 *            checkpoints.
+	 * @throws IOException
+	 * @see ExtractionCheckpointer
+	 */
+	private void writeNames(AnnotationPropertySet properties, File classesFile, OWLOntology o, OWLReasoner reasoner,
+			InferredClassHierarchy classHierarchy, ExtractionManifestEntry inputs, String parents)
+			throws IOException {
+		ClassAnnotationIndex annotationIndex = null;
+		if (useAnnotationIndex) {
+			annotationIndex = new ClassAnnotationIndex(o, properties);
+			log.debug("Indexed the annotations of {} subjects", annotationIndex.size());
 		}
-		return null;
+		OWLOntologyClassRecordExtractor recordExtractor = new OWLOntologyClassRecordExtractor(properties,
+				filterDeprecated, o, reasoner, annotationIndex);
+		recordExtractor.setClassHierarchy(classHierarchy);
+		recordExtractor.setStringInterner(stringInterner);
+		writeRecords(recordExtractor, o.classesInSignature(Imports.INCLUDED), classesFile, inputs, parents, true);
 	}
 
 	/**
-	 * In contrast the original BioPortal approach where only synonyms from the
-	 * first existing annotation property are used, we currently use the
-	 * synonyms of all eligible properties we can find. Might change in the
-	 * future if there is too much garbage.
+	 * Writes the records of the given classes into <tt>classesFile</tt>.
 	 * 
-	 * @param o
-	 * @param c
-	 * @param properties
-	 * @return
-	 */
-	private OntologyClassSynonyms determineSynonyms(OWLOntology o, OWLClass c, AnnotationPropertySet properties) {
-		List<String> synonyms = new ArrayList<>();
-		for (OWLAnnotationProperty synonymProp : properties.getSynonymProps()) {
-			Stream<OWLAnnotation> synonymAnnotations = EntitySearcher.getAnnotations(c, o, synonymProp);
-			for (Iterator<OWLAnnotation> iterator = synonymAnnotations.iterator(); iterator.hasNext();) {
-				String synonym;
-				OWLAnnotation owlAnnotation = iterator.next();
-				OWLAnnotationValue value = owlAnnotation.getValue();
-				if (value instanceof OWLLiteral) {
-					synonym = ((OWLLiteral) value).getLiteral();
-				} else
-					synonym = value.toString();
-				{
-
-					if (!StringUtils.isBlank(synonym))
-						synonyms.add(synonym);
+	 * @param recordExtractor
+	 *            The record extractor for the classes.
+	 * @param classes
+	 *            The classes to write.
+	 * @param classesFile
+	 *            The output file.
+	 * @param inputs
+	 *            The inputs of the extraction or <tt>null</tt> to switch
+	 *            checkpoints off.
+	 * @param parents
+	 *            Whether the parents are inferred or asserted, recorded in the
+	 *            checkpoints.
+	 * @param sortForCheckpoints
+	 *            Whether the classes must be sorted to be written in the same
+	 *            order in each run when checkpoints are written. Not required
+	 *            if the classes are already sorted.
+	 * @throws IOException
+	 */
+	private void writeRecords(ClassRecordExtractor recordExtractor, Stream<OWLClass> classes, File classesFile,
+			ExtractionManifestEntry inputs, String parents, boolean sortForCheckpoints) throws IOException {
+		try (ExtractionCheckpointer checkpointer = new ExtractionCheckpointer(classesFile,
+				writeBinaryOutput ? getBinaryClassesFile(classesFile) : null,
+				compactIris ? getIriPrefixesFile(classesFile) : null, inputs, parents, checkpointInterval)) {
+			Stream<OWLClass> classesInSignature = classes;
+			// resuming requires the same class order in each run
+			if (checkpointer.isCheckpointing() && sortForCheckpoints)
+				classesInSignature = classesInSignature.sorted();
+			if (checkpointer.getResumeIndex() > 0)
+				classesInSignature = classesInSignature.skip(checkpointer.getResumeIndex());
+			if (classExtractionPool != null) {
+				writeNamesInParallel(recordExtractor, classesInSignature.iterator(), checkpointer);
+			} else {
+				ClassRecordWriter writer = checkpointer.getWriter();
+				// the same record is used for all classes
+				ClassRecord record = new ClassRecord();
+				for (Iterator<OWLClass> iterator = classesInSignature.iterator(); iterator.hasNext();) {
+					if (recordExtractor.extractClass(iterator.next(), record))
+						writer.write(record);
+					checkpointer.classesProcessed(1);
 				}
 			}
+			checkpointer.commit();
 		}
-		OntologyClassSynonyms classSynonyms = new OntologyClassSynonyms();
-		classSynonyms.synonyms = synonyms;
-		return classSynonyms;
-	}
-
-	/**
-	 * <p>
-	 * Returns the first property value that is not null or blank. If no
-	 * property is set or has a non-null value, the fragment of the class IRI is
-	 * returned.
-	 * </p>
-	 * <p>
-	 * This approach corresponds to the BioPortal approach got on the mailing
-	 * list from Michael Dorf: <blockquote> We first determine whether the
-	 * prefLabelProperty, synonymProperty, definitionProperty are set and use
-	 * them. If those aren't set, we default to skos:prefLabel and rdfs:label in
-	 * that order. If no skos:prefLabel or rdfs:label exists, we use the last
-	 * fragment of the URI of the class as the prefLabel. A similar rule applies
-	 * to synonyms and definitions using the properties skos:altLabel and
-	 * skos:definition respectively. </blockquote>
+	}
+
+	/**
+	 * Splits the classes into chunks of {@link #classChunkSize} classes that
+	 * are extracted on the {@link #classExtractionPool}. The chunk results are
+	 * written in the order the chunks were submitted so the output is the same
+	 * as for sequential extraction. To bound memory consumption, at most four
+	 * chunks per pool thread are pending at any time.
 	 * 
-	 * @param o
-	 * @param c
-	 * @param properties
-	 * @return
-	 */
-	private String determinePreferredName(OWLOntology o, OWLClass c, AnnotationPropertySet properties) {
-		for (OWLAnnotationProperty prefNameProp : properties.getPrefNameProps()) {
-			Stream<OWLAnnotation> prefNameAnnotations = EntitySearcher.getAnnotations(c, o, prefNameProp);
-			for (Iterator<OWLAnnotation> iterator = prefNameAnnotations.iterator(); iterator.hasNext();) {
-				String preferredName;
-				OWLAnnotation owlAnnotation = iterator.next();
-				OWLAnnotationValue value = owlAnnotation.getValue();
-				if (value instanceof OWLLiteral) {
-					preferredName = ((OWLLiteral) value).getLiteral();
-					if (preferredName.isEmpty()) {
-						continue;
+	 * @param recordExtractor
+	 * @param classes
+	 * @param checkpointer
+	 * @throws IOException
+	 */
+	private void writeNamesInParallel(ClassRecordExtractor recordExtractor, Iterator<OWLClass> classes,
+			ExtractionCheckpointer checkpointer) throws IOException {
+		int maxPendingChunks = classExtractionPool.getParallelism() * 4;
+		Deque<Future<List<ClassRecord>>> pendingChunks = new ArrayDeque<>(maxPendingChunks);
+		Deque<Integer> pendingChunkSizes = new ArrayDeque<>(maxPendingChunks);
+		try {
+			while (classes.hasNext()) {
+				List<OWLClass> chunk = new ArrayList<>(classChunkSize);
+				while (classes.hasNext() && chunk.size() < classChunkSize)
+					chunk.add(classes.next());
+				pendingChunks.add(classExtractionPool.submit(() -> {
+					List<ClassRecord> records = new ArrayList<>(chunk.size());
+					for (OWLClass c : chunk) {
+						ClassRecord record = new ClassRecord();
+						if (recordExtractor.extractClass(c, record))
+							records.add(record);
 					}
-				} else {
-					preferredName = value.toString();
-				}
-				return preferredName;
-			}
-		}
-		// If we came here, we did not find any preferred name. Use the IRI
-		// fragment. If there is no fragment, take the whole IRI.
-		return c.getIRI().getRemainder().orElse(c.getIRI().getIRIString());
-	}
-
-	private boolean determineObsolete(OWLOntology o, OWLClass c, AnnotationPropertySet properties) {
-		boolean isObsolete = false;
-		for (OWLAnnotationProperty obsoleteProp : properties.getObsoleteProps()) {
-			Stream<OWLAnnotation> obsoleteAnnotations = EntitySearcher.getAnnotations(c, o, obsoleteProp);
-			for (Iterator<OWLAnnotation> iterator = obsoleteAnnotations.iterator(); iterator.hasNext();) {
-				OWLAnnotation owlAnnotation = iterator.next();
-				Optional<OWLLiteral> optLiteral = owlAnnotation.getValue().asLiteral();
-				if (!optLiteral.isPresent()) {
-					continue;
-				}
-				String literal = optLiteral.get().getLiteral().toLowerCase();
-				if (!literal.equals("true") && !literal.equals("false"))
-					log.warn("The obsolete property value of class {} of ontology {} is neither true nor false",
-							c.getIRI(), o.getOntologyID());
-				// for the weird case that there are multiple obsolete
-				// annotations we consider a class obsolete if at least one
-				// property says so
-				isObsolete |= Boolean.parseBoolean(literal);
+					return records;
+				}));
+				pendingChunkSizes.add(chunk.size());
+				if (pendingChunks.size() >= maxPendingChunks)
+					writeChunk(pendingChunks.poll().get(), pendingChunkSizes.poll(), checkpointer);
 			}
+			while (!pendingChunks.isEmpty())
+				writeChunk(pendingChunks.poll().get(), pendingChunkSizes.poll(), checkpointer);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Class extraction was interrupted.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IOException(e.getCause());
+		} finally {
+			for (Future<List<ClassRecord>> future : pendingChunks)
+				future.cancel(true);
 		}
-		return isObsolete;
+	}
+
+	private void writeChunk(List<ClassRecord> records, int chunkSize, ExtractionCheckpointer checkpointer)
+			throws IOException {
+		ClassRecordWriter writer = checkpointer.getWriter();
+		for (ClassRecord record : records)
+			writer.write(record);
+		checkpointer.classesProcessed(chunkSize);
 	}
 
 	public void shutDown() {
 		executor.shutdown();
+		if (classExtractionPool != null)
+			classExtractionPool.shutdown();
+		if (modularReasoningPool != null)
+			modularReasoningPool.shutdown();
+		if (reasoningTimeLimiter != null)
+			reasoningTimeLimiter.shutDown();
 	}
 
 }
@@ -0,0 +1,169 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import de.julielab.bioportal.ontologies.data.OntologyMetaData;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+import de.julielab.java.utilities.FileUtilities;
+
+/**
+ * <p>
+ * Estimates the relative cost of extracting the class names of ontologies so
+ * that the most expensive ontologies can be started first.
+ * </p>
+ * <p>
+ * The basic estimate is the size of the ontology file or the total size of the
+ * files of an ontology directory. The sizes of gzipped files are multiplied by
+ * {@link #GZIP_COMPRESSION_RATIO} so that compressed and uncompressed
+ * ontologies are comparable. If the meta data file written by the
+ * {@link OntologyDownloader} contains the number of classes of the ontology,
+ * the number of classes is used instead. To make both kinds of estimates
+ * comparable, the class counts are converted into bytes using the average
+ * number of bytes per class of all ontologies for which both values are known.
+ * </p>
+ */
+public class OntologyCostEstimator {
+
+	private static final Logger log = LoggerFactory.getLogger(OntologyCostEstimator.class);
+
+	/**
+	 * Estimated number of uncompressed bytes per byte of a gzipped ontology
+	 * file, consistent with the footprint estimates of the
+	 * {@link OntologyAdmissionController}.
+	 */
+	public static final int GZIP_COMPRESSION_RATIO = OntologyAdmissionController.DEFAULT_HEAP_BYTES_PER_GZIP_BYTE
+			/ OntologyAdmissionController.DEFAULT_HEAP_BYTES_PER_FILE_BYTE;
+
+	private File ontologyInfoDirectory;
+	private Gson gson;
+
+	/**
+	 * @param ontologyInfoDirectory
+	 *            The directory containing the meta data files downloaded by the
+	 *            {@link OntologyDownloader}. May be <tt>null</tt> in which case
+	 *            only the file sizes are used.
+	 */
+	public OntologyCostEstimator(File ontologyInfoDirectory) {
+		this.ontologyInfoDirectory = ontologyInfoDirectory;
+		this.gson = BioPortalToolUtils.getGson();
+	}
+
+	/**
+	 * Estimates the costs of the given ontology files or directories. The
+	 * returned values are comparable to each other but have no absolute
+	 * meaning.
+	 *
+	 * @param ontologyFiles
+	 *            Ontology files or directories.
+	 * @return The estimated cost for each ontology.
+	 */
+	public Map<File, Long> estimateCosts(Collection<File> ontologyFiles) {
+		Map<File, Long> sizes = new HashMap<>();
+		Map<File, Integer> classCounts = new HashMap<>();
+		long sizeOfOntologiesWithClassCount = 0;
+		long classesOfOntologiesWithClassCount = 0;
+		for (File file : ontologyFiles) {
+			long size = estimateUncompressedSize(file);
+			sizes.put(file, size);
+			int numClasses = getNumberOfClasses(BioPortalToolUtils.getAcronymFromFileName(file));
+			if (numClasses > 0) {
+				classCounts.put(file, numClasses);
+				sizeOfOntologiesWithClassCount += size;
+				classesOfOntologiesWithClassCount += numClasses;
+			}
+		}
+		double bytesPerClass = classesOfOntologiesWithClassCount > 0
+				? (double) sizeOfOntologiesWithClassCount / classesOfOntologiesWithClassCount
+				: 0;
+		log.debug("{} of {} ontologies have a known number of classes; the average size per class is {} bytes",
+				classCounts.size(), ontologyFiles.size(), bytesPerClass);
+
+		Map<File, Long> costs = new HashMap<>();
+		for (File file : ontologyFiles) {
+			Integer numClasses = classCounts.get(file);
+			if (numClasses != null && bytesPerClass > 0)
+				costs.put(file, Math.round(numClasses * bytesPerClass));
+			else
+				costs.put(file, sizes.get(file));
+		}
+		return costs;
+	}
+
+	/**
+	 * @param ontologyFileOrDirectory
+	 *            An ontology file or directory.
+	 * @return The size of the file or the total size of the files in the
+	 *         directory, with gzipped files counted by their estimated
+	 *         uncompressed size.
+	 */
+	static long estimateUncompressedSize(File ontologyFileOrDirectory) {
+		if (ontologyFileOrDirectory.isDirectory()) {
+			long size = 0;
+			File[] files = ontologyFileOrDirectory.listFiles();
+			if (files != null) {
+				for (File file : files)
+					size += estimateUncompressedSize(file);
+			}
+			return size;
+		}
+		String lcfn = ontologyFileOrDirectory.getName().toLowerCase();
+		boolean gzip = lcfn.endsWith(".gz") || lcfn.endsWith(".gzip");
+		return ontologyFileOrDirectory.length() * (gzip ? GZIP_COMPRESSION_RATIO : 1);
+	}
+
+	/**
+	 * Returns the given files sorted by descending estimated cost.
+	 *
+	 * @param ontologyFiles
+	 *            Ontology files or directories.
+	 * @param costs
+	 *            The costs as returned by {@link #estimateCosts(Collection)}.
+	 * @return The files, most expensive first.
+	 */
+	public List<File> sortByDescendingCost(Collection<File> ontologyFiles, Map<File, Long> costs) {
+		List<File> sortedFiles = new ArrayList<>(ontologyFiles);
+		sortedFiles.sort((f1, f2) -> Long.compare(costs.get(f2), costs.get(f1)));
+		return sortedFiles;
+	}
+
+	/**
+	 * Reads the number of classes from the ontology metrics in the meta data
+	 * file of the ontology with the given acronym.
+	 *
+	 * @param acronym
+	 *            The ontology acronym.
+	 * @return The number of classes or 0 if it is unknown.
+	 */
+	private int getNumberOfClasses(String acronym) {
+		if (ontologyInfoDirectory == null)
+			return 0;
+		File metaDataFile = new File(ontologyInfoDirectory.getAbsolutePath() + File.separator + acronym
+				+ BioPortalToolConstants.METADATA_EXT + ".gz");
+		if (!metaDataFile.exists())
+			return 0;
+		try (InputStream is = FileUtilities.getInputStreamFromFile(metaDataFile)) {
+			OntologyMetaData metaData = gson.fromJson(IOUtils.toString(is, StandardCharsets.UTF_8),
+					OntologyMetaData.class);
+			if (metaData != null && metaData.ontologyMetric != null)
+				return metaData.ontologyMetric.classes;
+		} catch (IOException | JsonSyntaxException e) {
+			log.debug("Could not read the number of classes from {}: {}", metaDataFile, e.getMessage());
+		}
+		return 0;
+	}
+}
@@ -22,7 +22,6 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -170,7 +169,7 @@ public class OntologyDownloader {
 			log.debug("Fetching {} from BioPortal for {}", infoType, metaData.acronym);
 			HttpEntity propertiesResponse = httpHandler.sendGetRequest(address);
 			String infoString = EntityUtils.toString(propertiesResponse);
-			try (Writer w = FileUtilities.getWriterToFile(destFile)) {
+			try (Writer w = BioPortalToolUtils.getWriterToFile(destFile)) {
 				w.write(infoString);
 			}
 			return infoString;
@@ -216,7 +215,7 @@ public class OntologyDownloader {
 		public void download() throws IOException, ResourceDownloadException {
 			try {
 				if (!metaDataFile.exists())
-					try (Writer w = FileUtilities.getWriterToFile(metaDataFile)) {
+					try (Writer w = BioPortalToolUtils.getWriterToFile(metaDataFile)) {
 						w.write(gson.toJson(metaData));
 					}
 				else
@@ -393,6 +392,9 @@ public class OntologyDownloader {
 								Paths.get(ontologyDataDir.getAbsolutePath() + File.separator + ontoInf.acronym
 										+ File.separator + BioPortalToolConstants.DOWNLOAD_FILENAME),
 								downloadFileName.getBytes());
+						// parse the file headers now instead of at the first
+						// load of the ontology
+						OntologyIRICatalog.forDirectory(ontologyDir);
 					}
 				} else {
 					writeStreamToFile(is, ontologyFile);
@@ -412,7 +414,7 @@ public class OntologyDownloader {
 
 	private void writeStreamToFile(InputStream is, File outputFile) throws FileNotFoundException, IOException {
 		// write to file
-		try (OutputStream os = new GZIPOutputStream(new FileOutputStream(outputFile))) {
+		try (OutputStream os = BioPortalToolUtils.getGzipOutputStream(new FileOutputStream(outputFile))) {
 			int bytesRead = -1;
 			byte[] buffer = new byte[4096];
 			while ((bytesRead = is.read(buffer)) != -1) {
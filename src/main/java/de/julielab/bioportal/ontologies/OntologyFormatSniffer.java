@@ -0,0 +1,188 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.semanticweb.owlapi.formats.FunctionalSyntaxDocumentFormat;
+import org.semanticweb.owlapi.formats.ManchesterSyntaxDocumentFormat;
+import org.semanticweb.owlapi.formats.OBODocumentFormat;
+import org.semanticweb.owlapi.formats.OWLXMLDocumentFormat;
+import org.semanticweb.owlapi.formats.RDFXMLDocumentFormat;
+import org.semanticweb.owlapi.formats.TurtleDocumentFormat;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
+
+/**
+ * <p>
+ * Determines the format of an ontology document so that the OWL API can be
+ * told which parser to use instead of trying one parser after the other. Each
+ * failed parser attempt reads the document again and, for XML parsers, prints
+ * errors to STDERR.
+ * </p>
+ * <p>
+ * The first bytes of the document are inspected for the characteristic start
+ * of each format, e.g. the <tt>rdf:RDF</tt> root element of RDF/XML or the
+ * <tt>[Term]</tt> stanzas of OBO. If the content is not conclusive, the file
+ * extension decides, ignoring compression suffixes. The extensions of the
+ * files written by the {@link OntologyDownloader} are derived from the
+ * <tt>hasOntologyLanguage</tt> of the ontology submission, e.g.
+ * <tt>.obo.gz</tt> or <tt>.umls.gz</tt>.
+ * </p>
+ */
+public class OntologyFormatSniffer {
+
+	/**
+	 * The number of bytes that are inspected at the beginning of a document.
+	 */
+	public static final int HEAD_SIZE = 8192;
+
+	private static final Pattern RDF_ROOT = Pattern.compile("<(\\w+:)?RDF[\\s>]");
+	private static final Pattern OWL_XML_ROOT = Pattern.compile("<(\\w+:)?Ontology[\\s>]");
+
+	private OntologyFormatSniffer() {
+	}
+
+	/**
+	 * Determines the format of the document in <tt>is</tt> from its first
+	 * bytes and, if necessary, the file name. The stream must support
+	 * {@link InputStream#mark(int) marking}; it is reset to the beginning of
+	 * the document.
+	 * 
+	 * @param fileName
+	 *            The name of the document file. May be <tt>null</tt>.
+	 * @param is
+	 *            The document.
+	 * @return The format, if it could be determined.
+	 * @throws IOException
+	 *             If reading the first bytes fails.
+	 */
+	public static Optional<OWLDocumentFormat> sniff(String fileName, InputStream is) throws IOException {
+		if (!is.markSupported())
+			throw new IllegalArgumentException("The stream must support marking");
+		byte[] head = new byte[HEAD_SIZE];
+		is.mark(HEAD_SIZE);
+		int length = 0;
+		int n;
+		try {
+			while (length < head.length && (n = is.read(head, length, head.length - length)) != -1)
+				length += n;
+		} finally {
+			is.reset();
+		}
+		Optional<OWLDocumentFormat> format = sniffContent(new String(head, 0, length, StandardCharsets.UTF_8));
+		if (!format.isPresent() && fileName != null)
+			format = sniffFileName(fileName);
+		return format;
+	}
+
+	/**
+	 * @param head
+	 *            The beginning of a document.
+	 * @return The format of the document, if it is evident from the
+	 *         beginning.
+	 */
+	static Optional<OWLDocumentFormat> sniffContent(String head) {
+		String content = skipCommentsAndWhitespace(head);
+		if (content.startsWith("<")) {
+			// the root element; owl:Ontology elements also occur in RDF/XML
+			if (RDF_ROOT.matcher(content).lookingAt())
+				return Optional.of(new RDFXMLDocumentFormat());
+			if (OWL_XML_ROOT.matcher(content).lookingAt())
+				return Optional.of(new OWLXMLDocumentFormat());
+			// N-Triples start with a subject IRI; the Turtle parser reads
+			// them
+			if (content.startsWith("<http") || content.startsWith("<urn") || content.startsWith("<file"))
+				return Optional.of(new TurtleDocumentFormat());
+			return Optional.empty();
+		}
+		if (content.startsWith("@prefix") || content.startsWith("@base") || startsWithIgnoreCase(content, "PREFIX ")
+				|| startsWithIgnoreCase(content, "BASE ") || content.startsWith("_:"))
+			return Optional.of(new TurtleDocumentFormat());
+		if (content.startsWith("Prefix(") || content.startsWith("Ontology("))
+			return Optional.of(new FunctionalSyntaxDocumentFormat());
+		if (content.startsWith("Prefix:") || content.startsWith("Ontology:"))
+			return Optional.of(new ManchesterSyntaxDocumentFormat());
+		if (content.startsWith("format-version:") || content.startsWith("[Term]")
+				|| content.startsWith("[Typedef]") || content.startsWith("data-version:")
+				|| content.startsWith("ontology:"))
+			return Optional.of(new OBODocumentFormat());
+		return Optional.empty();
+	}
+
+	/**
+	 * @param fileName
+	 *            The name of an ontology file.
+	 * @return The format indicated by the file extension, ignoring compression
+	 *         suffixes, if there is a specific one. <tt>.owl</tt> files are
+	 *         not specific because they may be RDF/XML, OWL/XML or functional
+	 *         syntax.
+	 */
+	static Optional<OWLDocumentFormat> sniffFileName(String fileName) {
+		String lcfn = fileName.toLowerCase();
+		if (lcfn.endsWith(".gz"))
+			lcfn = lcfn.substring(0, lcfn.length() - 3);
+		else if (lcfn.endsWith(".gzip"))
+			lcfn = lcfn.substring(0, lcfn.length() - 5);
+		if (lcfn.endsWith(".obo"))
+			return Optional.of(new OBODocumentFormat());
+		if (lcfn.endsWith(".umls") || lcfn.endsWith(".ttl") || lcfn.endsWith(".nt"))
+			return Optional.of(new TurtleDocumentFormat());
+		if (lcfn.endsWith(".rdf") || lcfn.endsWith(".skos"))
+			return Optional.of(new RDFXMLDocumentFormat());
+		if (lcfn.endsWith(".ofn"))
+			return Optional.of(new FunctionalSyntaxDocumentFormat());
+		if (lcfn.endsWith(".omn"))
+			return Optional.of(new ManchesterSyntaxDocumentFormat());
+		if (lcfn.endsWith(".owx"))
+			return Optional.of(new OWLXMLDocumentFormat());
+		return Optional.empty();
+	}
+
+	/**
+	 * Skips a byte order mark, whitespace, XML declarations, XML comments and
+	 * line comments starting with <tt>#</tt> or <tt>!</tt>.
+	 */
+	private static String skipCommentsAndWhitespace(String head) {
+		int pos = 0;
+		while (pos < head.length()) {
+			char c = head.charAt(pos);
+			if (Character.isWhitespace(c) || c == '\uFEFF') {
+				++pos;
+			} else if (head.startsWith("<?", pos)) {
+				int end = head.indexOf("?>", pos);
+				if (end < 0)
+					break;
+				pos = end + 2;
+			} else if (head.startsWith("<!--", pos)) {
+				int end = head.indexOf("-->", pos);
+				if (end < 0)
+					break;
+				pos = end + 3;
+			} else if (head.startsWith("<!DOCTYPE", pos)) {
+				// the DOCTYPE may contain an internal subset in brackets,
+				// e.g. with entity declarations
+				int end = head.indexOf('>', pos);
+				int subsetStart = head.indexOf('[', pos);
+				if (subsetStart >= 0 && subsetStart < end)
+					end = head.indexOf("]>", subsetStart) + 1;
+				if (end <= 0)
+					break;
+				pos = end + 1;
+			} else if (c == '#' || c == '!') {
+				int end = head.indexOf('\n', pos);
+				if (end < 0)
+					break;
+				pos = end + 1;
+			} else {
+				break;
+			}
+		}
+		return head.substring(pos);
+	}
+
+	private static boolean startsWithIgnoreCase(String s, String prefix) {
+		return s.regionMatches(true, 0, prefix, 0, prefix.length());
+	}
+}
@@ -0,0 +1,163 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
+import org.semanticweb.owlapi.util.AutoIRIMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonParseException;
+
+import de.julielab.bioportal.ontologies.data.OntologyIRICatalogData;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+
+/**
+ * <p>
+ * Maps the IRIs of the ontologies in a directory of a multi-file ontology
+ * download to their files, like an XML catalog. The mappings are those of an
+ * {@link AutoIRIMapper} on the directory which has to parse the header of
+ * each file to find the ontology IRIs. Since this is expensive for large
+ * downloads, the catalog is built once and stored next to the directory as
+ * <tt>&lt;directory name&gt;.iri-catalog.json</tt>, outside of the directory
+ * so that its content hash is not affected.
+ * </p>
+ * <p>
+ * The catalog records the modification times of all files in the directory.
+ * It is rebuilt when a file has been added, removed or modified since.
+ * Checking this only requires listing the directory.
+ * </p>
+ */
+public class OntologyIRICatalog implements OWLOntologyIRIMapper {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(OntologyIRICatalog.class);
+
+	public static final String CATALOG_EXT = ".iri-catalog.json";
+
+	private File directory;
+	private transient OntologyIRICatalogData catalog;
+
+	private OntologyIRICatalog(File directory, OntologyIRICatalogData catalog) {
+		this.directory = directory;
+		this.catalog = catalog;
+	}
+
+	/**
+	 * Returns the catalog of the given directory. The stored catalog is used
+	 * if it is up to date. Otherwise, the catalog is built and stored. If it
+	 * cannot be stored, the built catalog is still returned.
+	 * 
+	 * @param directory
+	 *            A directory with ontology files.
+	 * @return The catalog of the directory.
+	 * @throws IOException
+	 *             If the directory cannot be listed.
+	 */
+	public static OntologyIRICatalog forDirectory(File directory) throws IOException {
+		File catalogFile = getCatalogFile(directory);
+		Map<String, Long> modificationTimes = getModificationTimes(directory);
+		if (catalogFile.exists()) {
+			try (Reader r = Files.newBufferedReader(catalogFile.toPath(), StandardCharsets.UTF_8)) {
+				OntologyIRICatalogData catalog = BioPortalToolUtils.getGson().fromJson(r,
+						OntologyIRICatalogData.class);
+				if (catalog != null && modificationTimes.equals(catalog.fileModificationTimes)) {
+					log.debug("Using the IRI catalog {}", catalogFile);
+					return new OntologyIRICatalog(directory, catalog);
+				}
+				log.debug("The IRI catalog {} is outdated", catalogFile);
+			} catch (IOException | JsonParseException e) {
+				log.warn("Could not read the IRI catalog {}, building it anew", catalogFile, e);
+			}
+		}
+		OntologyIRICatalogData catalog = build(directory, modificationTimes);
+		try {
+			File tmpFile = new File(catalogFile.getAbsolutePath() + ".tmp");
+			try (Writer w = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+				BioPortalToolUtils.getGson().toJson(catalog, w);
+			}
+			Files.move(tmpFile.toPath(), catalogFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.warn("Could not store the IRI catalog {}, it will be built again on the next load", catalogFile, e);
+		}
+		return new OntologyIRICatalog(directory, catalog);
+	}
+
+	/**
+	 * @param directory
+	 *            A directory with ontology files.
+	 * @return The file the IRI catalog of the directory is stored in.
+	 */
+	public static File getCatalogFile(File directory) {
+		File absoluteDirectory = directory.getAbsoluteFile();
+		return new File(absoluteDirectory.getParentFile(), absoluteDirectory.getName() + CATALOG_EXT);
+	}
+
+	private static OntologyIRICatalogData build(File directory, Map<String, Long> modificationTimes) {
+		long time = System.currentTimeMillis();
+		OntologyIRICatalogData catalog = new OntologyIRICatalogData();
+		catalog.fileModificationTimes = modificationTimes;
+		catalog.ontologyFiles = new TreeMap<>();
+		catalog.oboFiles = new TreeMap<>();
+		AutoIRIMapper autoIRIMapper = new AutoIRIMapper(directory, true);
+		for (IRI ontologyIRI : autoIRIMapper.getOntologyIRIs()) {
+			IRI documentIRI = autoIRIMapper.getDocumentIRI(ontologyIRI);
+			if (documentIRI != null)
+				catalog.ontologyFiles.put(ontologyIRI.toString(),
+						relativePath(directory, new File(documentIRI.toURI())));
+		}
+		// like the AutoIRIMapper, resolve imports of OBO files by their name
+		for (String path : modificationTimes.keySet()) {
+			if (path.toLowerCase().endsWith(".obo"))
+				catalog.oboFiles.put(path.substring(path.lastIndexOf('/') + 1), path);
+		}
+		log.info("Built the IRI catalog of directory {} with {} ontologies in {} ms", directory,
+				catalog.ontologyFiles.size(), System.currentTimeMillis() - time);
+		return catalog;
+	}
+
+	private static Map<String, Long> getModificationTimes(File directory) throws IOException {
+		Map<String, Long> modificationTimes = new TreeMap<>();
+		try (Stream<Path> paths = Files.walk(directory.toPath())) {
+			paths.filter(Files::isRegularFile).map(Path::toFile)
+					.forEach(f -> modificationTimes.put(relativePath(directory, f), f.lastModified()));
+		}
+		return modificationTimes;
+	}
+
+	private static String relativePath(File directory, File file) {
+		return directory.getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath()).toString()
+				.replace(File.separatorChar, '/');
+	}
+
+	@Override
+	public IRI getDocumentIRI(IRI ontologyIRI) {
+		String path = catalog.ontologyFiles.get(ontologyIRI.toString());
+		if (path == null && ontologyIRI.toString().endsWith(".obo")) {
+			String iriPath = ontologyIRI.toURI().getPath();
+			if (iriPath != null)
+				path = catalog.oboFiles.get(iriPath.substring(iriPath.lastIndexOf('/') + 1));
+		}
+		return path != null ? IRI.create(new File(directory, path)) : null;
+	}
+
+	/**
+	 * @return The number of catalogued ontology IRIs.
+	 */
+	public int size() {
+		return catalog.ontologyFiles.size();
+	}
+}
@@ -3,6 +3,7 @@ package de.julielab.bioportal.ontologies;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -10,7 +11,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.GZIPOutputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
@@ -25,6 +25,7 @@ import de.julielab.bioportal.ontologies.data.OntologyGroup;
 import de.julielab.bioportal.ontologies.data.OntologyMetaData;
 import de.julielab.bioportal.ontologies.data.OntologyMetric;
 import de.julielab.bioportal.util.BioPortalOntologyToolsException;
+import de.julielab.bioportal.util.BioPortalToolUtils;
 
 public class OntologyListRetriver {
 	private static final Logger log = LoggerFactory.getLogger(OntologyListRetriver.class);
@@ -86,7 +87,7 @@ public class OntologyListRetriver {
 		if (null != outputFile) {
 			log.info("Storing the ontology meta data list for {} ontologies to {}.", ontologiesMetaData.size(),
 					outputFile);
-			try (GZIPOutputStream os = new GZIPOutputStream(new FileOutputStream(outputFile))) {
+			try (OutputStream os = BioPortalToolUtils.getGzipOutputStream(new FileOutputStream(outputFile))) {
 				IOUtils.writeLines(effectiveOntologiesMetaData, "\n", os, "UTF-8");
 			}
 		}
@@ -1,28 +1,41 @@
 package de.julielab.bioportal.ontologies;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.StreamDocumentSource;
+import org.semanticweb.owlapi.io.UnparsableOntologyException;
+import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.MissingImportHandlingStrategy;
+import org.semanticweb.owlapi.model.OWLDocumentFormat;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyFactory;
 import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyIRIMapper;
 import org.semanticweb.owlapi.model.OWLOntologyLoaderConfiguration;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
-import org.semanticweb.owlapi.util.AutoIRIMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.io.Files;
 
+import uk.ac.manchester.cs.owl.owlapi.OWLOntologyFactoryImpl;
+
 import de.julielab.bioportal.util.BioPortalToolUtils;
+import de.julielab.bioportal.util.ReadAheadInputStream;
+import de.julielab.bioportal.util.UmlsLineFilterInputStream;
 import de.julielab.java.utilities.FileUtilities;
 
 public class OntologyLoader {
@@ -30,6 +43,16 @@ public class OntologyLoader {
 	private static final Logger log = LoggerFactory.getLogger(OntologyLoader.class);
 
 	private OWLOntologyManager ontologyManager;
+	private boolean readAhead;
+	private boolean formatDetection = true;
+	private List<OWLOntologyFactory> defaultOntologyFactories = new ArrayList<>();
+	private ExtractionAxiomFilter axiomFilter;
+	private ImportCache importCache;
+	private OWLOntologyIRIMapper importCacheMapper;
+	/**
+	 * The IRI catalog of the ontology directory that is being loaded, if any.
+	 */
+	private OntologyIRICatalog iriCatalog;
 
 	public OntologyLoader() {
 		this.ontologyManager = OWLManager.createOWLOntologyManager();
@@ -37,19 +60,111 @@ public class OntologyLoader {
 		config = config.setMissingImportHandlingStrategy(MissingImportHandlingStrategy.SILENT);
 
 		ontologyManager.setOntologyLoaderConfiguration(config);
+		ontologyManager.getOntologyFactories().forEach(defaultOntologyFactories::add);
 		ontologyManager.addMissingImportListener(event -> log.warn(
 				"An exception concerning the ontology import of {} was thrown: {}; Extracted class names will not include classes from that ontology.",
 				event.getImportedOntologyURI(), event.getCreationException().getMessage()));
 	}
 
+	/**
+	 * Sets whether gzipped ontology files are decompressed ahead on a
+	 * dedicated thread with a {@link ReadAheadInputStream} while the OWL API
+	 * parses them. Off by default.
+	 * 
+	 * @param readAhead
+	 *            Whether to decompress gzipped files ahead.
+	 */
+	public void setReadAhead(boolean readAhead) {
+		this.readAhead = readAhead;
+	}
+
+	/**
+	 * Sets whether the format of ontology files is determined with the
+	 * {@link OntologyFormatSniffer} and passed to the OWL API. Otherwise, the
+	 * OWL API tries all its parsers until one succeeds. On by default.
+	 * 
+	 * @param formatDetection
+	 *            Whether to detect the format of ontology files.
+	 */
+	public void setFormatDetection(boolean formatDetection) {
+		this.formatDetection = formatDetection;
+	}
+
+	/**
+	 * Sets whether only the axioms required to extract class names without
+	 * reasoning are kept while loading ontologies, see
+	 * {@link ExtractionAxiomFilter}. This reduces the heap required for
+	 * ontologies with many logical axioms. Must not be switched on if the
+	 * ontologies are classified. Off by default.
+	 * 
+	 * @param annotationOnly
+	 *            Whether to drop the axioms that are not required without
+	 *            reasoning.
+	 */
+	public void setAnnotationOnly(boolean annotationOnly) {
+		if (annotationOnly && axiomFilter == null) {
+			axiomFilter = new ExtractionAxiomFilter();
+			ontologyManager.getOntologyFactories().set(new OWLOntologyFactoryImpl(axiomFilter));
+		} else if (!annotationOnly && axiomFilter != null) {
+			axiomFilter = null;
+			ontologyManager.getOntologyFactories().set(defaultOntologyFactories);
+		}
+	}
+
+	/**
+	 * @return The filter that counts the dropped axioms of the loaded
+	 *         ontologies or <tt>null</tt> if all axioms are loaded.
+	 */
+	public ExtractionAxiomFilter getAxiomFilter() {
+		return axiomFilter;
+	}
+
 	public OWLOntologyManager getOntologyManager() {
 		return ontologyManager;
 	}
 
+	/**
+	 * Sets the cache from which imported ontologies are loaded and to which
+	 * the imports of loaded ontology files are added. The cache keeps
+	 * complete and annotation-only imports apart. When an ontology directory
+	 * is loaded, the imports found in its {@link OntologyIRICatalog} are
+	 * loaded from the directory, not from the cache.
+	 * 
+	 * @param importCache
+	 *            The import cache or <tt>null</tt> to load imports from their
+	 *            original location.
+	 */
+	public void setImportCache(ImportCache importCache) {
+		if (importCacheMapper != null)
+			ontologyManager.getIRIMappers().remove(importCacheMapper);
+		this.importCache = importCache;
+		this.importCacheMapper = null;
+		if (importCache != null) {
+			importCacheMapper = this::getCachedDocumentIRI;
+			ontologyManager.getIRIMappers().add(importCacheMapper);
+		}
+	}
+
 	public OWLOntology loadOntology(InputStream is) throws OWLOntologyCreationException {
 		return ontologyManager.loadOntologyFromOntologyDocument(is);
 	}
 
+	/**
+	 * Loads an ontology with the parsers for the given format only.
+	 * 
+	 * @param is
+	 *            The ontology document.
+	 * @param format
+	 *            The format of the document.
+	 * @return The loaded ontology.
+	 * @throws OWLOntologyCreationException
+	 *             If the document cannot be parsed in the given format.
+	 */
+	public OWLOntology loadOntology(InputStream is, OWLDocumentFormat format) throws OWLOntologyCreationException {
+		return ontologyManager.loadOntologyFromOntologyDocument(new StreamDocumentSource(is,
+				IRI.generateDocumentIRI(), format, null));
+	}
+
 	public File getMainOntologyFile(File directory) throws IOException {
 		if (!directory.isDirectory())
 			throw new IllegalArgumentException(directory.getAbsolutePath() + " is not a directory.");
@@ -85,16 +200,31 @@ public class OntologyLoader {
 		}
 	}
 
+	/**
+	 * Maps an import to the import cache unless the IRI catalog of the
+	 * directory that is being loaded knows it. This does not rely on the
+	 * order of the IRI mappers of the ontology manager.
+	 */
+	private IRI getCachedDocumentIRI(IRI importIRI) {
+		if (iriCatalog != null && iriCatalog.getDocumentIRI(importIRI) != null)
+			return null;
+		return importCache.getDocumentIRI(importIRI, axiomFilter != null);
+	}
+
 	public OWLOntology loadOntology(File file) throws OWLOntologyCreationException {
 		if (file.isDirectory()) {
-			// Using the auto IRI mapper will cause the loading of local files
+			// Using the IRI catalog will cause the loading of local files
 			// over remote files, if available. We set it to the ontology
 			// directory where all relevant files should reside.
 			// If not given, it might either happen that (slow) downloads from
 			// the internet occur or, if those are not available, they are just
 			// dropped and the ontology has less classes than it should.
-			AutoIRIMapper autoIRIMapper = new AutoIRIMapper(file, true);
-			ontologyManager.getIRIMappers().add(autoIRIMapper);
+			try {
+				iriCatalog = OntologyIRICatalog.forDirectory(file);
+			} catch (IOException e) {
+				throw new OWLOntologyCreationException(e);
+			}
+			ontologyManager.getIRIMappers().add(iriCatalog);
 
 			OWLOntology o;
 			try {
@@ -104,22 +234,106 @@ public class OntologyLoader {
 			} finally {
 				// remove the IRI mapper to reset the state of the
 				// ontologymanager
-				ontologyManager.getIRIMappers().remove(autoIRIMapper);
+				ontologyManager.getIRIMappers().remove(iriCatalog);
+				iriCatalog = null;
 			}
 			return o;
 		}
+		log.debug("Loading ontology file {}", file);
+		long time = System.currentTimeMillis();
+		OWLOntology o = null;
+		Optional<OWLDocumentFormat> format = Optional.empty();
+		if (formatDetection) {
+			try {
+				format = detectFormat(file);
+			} catch (IOException e) {
+				throw new OWLOntologyCreationException(e);
+			}
+			if (format.isPresent()) {
+				try {
+					o = loadOntologyFile(file, format.get());
+				} catch (UnparsableOntologyException e) {
+					log.warn("Ontology file {} could not be parsed as {}, trying all parsers: {}", file,
+							format.get().getKey(), e.getMessage());
+				}
+			} else {
+				log.debug("Could not detect the format of ontology file {}, trying all parsers", file);
+			}
+		}
+		if (o == null)
+			o = loadOntologyFile(file, null);
+		OWLDocumentFormat loadedFormat = o.getFormat();
+		log.info("Loaded ontology file {} with the {} parser{} in {} ms", file,
+				loadedFormat != null ? loadedFormat.getKey() : "unknown",
+				format.isPresent() ? "" : " found by trying all parsers", System.currentTimeMillis() - time);
+		if (importCache != null)
+			importCache.storeImports(o, axiomFilter != null);
+		return o;
+	}
+
+	/**
+	 * Determines the format of an ontology file with the
+	 * {@link OntologyFormatSniffer}.
+	 * 
+	 * @param file
+	 *            An ontology file.
+	 * @return The format of the file, if it could be determined.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public Optional<OWLDocumentFormat> detectFormat(File file) throws IOException {
+		try (InputStream is = new BufferedInputStream(FileUtilities.getInputStreamFromFile(file),
+				OntologyFormatSniffer.HEAD_SIZE)) {
+			return OntologyFormatSniffer.sniff(file.getName(), is);
+		}
+	}
+
+	/**
+	 * Loads an ontology file, decompressing it ahead and repairing UMLS files
+	 * as required.
+	 * 
+	 * @param file
+	 *            The ontology file.
+	 * @param format
+	 *            The format of the file or <tt>null</tt> to let the OWL API
+	 *            try all parsers.
+	 * @return The loaded ontology.
+	 * @throws OWLOntologyCreationException
+	 *             If the file cannot be read or parsed.
+	 */
+	private OWLOntology loadOntologyFile(File file, OWLDocumentFormat format) throws OWLOntologyCreationException {
 		OWLOntology o;
 		try {
-			log.debug("Loading ontology file {}", file);
-			o = loadOntology(FileUtilities.getInputStreamFromFile(file));
+			InputStream is = FileUtilities.getInputStreamFromFile(file);
+			String lcfn = file.getName().toLowerCase();
+			if (readAhead && (lcfn.endsWith(".gz") || lcfn.endsWith(".gzip")))
+				is = new ReadAheadInputStream(is, file.getName());
+			// closing the stream also stops the read-ahead thread if parsing fails
+			try (InputStream fileStream = is) {
+				if (BioPortalToolUtils.isUMLSOntology(file)) {
+					UmlsLineFilterInputStream filteredStream = new UmlsLineFilterInputStream(fileStream);
+					o = format != null ? loadOntology(filteredStream, format) : loadOntology(filteredStream);
+					if (filteredStream.getRemovedLines() > 0)
+						log.info("{} lines with broken UMLS string quotations have been skipped while loading {}",
+								filteredStream.getRemovedLines(), file);
+				} else {
+					o = format != null ? loadOntology(fileStream, format) : loadOntology(fileStream);
+				}
+			}
 		} catch (IOException e) {
 			throw new OWLOntologyCreationException(e);
 		}
 		return o;
 	}
 
+	/**
+	 * Removes all ontologies from the ontology manager and resets the counts
+	 * of the {@link #getAxiomFilter() axiom filter}.
+	 */
 	public void clearLoadedOntologies() {
 		ontologyManager.clearOntologies();
+		if (axiomFilter != null)
+			axiomFilter.resetCounts();
 	}
 
 	public void removeOntology(OWLOntologyID ontologyID) {
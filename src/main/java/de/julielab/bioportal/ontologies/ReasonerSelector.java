@@ -0,0 +1,128 @@
+package de.julielab.bioportal.ontologies;
+
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.profiles.OWL2ELProfile;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Chooses the reasoner factory for each ontology according to a
+ * {@link ReasonerStrategy}. For {@link ReasonerStrategy#AUTO}, the ontology
+ * and its imports closure are checked against the OWL 2 EL profile.
+ * </p>
+ * <p>
+ * ELK is not a dependency of this project. It is instantiated by reflection
+ * from {@link #ELK_FACTORY_CLASS} and must be put on the classpath in a
+ * version for the OWL API 5. Without ELK, {@link ReasonerStrategy#AUTO} uses
+ * HermiT for all ontologies.
+ * </p>
+ */
+public class ReasonerSelector {
+
+	private static final Logger log = LoggerFactory.getLogger(ReasonerSelector.class);
+
+	public static final String ELK_FACTORY_CLASS = "org.semanticweb.elk.owlapi.ElkReasonerFactory";
+
+	private ReasonerStrategy strategy;
+	private OWLReasonerFactory hermitFactory;
+	private OWLReasonerFactory elkFactory;
+	private OWLReasonerFactory structuralFactory;
+
+	/**
+	 * @param strategy
+	 *            The strategy to choose reasoners with.
+	 * @throws IllegalStateException
+	 *             If the strategy is {@link ReasonerStrategy#ELK} and ELK is
+	 *             not on the classpath.
+	 */
+	public ReasonerSelector(ReasonerStrategy strategy) {
+		this.strategy = strategy;
+		switch (strategy) {
+		case AUTO:
+			hermitFactory = new org.semanticweb.HermiT.ReasonerFactory();
+			elkFactory = createElkReasonerFactory();
+			if (elkFactory == null)
+				log.warn("ELK was not found on the classpath, all ontologies will be classified with HermiT");
+			break;
+		case ELK:
+			elkFactory = createElkReasonerFactory();
+			if (elkFactory == null)
+				throw new IllegalStateException(
+						"The reasoner strategy " + strategy + " requires ELK but " + ELK_FACTORY_CLASS + " was not found");
+			break;
+		case HERMIT:
+			hermitFactory = new org.semanticweb.HermiT.ReasonerFactory();
+			break;
+		case STRUCTURAL:
+			structuralFactory = new StructuralReasonerFactory();
+			break;
+		}
+	}
+
+	/**
+	 * @return The ELK reasoner factory or <tt>null</tt> if ELK is not on the
+	 *         classpath or cannot be instantiated.
+	 */
+	public static OWLReasonerFactory createElkReasonerFactory() {
+		try {
+			return (OWLReasonerFactory) Class.forName(ELK_FACTORY_CLASS).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+			log.debug("Could not instantiate the ELK reasoner factory", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Chooses the reasoner factory for <tt>o</tt>.
+	 * 
+	 * @param o
+	 *            The ontology to classify.
+	 * @return The reasoner factory to classify <tt>o</tt> with.
+	 */
+	public OWLReasonerFactory select(OWLOntology o) {
+		switch (strategy) {
+		case ELK:
+			return elkFactory;
+		case HERMIT:
+			return hermitFactory;
+		case STRUCTURAL:
+			return structuralFactory;
+		default:
+			if (elkFactory == null)
+				return hermitFactory;
+			long time = System.currentTimeMillis();
+			boolean inEL = new OWL2ELProfile().checkOntology(o).isInProfile();
+			log.debug("Checked the OWL 2 EL profile of ontology {} in {} ms: {}", o.getOntologyID(),
+					System.currentTimeMillis() - time, inEL);
+			return inEL ? elkFactory : hermitFactory;
+		}
+	}
+
+	/**
+	 * @return The strategy together with the names and versions of the
+	 *         reasoners it may choose. Identifies the inferred class
+	 *         hierarchies for the {@link InferredHierarchyCache}.
+	 */
+	public String getIdentity() {
+		StringBuilder sb = new StringBuilder(strategy.name());
+		for (OWLReasonerFactory factory : new OWLReasonerFactory[] { hermitFactory, elkFactory,
+				structuralFactory }) {
+			if (factory == null)
+				continue;
+			sb.append(",").append(factory.getReasonerName());
+			String version = factory.getClass().getPackage() != null
+					? factory.getClass().getPackage().getImplementationVersion()
+					: null;
+			if (version != null)
+				sb.append(" ").append(version);
+		}
+		return sb.toString();
+	}
+
+	public ReasonerStrategy getStrategy() {
+		return strategy;
+	}
+}
@@ -0,0 +1,30 @@
+package de.julielab.bioportal.ontologies;
+
+/**
+ * The ways to choose the reasoner that infers the class parents when
+ * reasoning is applied, see {@link ReasonerSelector}.
+ */
+public enum ReasonerStrategy {
+	/**
+	 * Classifies ontologies in the OWL 2 EL profile with ELK, if it is on the
+	 * classpath, and all other ontologies with HermiT. ELK is complete for the
+	 * classification of EL ontologies and much faster than HermiT on large
+	 * ones.
+	 */
+	AUTO,
+	/**
+	 * Classifies all ontologies with ELK. Axioms outside of OWL 2 EL are
+	 * ignored by ELK, so some inferred parents of non-EL ontologies may be
+	 * missing.
+	 */
+	ELK,
+	/**
+	 * Classifies all ontologies with HermiT.
+	 */
+	HERMIT,
+	/**
+	 * Uses the OWL API structural reasoner which only reports the asserted
+	 * hierarchy, including the parents from imported ontologies.
+	 */
+	STRUCTURAL
+}
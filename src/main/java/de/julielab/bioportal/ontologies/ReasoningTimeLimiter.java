@@ -0,0 +1,162 @@
+package de.julielab.bioportal.ontologies;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+import org.semanticweb.owlapi.reasoner.ReasonerInterruptedException;
+import org.semanticweb.owlapi.reasoner.ReasonerProgressMonitor;
+import org.semanticweb.owlapi.reasoner.SimpleConfiguration;
+import org.semanticweb.owlapi.reasoner.TimeOutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * Creates reasoners whose class hierarchy computation is limited to a given
+ * time. The time limit is given to the reasoner via its
+ * {@link SimpleConfiguration configuration}, checked by a
+ * {@link ReasonerProgressMonitor} on each progress notification and finally
+ * enforced by a watchdog thread that {@link OWLReasoner#interrupt()
+ * interrupts} the reasoner when the time is up. The latter is required
+ * because reasoners like HermiT only apply the configured timeout to single
+ * reasoning tasks, not to the whole classification.
+ * </p>
+ */
+public class ReasoningTimeLimiter {
+
+	private static final Logger log = LoggerFactory.getLogger(ReasoningTimeLimiter.class);
+
+	private OWLReasonerFactory reasonerFactory;
+	private long timeout;
+	private ScheduledExecutorService watchdog;
+
+	/**
+	 * @param reasonerFactory
+	 *            The factory to create reasoners with.
+	 * @param timeout
+	 *            The maximum time in milliseconds for the classification of an
+	 *            ontology. A non-positive value means no limit.
+	 */
+	public ReasoningTimeLimiter(OWLReasonerFactory reasonerFactory, long timeout) {
+		this(timeout);
+		this.reasonerFactory = reasonerFactory;
+	}
+
+	/**
+	 * Creates a limiter without a default reasoner factory. The factory must
+	 * be given to
+	 * {@link #createClassifiedReasoner(OWLOntology, OWLReasonerFactory)}.
+	 * 
+	 * @param timeout
+	 *            The maximum time in milliseconds for the classification of an
+	 *            ontology. A non-positive value means no limit.
+	 */
+	public ReasoningTimeLimiter(long timeout) {
+		this.timeout = timeout;
+		if (timeout > 0)
+			watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread t = new Thread(r, "reasoning-watchdog");
+				t.setDaemon(true);
+				return t;
+			});
+	}
+
+	/**
+	 * Creates a reasoner for <tt>o</tt> and computes the class hierarchy.
+	 * 
+	 * @param o
+	 *            The ontology to classify.
+	 * @return The reasoner with the precomputed class hierarchy or
+	 *         <tt>null</tt> if the classification exceeded the timeout.
+	 */
+	public OWLReasoner createClassifiedReasoner(OWLOntology o) {
+		return createClassifiedReasoner(o, reasonerFactory);
+	}
+
+	/**
+	 * Creates a reasoner for <tt>o</tt> with the given factory and computes
+	 * the class hierarchy.
+	 * 
+	 * @param o
+	 *            The ontology to classify.
+	 * @param reasonerFactory
+	 *            The factory to create the reasoner with.
+	 * @return The reasoner with the precomputed class hierarchy or
+	 *         <tt>null</tt> if the classification exceeded the timeout.
+	 */
+	public OWLReasoner createClassifiedReasoner(OWLOntology o, OWLReasonerFactory reasonerFactory) {
+		if (timeout <= 0) {
+			OWLReasoner reasoner = reasonerFactory.createReasoner(o);
+			reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+			return reasoner;
+		}
+		long deadline = System.currentTimeMillis() + timeout;
+		OWLReasoner reasoner = reasonerFactory.createReasoner(o,
+				new SimpleConfiguration(new DeadlineProgressMonitor(deadline), timeout));
+		long remaining = Math.max(0, deadline - System.currentTimeMillis());
+		ScheduledFuture<?> interruption = watchdog.schedule(reasoner::interrupt, remaining, TimeUnit.MILLISECONDS);
+		boolean timedOut = false;
+		try {
+			reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		} catch (TimeOutException | ReasonerInterruptedException e) {
+			timedOut = true;
+		} finally {
+			// if the watchdog has already fired, the reasoner might be left
+			// in an interrupted state even though the classification finished
+			if (!interruption.cancel(false))
+				timedOut = true;
+		}
+		if (timedOut) {
+			log.warn("The classification of ontology {} did not finish within {}ms. It is aborted.",
+					o.getOntologyID(), timeout);
+			reasoner.dispose();
+			return null;
+		}
+		return reasoner;
+	}
+
+	public void shutDown() {
+		if (watchdog != null)
+			watchdog.shutdownNow();
+	}
+
+	/**
+	 * Aborts the current reasoning task with a {@link TimeOutException} as
+	 * soon as the reasoner reports progress after the deadline.
+	 */
+	private static class DeadlineProgressMonitor implements ReasonerProgressMonitor {
+		private static final long serialVersionUID = 1L;
+
+		private long deadline;
+
+		public DeadlineProgressMonitor(long deadline) {
+			this.deadline = deadline;
+		}
+
+		private void checkDeadline() {
+			if (System.currentTimeMillis() > deadline)
+				throw new TimeOutException();
+		}
+
+		@Override
+		public void reasonerTaskStarted(String taskName) {
+			checkDeadline();
+		}
+
+		@Override
+		public void reasonerTaskProgressChanged(int value, int max) {
+			checkDeadline();
+		}
+
+		@Override
+		public void reasonerTaskBusy() {
+			checkDeadline();
+		}
+	}
+}
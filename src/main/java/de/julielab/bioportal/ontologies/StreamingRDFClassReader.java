@@ -0,0 +1,424 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.julielab.bioportal.util.BioPortalToolUtils;
+import de.julielab.bioportal.util.StringInterner;
+import de.julielab.bioportal.util.UmlsLineFilterInputStream;
+import de.julielab.java.utilities.FileUtilities;
+
+/**
+ * <p>
+ * Reads the class information required for class name extraction directly
+ * from the RDF triples of an ontology file without building an OWL API
+ * ontology. Only the values of the properties of an
+ * {@link AnnotationPropertySet} and the named super classes are kept for each
+ * class, which makes the memory consumption a small constant per class instead
+ * of the complete axiom model.
+ * </p>
+ * <p>
+ * The classes are determined like the OWL API RDF parsers do: declared classes
+ * and every IRI that is used in a class position of a triple, e.g. as the
+ * object of <tt>rdfs:subClassOf</tt>, as a restriction filler or as a member of
+ * a disjoint classes list. Annotation values are converted into the respective
+ * OWL API objects and put into a {@link ClassAnnotationIndex} so that the
+ * {@link ClassRecordExtractor} produces the same records as for a loaded
+ * ontology. Imports are not followed; their classes are missing from the
+ * output.
+ * </p>
+ */
+public class StreamingRDFClassReader extends AbstractRDFHandler {
+
+	private static final Logger log = LoggerFactory.getLogger(StreamingRDFClassReader.class);
+
+	private static final String RDF = "http://www.w3.org/1999/02/22-rdf-syntax-ns#";
+	private static final String RDFS = "http://www.w3.org/2000/01/rdf-schema#";
+	private static final String OWL = "http://www.w3.org/2002/07/owl#";
+	private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+	private static final String RDF_TYPE = RDF + "type";
+	private static final String RDF_FIRST = RDF + "first";
+	private static final String RDF_REST = RDF + "rest";
+	private static final String RDFS_SUBCLASS_OF = RDFS + "subClassOf";
+	private static final String RDFS_DOMAIN = RDFS + "domain";
+	private static final String RDFS_RANGE = RDFS + "range";
+	private static final String RDFS_CLASS = RDFS + "Class";
+	private static final String RDFS_DATATYPE = RDFS + "Datatype";
+	private static final String OWL_CLASS = OWL + "Class";
+	private static final String OWL_DEPRECATED_CLASS = OWL + "DeprecatedClass";
+	private static final String OWL_THING = OWL + "Thing";
+	private static final String OWL_NOTHING = OWL + "Nothing";
+	private static final String OWL_ANNOTATION_PROPERTY = OWL + "AnnotationProperty";
+	private static final String OWL_ALL_DISJOINT_CLASSES = OWL + "AllDisjointClasses";
+	private static final String OWL_EQUIVALENT_CLASS = OWL + "equivalentClass";
+	private static final String OWL_DISJOINT_WITH = OWL + "disjointWith";
+	private static final String OWL_COMPLEMENT_OF = OWL + "complementOf";
+	private static final String OWL_SOME_VALUES_FROM = OWL + "someValuesFrom";
+	private static final String OWL_ALL_VALUES_FROM = OWL + "allValuesFrom";
+	private static final String OWL_ON_CLASS = OWL + "onClass";
+	private static final String OWL_UNION_OF = OWL + "unionOf";
+	private static final String OWL_INTERSECTION_OF = OWL + "intersectionOf";
+	private static final String OWL_DISJOINT_UNION_OF = OWL + "disjointUnionOf";
+	private static final String OWL_MEMBERS = OWL + "members";
+	private static final String OWL_IMPORTS = OWL + "imports";
+
+	private OWLDataFactory df = OWLManager.getOWLDataFactory();
+	private Map<String, OWLAnnotationProperty> relevantProperties = new HashMap<>();
+	private OWLAnnotationProperty deprecatedProperty;
+
+	private ClassAnnotationIndex annotationIndex = new ClassAnnotationIndex();
+	private Map<IRI, List<OWLClass>> superClasses = new HashMap<>();
+	private Set<String> classes = new HashSet<>();
+
+	// Triples whose objects are classes or datatypes, depending on
+	// declarations that may come later in the file.
+	private Set<String> classOrDatatypeCandidates = new HashSet<>();
+	private List<String[]> domainsAndRanges = new ArrayList<>();
+	private Set<String> datatypes = new HashSet<>();
+	private Set<String> annotationProperties = new HashSet<>();
+	private Set<Resource> datatypeNodes = new HashSet<>();
+	private Set<Resource> allDisjointClassesNodes = new HashSet<>();
+	private Map<Resource, Value> membersLists = new HashMap<>();
+	private Map<Resource, Value> booleanClassLists = new HashMap<>();
+	private List<Value> disjointUnionLists = new ArrayList<>();
+	private Map<Resource, Value> listFirst = new HashMap<>();
+	private Map<Resource, Value> listRest = new HashMap<>();
+	private int numImports;
+	private long numStatements;
+	private StringInterner stringInterner;
+
+	public StreamingRDFClassReader(AnnotationPropertySet properties) {
+		for (OWLAnnotationProperty property : properties.getAllProperties())
+			relevantProperties.put(property.getIRI().toString(), property);
+		OWLAnnotationProperty deprecated = df.getOWLDeprecated();
+		if (properties.getObsoleteProps().contains(deprecated))
+			deprecatedProperty = deprecated;
+	}
+
+	/**
+	 * Sets an interner that is shared by the extractions of all ontologies.
+	 * The class IRIs and the literal annotation values are interned with it.
+	 * 
+	 * @param stringInterner
+	 *            The interner or <tt>null</tt> to not intern strings.
+	 */
+	public void setStringInterner(StringInterner stringInterner) {
+		this.stringInterner = stringInterner;
+	}
+
+	private String intern(String s) {
+		return stringInterner != null ? stringInterner.intern(s) : s;
+	}
+
+	/**
+	 * Determines the RDF format of an ontology file from its name, ignoring
+	 * compression suffixes. UMLS files are Turtle.
+	 *
+	 * @param file
+	 *            An ontology file.
+	 * @return The RDF format, if it could be determined.
+	 */
+	public static Optional<RDFFormat> getRDFFormat(File file) {
+		String lcfn = file.getName().toLowerCase();
+		if (lcfn.endsWith(".gz"))
+			lcfn = lcfn.substring(0, lcfn.length() - 3);
+		else if (lcfn.endsWith(".gzip"))
+			lcfn = lcfn.substring(0, lcfn.length() - 5);
+		if (lcfn.endsWith(".umls"))
+			return Optional.of(RDFFormat.TURTLE);
+		return Rio.getParserFormatForFileName(lcfn);
+	}
+
+	/**
+	 * Reads the triples of <tt>file</tt>.
+	 *
+	 * @param file
+	 *            An RDF ontology file in a format known to
+	 *            {@link #getRDFFormat(File)}.
+	 * @throws IOException
+	 *             If reading the file fails.
+	 * @throws RDFParseException
+	 *             If the file cannot be parsed.
+	 */
+	public void read(File file) throws IOException, RDFParseException {
+		RDFFormat format = getRDFFormat(file)
+				.orElseThrow(() -> new IllegalArgumentException("Unknown RDF format of file " + file));
+		RDFParser parser = Rio.createParser(format);
+		parser.setRDFHandler(this);
+		log.debug("Streaming the triples of {} as {}", file, format.getName());
+		InputStream fileStream = FileUtilities.getInputStreamFromFile(file);
+		try (InputStream is = BioPortalToolUtils.isUMLSOntology(file) ? new UmlsLineFilterInputStream(fileStream)
+				: fileStream) {
+			parser.parse(is, file.toURI().toString());
+		}
+		if (numImports > 0)
+			log.warn("Ontology file {} has {} imports that are not followed by the streaming extraction.", file,
+					numImports);
+		log.debug("Read {} triples with {} classes from {}", numStatements, classes.size(), file);
+	}
+
+	@Override
+	public void handleStatement(Statement st) throws RDFHandlerException {
+		++numStatements;
+		Resource s = st.getSubject();
+		String p = st.getPredicate().stringValue();
+		Value o = st.getObject();
+		boolean iriSubject = s instanceof org.eclipse.rdf4j.model.IRI;
+		boolean iriObject = o instanceof org.eclipse.rdf4j.model.IRI;
+
+		OWLAnnotationProperty relevantProperty = relevantProperties.get(p);
+		if (relevantProperty != null && iriSubject) {
+			OWLAnnotationValue value = toAnnotationValue(o);
+			if (value != null)
+				addAnnotationValue(IRI.create(s.stringValue()), relevantProperty, value);
+		}
+
+		switch (p) {
+		case RDF_TYPE:
+			if (iriObject)
+				handleType(s, o.stringValue());
+			break;
+		case RDFS_SUBCLASS_OF:
+			if (iriSubject)
+				classes.add(intern(s.stringValue()));
+			if (iriObject) {
+				classes.add(intern(o.stringValue()));
+				if (iriSubject)
+					superClasses.computeIfAbsent(IRI.create(s.stringValue()), k -> new ArrayList<>(2))
+							.add(df.getOWLClass(IRI.create(o.stringValue())));
+			}
+			break;
+		case OWL_EQUIVALENT_CLASS:
+		case OWL_DISJOINT_WITH:
+			if (iriSubject)
+				classOrDatatypeCandidates.add(s.stringValue());
+			if (iriObject)
+				classOrDatatypeCandidates.add(o.stringValue());
+			break;
+		case OWL_COMPLEMENT_OF:
+		case OWL_SOME_VALUES_FROM:
+		case OWL_ALL_VALUES_FROM:
+		case OWL_ON_CLASS:
+			if (iriObject)
+				classOrDatatypeCandidates.add(o.stringValue());
+			break;
+		case RDFS_DOMAIN:
+		case RDFS_RANGE:
+			if (iriSubject && iriObject)
+				domainsAndRanges.add(new String[] { p, s.stringValue(), o.stringValue() });
+			break;
+		case OWL_UNION_OF:
+		case OWL_INTERSECTION_OF:
+			booleanClassLists.put(s, o);
+			break;
+		case OWL_DISJOINT_UNION_OF:
+			if (iriSubject)
+				classes.add(intern(s.stringValue()));
+			disjointUnionLists.add(o);
+			break;
+		case OWL_MEMBERS:
+			membersLists.put(s, o);
+			break;
+		case RDF_FIRST:
+			listFirst.put(s, o);
+			break;
+		case RDF_REST:
+			listRest.put(s, o);
+			break;
+		case OWL_IMPORTS:
+			++numImports;
+			break;
+		default:
+			break;
+		}
+	}
+
+	private void handleType(Resource s, String type) {
+		boolean iriSubject = s instanceof org.eclipse.rdf4j.model.IRI;
+		switch (type) {
+		case OWL_CLASS:
+		case RDFS_CLASS:
+			if (iriSubject)
+				classes.add(intern(s.stringValue()));
+			break;
+		case OWL_DEPRECATED_CLASS:
+			// the OWL API translates this into a declaration and a deprecated
+			// annotation
+			if (iriSubject) {
+				classes.add(intern(s.stringValue()));
+				if (deprecatedProperty != null)
+					addAnnotationValue(IRI.create(s.stringValue()), deprecatedProperty, df.getOWLLiteral(true));
+			}
+			break;
+		case RDFS_DATATYPE:
+			if (iriSubject)
+				datatypes.add(s.stringValue());
+			else
+				datatypeNodes.add(s);
+			break;
+		case OWL_ANNOTATION_PROPERTY:
+			if (iriSubject)
+				annotationProperties.add(s.stringValue());
+			break;
+		case OWL_ALL_DISJOINT_CLASSES:
+			allDisjointClassesNodes.add(s);
+			break;
+		case OWL_THING:
+		case OWL_NOTHING:
+			classes.add(intern(type));
+			break;
+		default:
+			// a class assertion of an individual; vocabulary types like
+			// owl:ObjectProperty or owl:Ontology are no classes
+			if (!isBuiltIn(type))
+				classes.add(intern(type));
+			break;
+		}
+	}
+
+	private boolean isBuiltIn(String iri) {
+		return iri.startsWith(RDF) || iri.startsWith(RDFS) || iri.startsWith(OWL) || iri.startsWith(XSD);
+	}
+
+	private boolean isDatatype(String iri) {
+		return datatypes.contains(iri) || iri.startsWith(XSD) || iri.equals(RDFS + "Literal")
+				|| iri.equals(RDF + "PlainLiteral") || iri.equals(RDF + "XMLLiteral")
+				|| iri.equals(RDF + "langString") || iri.equals(OWL + "real") || iri.equals(OWL + "rational");
+	}
+
+	private OWLAnnotationValue toAnnotationValue(Value value) {
+		if (value instanceof org.eclipse.rdf4j.model.IRI)
+			return IRI.create(value.stringValue());
+		if (value instanceof Literal) {
+			Literal literal = (Literal) value;
+			Optional<String> language = literal.getLanguage();
+			if (language.isPresent())
+				return df.getOWLLiteral(intern(literal.getLabel()), language.get());
+			String datatype = literal.getDatatype() != null ? literal.getDatatype().stringValue() : null;
+			if (datatype == null || datatype.equals(XSD + "string") || datatype.equals(RDF + "PlainLiteral"))
+				return df.getOWLLiteral(intern(literal.getLabel()));
+			return df.getOWLLiteral(intern(literal.getLabel()), df.getOWLDatatype(IRI.create(datatype)));
+		}
+		// anonymous individuals as annotation values are not supported
+		return null;
+	}
+
+	private void addAnnotationValue(IRI subject, OWLAnnotationProperty property, OWLAnnotationValue value) {
+		// the OWL API keeps each annotation assertion once
+		if (!annotationIndex.getValues(subject, property).contains(value))
+			annotationIndex.addValue(subject, property, value);
+	}
+
+	@Override
+	public void endRDF() throws RDFHandlerException {
+		for (String candidate : classOrDatatypeCandidates) {
+			if (!isDatatype(candidate))
+				classes.add(intern(candidate));
+		}
+		for (String[] domainOrRange : domainsAndRanges) {
+			// annotation property domains and ranges are plain IRIs
+			if (annotationProperties.contains(domainOrRange[1]))
+				continue;
+			if (domainOrRange[0].equals(RDFS_DOMAIN) || !isDatatype(domainOrRange[2]))
+				classes.add(intern(domainOrRange[2]));
+		}
+		for (Resource node : booleanClassLists.keySet()) {
+			if (!datatypeNodes.contains(node) && !datatypes.contains(node.stringValue()))
+				addListMembersAsClasses(booleanClassLists.get(node));
+		}
+		for (Resource node : allDisjointClassesNodes)
+			addListMembersAsClasses(membersLists.get(node));
+		for (Value list : disjointUnionLists)
+			addListMembersAsClasses(list);
+
+		for (List<OWLClass> parents : superClasses.values()) {
+			if (parents.size() > 1) {
+				// sorted and without duplicates, like the OWL API axioms
+				Collections.sort(parents);
+				for (int i = parents.size() - 1; i > 0; i--) {
+					if (parents.get(i).equals(parents.get(i - 1)))
+						parents.remove(i);
+				}
+			}
+		}
+		// the list structures are only required to determine the classes
+		listFirst = null;
+		listRest = null;
+		membersLists = null;
+		booleanClassLists = null;
+		classOrDatatypeCandidates = null;
+		domainsAndRanges = null;
+	}
+
+	private void addListMembersAsClasses(Value list) {
+		Set<Value> visited = new HashSet<>();
+		while (list instanceof BNode && visited.add(list)) {
+			Value first = listFirst.get(list);
+			if (first instanceof org.eclipse.rdf4j.model.IRI && !isDatatype(first.stringValue()))
+				classes.add(intern(first.stringValue()));
+			list = listRest.get(list);
+		}
+	}
+
+	/**
+	 * @return The classes of the ontology in the natural order of the OWL API
+	 *         objects.
+	 */
+	public List<OWLClass> getClasses() {
+		List<OWLClass> owlClasses = new ArrayList<>(classes.size());
+		for (String iri : classes)
+			owlClasses.add(df.getOWLClass(IRI.create(iri)));
+		Collections.sort(owlClasses);
+		return owlClasses;
+	}
+
+	public int getNumImports() {
+		return numImports;
+	}
+
+	/**
+	 * @param properties
+	 *            The annotation properties that have been given to the
+	 *            constructor.
+	 * @param filterDeprecated
+	 *            Whether obsolete classes should be omitted.
+	 * @param ontologyName
+	 *            A name of the ontology for log messages.
+	 * @return A record extractor for the classes that have been read.
+	 */
+	public ClassRecordExtractor getRecordExtractor(AnnotationPropertySet properties, boolean filterDeprecated,
+			Object ontologyName) {
+		return new IndexedClassRecordExtractor(properties, filterDeprecated, ontologyName, annotationIndex,
+				superClasses);
+	}
+}
@@ -2,21 +2,118 @@ package de.julielab.bioportal.ontologies.apps;
 import static de.julielab.java.utilities.CLIInteractionUtilities.*;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import de.julielab.bioportal.ontologies.ExtractionEngine;
 import de.julielab.bioportal.ontologies.OntologyClassNameExtractor;
+import de.julielab.bioportal.ontologies.ReasonerStrategy;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+import de.julielab.bioportal.util.StringInterner;
 
 public class NameExtractorApplication {
 
 	private static final Logger log = LoggerFactory.getLogger(NameExtractorApplication.class);
 
+	/**
+	 * System property to set the number of threads used to extract the classes
+	 * of a single ontology. Defaults to 1.
+	 */
+	public static final String PROP_CLASS_THREADS = "bioportal.extraction.classthreads";
+	/**
+	 * System property to set the heap budget in megabytes for the ontologies
+	 * loaded at the same time. Defaults to three quarters of the maximum heap
+	 * size. A value of 0 disables the budget.
+	 */
+	public static final String PROP_HEAP_BUDGET = "bioportal.extraction.heapbudget";
+	/**
+	 * System property to set the maximum time in seconds for the
+	 * classification of a single ontology. Defaults to no limit.
+	 */
+	public static final String PROP_REASONING_TIMEOUT = "bioportal.extraction.reasoningtimeout";
+	/**
+	 * System property to set the number of classes between two checkpoints of
+	 * the extraction of a single ontology. A value of 0 switches checkpoints
+	 * off.
+	 */
+	public static final String PROP_CHECKPOINT_INTERVAL = "bioportal.extraction.checkpointinterval";
+	/**
+	 * System property to enable {@link ExtractionEngine ExtractionEngines}
+	 * besides the OWL API, separated by commas.
+	 */
+	public static final String PROP_ENGINE = "bioportal.extraction.engine";
+	/**
+	 * System property to decompress gzipped ontology files on a separate
+	 * thread while they are parsed. Defaults to false.
+	 */
+	public static final String PROP_READ_AHEAD = "bioportal.extraction.readahead";
+	/**
+	 * System property to additionally write the class records in a binary
+	 * format. Defaults to false.
+	 */
+	public static final String PROP_BINARY_OUTPUT = "bioportal.extraction.binary";
+	/**
+	 * System property to write the IRIs in the classes files as namespace
+	 * index and local name. Defaults to false.
+	 */
+	public static final String PROP_COMPACT_IRIS = "bioportal.extraction.compactiris";
+	/**
+	 * System property to write the ancestors, depth and number of children of
+	 * each class next to the classes files. Defaults to false.
+	 */
+	public static final String PROP_CLOSURES = "bioportal.extraction.closures";
+	/**
+	 * System property for the maximum number of strings in the pool of
+	 * interned IRIs and literals that is shared by all ontologies. Defaults to
+	 * 0 which switches interning off.
+	 */
+	public static final String PROP_INTERNER_SIZE = "bioportal.extraction.internersize";
+	/**
+	 * System property to drop the axioms that are not required for the
+	 * extraction while loading ontologies without reasoning. Defaults to
+	 * false.
+	 */
+	public static final String PROP_ANNOTATION_ONLY = "bioportal.extraction.annotationonly";
+	/**
+	 * System property for the {@link ReasonerStrategy} when reasoning is
+	 * applied. Defaults to AUTO.
+	 */
+	public static final String PROP_REASONER = "bioportal.extraction.reasoner";
+	/**
+	 * System property for the number of modules in which each ontology is
+	 * classified in parallel. Defaults to 1, i.e. no modular classification.
+	 */
+	public static final String PROP_REASONING_MODULES = "bioportal.extraction.reasoningmodules";
+	/**
+	 * System property for a directory in which imported ontologies are cached
+	 * across ontologies and runs. Not set by default.
+	 */
+	public static final String PROP_IMPORT_CACHE = "bioportal.extraction.importcache";
+	/**
+	 * System property for a directory in which inferred class hierarchies are
+	 * cached across runs. Not set by default.
+	 */
+	public static final String PROP_HIERARCHY_CACHE = "bioportal.extraction.hierarchycache";
+	/**
+	 * System property for the maximum size of the hierarchy cache in MB.
+	 * Defaults to 0 for no limit.
+	 */
+	public static final String PROP_HIERARCHY_CACHE_SIZE = "bioportal.extraction.hierarchycache.maxsize";
+	/**
+	 * System property for the number of days after which an unused cached
+	 * hierarchy is evicted. Defaults to 0 for no limit.
+	 */
+	public static final String PROP_HIERARCHY_CACHE_AGE = "bioportal.extraction.hierarchycache.maxage";
+
 	public static void main(String[] args)
 			throws IOException, InterruptedException, ExecutionException {
 		File ontologiesDir;
@@ -27,6 +124,41 @@ public class NameExtractorApplication {
 		if (args.length < 5) {
 			System.err
 					.println("Usage: " + NameExtractorApplication.class.getSimpleName() + " <ontologies dir> <ontologies info dir> <output dir> <apply reasoning: true/false> <filter deprecated: true/false> [<acronym1>,<acronym2>,...]");
+			System.err.println("Optional system properties:");
+			System.err.println("  -D" + PROP_CLASS_THREADS + "=<number of threads for the classes of a single ontology>");
+			System.err.println("  -D" + PROP_REASONER
+					+ "=<reasoner when reasoning: AUTO to use ELK for OWL 2 EL ontologies and HermiT otherwise, ELK, HERMIT or STRUCTURAL; ELK must be on the classpath>");
+			System.err.println("  -D" + PROP_REASONING_MODULES
+					+ "=<number of locality-based modules to classify each ontology in parallel in>");
+			System.err.println("  -D" + PROP_HEAP_BUDGET
+					+ "=<heap budget in MB for concurrently loaded ontologies, 0 to disable>");
+			System.err.println("  -D" + PROP_REASONING_TIMEOUT + "=<maximum reasoning time in seconds per ontology>");
+			System.err.println("  -D" + PROP_CHECKPOINT_INTERVAL
+					+ "=<number of classes between extraction checkpoints, 0 to disable>");
+			System.err.println("  -D" + PROP_ENGINE
+					+ "=<comma separated engines besides OWLAPI: RDF_STREAM to stream RDF files, OBO to read OBO files; only used without reasoning>");
+			System.err.println("  -D" + PROP_READ_AHEAD + "=<true to decompress gzipped ontologies ahead while parsing>");
+			System.err.println("  -D" + PROP_BINARY_OUTPUT
+					+ "=<true to write binary classes files next to the JSON classes files>");
+			System.err.println("  -D" + PROP_COMPACT_IRIS
+					+ "=<true to write IRIs as namespace index and local name with a namespace table per classes file>");
+			System.err.println("  -D" + PROP_CLOSURES
+					+ "=<true to write the ancestors, depth and child count of each class next to the classes files>");
+			System.err.println("  -D" + PROP_ANNOTATION_ONLY
+					+ "=<true to load only declarations, annotations and named subclass axioms when not reasoning>");
+			System.err.println("  -D" + PROP_IMPORT_CACHE
+					+ "=<directory to cache imported ontologies in across ontologies and runs>");
+			System.err.println("  -D" + PROP_HIERARCHY_CACHE
+					+ "=<directory to cache inferred class hierarchies in across runs>");
+			System.err.println("  -D" + PROP_HIERARCHY_CACHE_SIZE + "=<maximum hierarchy cache size in MB, 0 for no limit>");
+			System.err.println("  -D" + PROP_HIERARCHY_CACHE_AGE
+					+ "=<days after which unused cached hierarchies are evicted, 0 for no limit>");
+			System.err.println("  -D" + PROP_INTERNER_SIZE
+					+ "=<maximum number of interned IRI and literal strings shared by all ontologies, e.g. "
+					+ StringInterner.DEFAULT_MAX_SIZE + "; default: 0, no interning>");
+			System.err.println("  -D" + BioPortalToolUtils.PROP_GZIP_BLOCK_SIZE + "=<bytes per gzip block>");
+			System.err.println("  -D" + BioPortalToolUtils.PROP_GZIP_LEVEL + "=<gzip compression level>");
+			System.err.println("  -D" + BioPortalToolUtils.PROP_GZIP_THREADS + "=<number of gzip compression threads>");
 			ontologiesDir = new File(readLineFromStdInWithMessage("Please specify the ontologies directory:"));
 			ontologyInfosDir = new File(readLineFromStdInWithMessage("Please specify the ontology info directory:"));
 			outputDir = new File(readLineFromStdInWithMessage("Please specify the output directory:"));
@@ -44,8 +176,37 @@ public class NameExtractorApplication {
 				outputDir);
 		long time = System.currentTimeMillis();
 		OntologyClassNameExtractor nameExtractor = new OntologyClassNameExtractor(Executors.newCachedThreadPool(Executors.defaultThreadFactory()), applyReasoning, filterDeprecated);
+		nameExtractor.setReasonerStrategy(ReasonerStrategy.valueOf(System.getProperty(PROP_REASONER, "AUTO")));
+		nameExtractor.setModularReasoning(Integer.getInteger(PROP_REASONING_MODULES, 1));
+		nameExtractor.setClassExtractionThreads(Integer.getInteger(PROP_CLASS_THREADS, 1));
+		long defaultHeapBudgetMb = Runtime.getRuntime().maxMemory() / 4 * 3 / (1024 * 1024);
+		nameExtractor.setHeapBudget(Long.getLong(PROP_HEAP_BUDGET, defaultHeapBudgetMb) * 1024 * 1024);
+		nameExtractor.setReasoningTimeout(Long.getLong(PROP_REASONING_TIMEOUT, 0) * 1000);
+		nameExtractor.setCheckpointInterval(
+				Long.getLong(PROP_CHECKPOINT_INTERVAL, OntologyClassNameExtractor.DEFAULT_CHECKPOINT_INTERVAL));
+		nameExtractor.setExtractionEngines(Arrays.stream(System.getProperty(PROP_ENGINE, "").split(","))
+				.map(String::trim).filter(s -> !s.isEmpty()).map(ExtractionEngine::valueOf)
+				.toArray(ExtractionEngine[]::new));
+		nameExtractor.setReadAhead(Boolean.getBoolean(PROP_READ_AHEAD));
+		nameExtractor.setWriteBinaryOutput(Boolean.getBoolean(PROP_BINARY_OUTPUT));
+		nameExtractor.setCompactIris(Boolean.getBoolean(PROP_COMPACT_IRIS));
+		nameExtractor.setWriteClosures(Boolean.getBoolean(PROP_CLOSURES));
+		nameExtractor.setAnnotationOnlyLoading(Boolean.getBoolean(PROP_ANNOTATION_ONLY));
+		String importCacheDir = System.getProperty(PROP_IMPORT_CACHE);
+		if (importCacheDir != null)
+			nameExtractor.setImportCacheDirectory(new File(importCacheDir));
+		String hierarchyCacheDir = System.getProperty(PROP_HIERARCHY_CACHE);
+		if (hierarchyCacheDir != null)
+			nameExtractor.setHierarchyCache(new File(hierarchyCacheDir),
+					Long.getLong(PROP_HIERARCHY_CACHE_SIZE, 0) * 1024 * 1024,
+					TimeUnit.DAYS.toMillis(Long.getLong(PROP_HIERARCHY_CACHE_AGE, 0)));
+		int internerSize = Integer.getInteger(PROP_INTERNER_SIZE, 0);
+		nameExtractor.setStringInterner(
+				internerSize > 0 ? new StringInterner(internerSize, StringInterner.DEFAULT_MAX_LENGTH) : null);
 		int numOntologies = nameExtractor.run(ontologiesDir, ontologyInfosDir, outputDir, getSpecifiedOntologies(args));
 		nameExtractor.shutDown();
+		log.info("Writing extraction report to extractionreport.txt");
+		FileUtils.write(new File("extractionreport.txt"), nameExtractor.getExtractionStats().report(), "UTF-8", false);
 		time = System.currentTimeMillis() - time;
 		log.info("Extracting names from {} ontologies took {}ms ({}s)", numOntologies, time, time / 1000);
 		log.info("Process complete.");
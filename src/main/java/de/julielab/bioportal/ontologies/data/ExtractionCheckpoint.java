@@ -0,0 +1,45 @@
+package de.julielab.bioportal.ontologies.data;
+
+import java.util.List;
+
+/**
+ * The progress of an unfinished class name extraction of an ontology.
+ */
+public class ExtractionCheckpoint {
+	/**
+	 * The inputs of the extraction. A checkpoint is only valid for the same
+	 * inputs.
+	 */
+	public ExtractionManifestEntry inputs;
+	/**
+	 * Whether the parents of the written classes are inferred or asserted, see
+	 * {@link OntologyExtractionInfo#parents}. A checkpoint is only valid for
+	 * the same parents.
+	 */
+	public String parents;
+	/**
+	 * The number of classes, in extraction order, that have been processed.
+	 */
+	public long numClasses;
+	/**
+	 * The length of the partial output file at the checkpoint.
+	 */
+	public long offset;
+	/**
+	 * The length of the partial binary output file at the checkpoint or
+	 * <tt>null</tt> if no binary output is written.
+	 */
+	public Long binaryOffset;
+	/**
+	 * The IRI namespace table of the partial output file at the checkpoint or
+	 * <tt>null</tt> if IRIs are not compacted.
+	 */
+	public List<String> iriNamespaces;
+
+	@Override
+	public String toString() {
+		return "ExtractionCheckpoint [inputs=" + inputs + ", parents=" + parents + ", numClasses=" + numClasses + ", offset=" + offset
+				+ ", binaryOffset=" + binaryOffset + ", iriNamespaces=" + iriNamespaces + "]";
+	}
+
+}
@@ -0,0 +1,43 @@
+package de.julielab.bioportal.ontologies.data;
+
+/**
+ * The state of the inputs from which the class names of an ontology have been
+ * extracted. The sizes and modification times are stored so that the hashes
+ * only need to be recomputed for files that have been touched.
+ */
+public class ExtractionManifestEntry {
+	public String acronym;
+	public String input;
+	public long inputSize;
+	public long inputLastModified;
+	public String inputHash;
+	public long submissionSize;
+	public long submissionLastModified;
+	public String submissionHash;
+	/**
+	 * A signature of the extractor settings that influence the output.
+	 */
+	public String settings;
+
+	/**
+	 * @param other
+	 *            Another entry.
+	 * @return Whether both entries have the same input and submission hashes
+	 *         and the same settings.
+	 */
+	public boolean hasSameContent(ExtractionManifestEntry other) {
+		return other != null && equal(inputHash, other.inputHash) && equal(submissionHash, other.submissionHash)
+				&& equal(settings, other.settings);
+	}
+
+	private static boolean equal(String s1, String s2) {
+		return s1 == null ? s2 == null : s1.equals(s2);
+	}
+
+	@Override
+	public String toString() {
+		return "ExtractionManifestEntry [acronym=" + acronym + ", input=" + input + ", inputHash=" + inputHash
+				+ ", submissionHash=" + submissionHash + ", settings=" + settings + "]";
+	}
+
+}
@@ -0,0 +1,46 @@
+package de.julielab.bioportal.ontologies.data;
+
+import java.util.List;
+
+/**
+ * An imported ontology that is stored in the import cache of the class name
+ * extraction.
+ */
+public class ImportCacheEntry {
+	public String ontologyIRI;
+	/**
+	 * The version IRI of the ontology, may be <tt>null</tt>.
+	 */
+	public String versionIRI;
+	/**
+	 * Whether the ontology has been loaded with only the axioms that are
+	 * required without reasoning.
+	 */
+	public boolean annotationOnly;
+	/**
+	 * The IRIs by which the ontology has been imported and that are mapped to
+	 * the cached document.
+	 */
+	public List<String> importIRIs;
+	/**
+	 * The name of the cached document in the cache directory.
+	 */
+	public String document;
+	/**
+	 * The IRI of the document the ontology has been loaded from before it was
+	 * stored.
+	 */
+	public String sourceDocument;
+	/**
+	 * The modification time of the source document if it is a local file,
+	 * <tt>null</tt> otherwise.
+	 */
+	public Long sourceModificationTime;
+
+	@Override
+	public String toString() {
+		return "ImportCacheEntry [ontologyIRI=" + ontologyIRI + ", versionIRI=" + versionIRI + ", annotationOnly="
+				+ annotationOnly + ", importIRIs=" + importIRIs + ", document=" + document + ", sourceDocument="
+				+ sourceDocument + ", sourceModificationTime=" + sourceModificationTime + "]";
+	}
+}
@@ -0,0 +1,27 @@
+package de.julielab.bioportal.ontologies.data;
+
+import java.util.List;
+
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * The position of a class in the class hierarchy of its ontology, derived
+ * from the parents of all classes in the classes file.
+ */
+public class OntologyClassClosure {
+	@SerializedName("@id")
+	public String id;
+	/**
+	 * The number of parent edges on the longest path from the class to a class
+	 * without parents.
+	 */
+	public int depth;
+	/**
+	 * The number of classes that have this class as a parent.
+	 */
+	public int childCount;
+	/**
+	 * All transitive parents of the class, excluding the class itself.
+	 */
+	public List<String> ancestors;
+}
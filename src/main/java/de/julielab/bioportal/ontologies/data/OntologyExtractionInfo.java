@@ -0,0 +1,74 @@
+package de.julielab.bioportal.ontologies.data;
+
+/**
+ * Information about the class name extraction of a single ontology. It is
+ * written next to the classes file of the ontology.
+ */
+public class OntologyExtractionInfo {
+	public static final String PARENTS_INFERRED = "inferred";
+	public static final String PARENTS_ASSERTED = "asserted";
+
+	public String acronym;
+	/**
+	 * The name of the <tt>ExtractionEngine</tt> that read the ontology.
+	 */
+	public String engine;
+	/**
+	 * Whether the class parents have been determined by a reasoner
+	 * ({@link #PARENTS_INFERRED}) or are the asserted super classes
+	 * ({@link #PARENTS_ASSERTED}).
+	 */
+	public String parents;
+	/**
+	 * The name of the reasoner that classified the ontology, <tt>null</tt>
+	 * without reasoning.
+	 */
+	public String reasoner;
+	public boolean reasoningTimedOut;
+	/**
+	 * Whether the inferred class hierarchy has been read from the
+	 * <tt>InferredHierarchyCache</tt> instead of classifying the ontology.
+	 */
+	public boolean hierarchyCached;
+	public long loadingTime;
+	public long reasoningTime;
+	public long writingTime;
+	/**
+	 * The time in milliseconds to compute and write the class closures, 0 if
+	 * they are not written.
+	 */
+	public long closureTime;
+	/**
+	 * The number of modules the ontology has been classified in, 0 if it has
+	 * been classified as a whole.
+	 */
+	public int reasoningModules;
+	/**
+	 * The sum of the classification times of the modules in milliseconds.
+	 * Divided by the {@link #reasoningTime}, this is the parallelism of the
+	 * classification of the modules, not its speedup over the classification
+	 * as a whole.
+	 */
+	public long summedModuleReasoningTime;
+	/**
+	 * The number of axioms that have been dropped while loading the ontology
+	 * because they are not required without reasoning.
+	 */
+	public long droppedAxioms;
+	/**
+	 * The heap in bytes saved by dropping axioms, estimated from the number of
+	 * dropped axioms and the declarations added for their classes with a fixed
+	 * number of bytes per axiom. Not a measurement.
+	 */
+	public long estimatedHeapSaved;
+
+	@Override
+	public String toString() {
+		return "OntologyExtractionInfo [acronym=" + acronym + ", engine=" + engine + ", parents=" + parents + ", reasoner=" + reasoner + ", reasoningTimedOut="
+				+ reasoningTimedOut + ", hierarchyCached=" + hierarchyCached + ", loadingTime=" + loadingTime + ", reasoningTime=" + reasoningTime
+				+ ", writingTime=" + writingTime + ", reasoningModules=" + reasoningModules
+				+ ", summedModuleReasoningTime=" + summedModuleReasoningTime + ", droppedAxioms=" + droppedAxioms + ", estimatedHeapSaved="
+				+ estimatedHeapSaved + "]";
+	}
+
+}
@@ -0,0 +1,24 @@
+package de.julielab.bioportal.ontologies.data;
+
+import java.util.Map;
+
+/**
+ * The persisted form of an
+ * {@link de.julielab.bioportal.ontologies.OntologyIRICatalog}. All paths are
+ * relative to the catalogued directory and use <tt>/</tt> as separator.
+ */
+public class OntologyIRICatalogData {
+	/**
+	 * The modification times of all files in the directory when the catalog
+	 * was built, by path.
+	 */
+	public Map<String, Long> fileModificationTimes;
+	/**
+	 * The paths of the ontology files by ontology and version IRI.
+	 */
+	public Map<String, String> ontologyFiles;
+	/**
+	 * The paths of the OBO files by file name.
+	 */
+	public Map<String, String> oboFiles;
+}
@@ -1,32 +1,62 @@
 package de.julielab.bioportal.util;
 
-import java.io.BufferedReader;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.Deflater;
 
+import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 
+import de.julielab.java.utilities.FileUtilities;
+
 public class BioPortalToolUtils {
 
 	private static final Logger log = LoggerFactory.getLogger(BioPortalToolUtils.class);
 
+	/**
+	 * System property to set the number of uncompressed bytes per block of
+	 * the parallel gzip compression. Defaults to
+	 * {@link ParallelGZIPOutputStream#DEFAULT_BLOCK_SIZE}.
+	 */
+	public static final String PROP_GZIP_BLOCK_SIZE = "bioportal.gzip.blocksize";
+	/**
+	 * System property to set the gzip compression level from 1 to 9. Defaults
+	 * to the zlib default level.
+	 */
+	public static final String PROP_GZIP_LEVEL = "bioportal.gzip.level";
+	/**
+	 * System property to set the number of threads for gzip compression.
+	 * Defaults to the number of available processors.
+	 */
+	public static final String PROP_GZIP_THREADS = "bioportal.gzip.threads";
+
+	private static final int gzipBlockSize = Integer.getInteger(PROP_GZIP_BLOCK_SIZE,
+			ParallelGZIPOutputStream.DEFAULT_BLOCK_SIZE);
+	private static final int gzipLevel = Integer.getInteger(PROP_GZIP_LEVEL, Deflater.DEFAULT_COMPRESSION);
+	private static final int gzipThreads = Integer.getInteger(PROP_GZIP_THREADS,
+			Runtime.getRuntime().availableProcessors());
+	private static ExecutorService gzipExecutor;
+	private static final Semaphore gzipBlockPermits = new Semaphore(2 * gzipThreads);
+
 	public static String getAcronymFromFileName(String filename) {
 		if (filename.indexOf('.') != -1)
 			return filename.substring(0, filename.indexOf('.'));
@@ -46,6 +76,62 @@ public class BioPortalToolUtils {
 		return new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ssX").create();
 	}
 
+	/**
+	 * Wraps <tt>os</tt> into a {@link ParallelGZIPOutputStream} with the
+	 * parameters of the system properties {@link #PROP_GZIP_BLOCK_SIZE},
+	 * {@link #PROP_GZIP_LEVEL} and {@link #PROP_GZIP_THREADS}. All streams share
+	 * the compression threads and at most twice as many blocks as there are
+	 * threads are compressed at the same time, over all streams.
+	 * 
+	 * @param os
+	 *            The stream to write the compressed data to.
+	 * @return The compressing stream.
+	 */
+	public static synchronized ParallelGZIPOutputStream getGzipOutputStream(OutputStream os) {
+		if (gzipExecutor == null) {
+			gzipExecutor = Executors.newFixedThreadPool(gzipThreads, r -> {
+				Thread t = new Thread(r, "gzip-compression");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+		return new ParallelGZIPOutputStream(os, gzipBlockSize, gzipLevel, gzipExecutor, 2 * gzipThreads,
+				gzipBlockPermits);
+	}
+
+	/**
+	 * Opens an output stream to <tt>file</tt> that compresses the data with
+	 * parallel gzip if the file name ends with <tt>.gz</tt> or <tt>.gzip</tt>.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @return A buffered stream to the file.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 */
+	public static OutputStream getOutputStreamToFile(File file) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		String lcfn = file.getName().toLowerCase();
+		if (lcfn.endsWith(".gz") || lcfn.endsWith(".gzip"))
+			// the stream writes whole blocks and needs no additional buffer
+			return getGzipOutputStream(os);
+		return new BufferedOutputStream(os);
+	}
+
+	/**
+	 * Opens a UTF-8 writer to <tt>file</tt>, compressed like
+	 * {@link #getOutputStreamToFile(File)}.
+	 * 
+	 * @param file
+	 *            The file to write.
+	 * @return A buffered writer to the file.
+	 * @throws IOException
+	 *             If the file cannot be opened.
+	 */
+	public static BufferedWriter getWriterToFile(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(getOutputStreamToFile(file), StandardCharsets.UTF_8));
+	}
+
 	public static boolean isSupportedOntologyFile(File file) {
 		String lcfn = file.getName().toLowerCase();
 		return lcfn.contains(".obo") || lcfn.contains(".owl") || lcfn.contains(".umls");
@@ -56,55 +142,87 @@ public class BioPortalToolUtils {
 		return lcfn.contains(".umls");
 	}
 
+	/**
+	 * Writes a copy of a UMLS file without the lines that are removed by the
+	 * {@link UmlsLineFilterInputStream}. Not required for class name
+	 * extraction, where UMLS files are filtered while they are parsed.
+	 * 
+	 * @param original
+	 *            The UMLS file to repair.
+	 * @param target
+	 *            The file to write the repaired copy to.
+	 * @return The number of removed lines.
+	 * @throws BioPortalOntologyToolsException
+	 *             If reading or writing fails.
+	 */
 	public static AtomicInteger fixUmlsFile(File original, File target) throws BioPortalOntologyToolsException {
-		AtomicInteger removedLines = new AtomicInteger(0);
-		InputStream is = null;
-		try {
-			is = Files.newInputStream(original.toPath());
-			OutputStream os = Files.newOutputStream(target.toPath());
-			boolean gzip = original.getName().toLowerCase().contains(".gz")
-					|| original.getName().toLowerCase().contains(".gzip");
-			if (gzip) {
-				is = new GZIPInputStream(is);
-				os = new GZIPOutputStream(os);
-			}
-
-			// match lines that contain """ and also ''' because then ''' is
-			// most likely not meant as a string quotation delimiter but as a
-			// string value that causes the parser to mistakenly end the string
-			// which in turn produces a parser error
-			Matcher m = Pattern.compile("\"\"\".*'''").matcher("");
-			try (Stream<String> lines = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8"))).lines();
-					BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(os, Charset.forName("UTF-8")))) {
-				Stream<String> filteredLines = lines.filter(l -> {
-					m.reset(l);
-					if (m.find()) {
-						removedLines.incrementAndGet();
-						return false;
-					}
-					return true;
-				});
-				filteredLines.forEach(l -> {
-					try {
-						bw.write(l + "\n");
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-				});
-			}
+		try (UmlsLineFilterInputStream is = new UmlsLineFilterInputStream(
+				FileUtilities.getInputStreamFromFile(original));
+				OutputStream os = getOutputStreamToFile(target)) {
+			IOUtils.copy(is, os);
+			return new AtomicInteger(is.getRemovedLines());
 		} catch (IOException e) {
 			throw new BioPortalOntologyToolsException(e);
-		} finally {
-			try {
-				if (is != null) {
-					is.close();
-				}
-			} catch (IOException e) {
-				throw new BioPortalOntologyToolsException(e);
-			}
 		}
+	}
+
+	/**
+	 * Computes the SHA-256 hash of the contents of a file or, for a directory,
+	 * of the names and contents of all files in the directory and its
+	 * subdirectories in lexicographical order.
+	 * 
+	 * @param fileOrDirectory
+	 *            The file or directory to hash.
+	 * @return The hash as a lower case hexadecimal string.
+	 * @throws IOException
+	 *             If reading the file fails.
+	 */
+	public static String sha256(File fileOrDirectory) throws IOException {
+		MessageDigest digest = getSha256Digest();
+		updateDigest(digest, fileOrDirectory, "");
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @param s
+	 *            A string.
+	 * @return The hex encoded SHA-256 hash of the UTF-8 bytes of <tt>s</tt>.
+	 */
+	public static String sha256(String s) {
+		return toHex(getSha256Digest().digest(s.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static MessageDigest getSha256Digest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes)
+			sb.append(String.format("%02x", b));
+		return sb.toString();
+	}
 
-		return removedLines;
+	private static void updateDigest(MessageDigest digest, File file, String relativePath) throws IOException {
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			Arrays.sort(files);
+			for (File child : files)
+				updateDigest(digest, child, relativePath + "/" + child.getName());
+		} else {
+			digest.update(relativePath.getBytes(StandardCharsets.UTF_8));
+			byte[] buffer = new byte[1 << 16];
+			try (InputStream is = Files.newInputStream(file.toPath())) {
+				int read;
+				while ((read = is.read(buffer)) != -1)
+					digest.update(buffer, 0, read);
+			}
+		}
 	}
 
 }
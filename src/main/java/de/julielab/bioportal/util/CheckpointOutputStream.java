@@ -0,0 +1,140 @@
+package de.julielab.bioportal.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * An output stream to a file that can be resumed at positions returned by
+ * {@link #checkpoint()}. A checkpoint flushes all data to disk and returns the
+ * file length. A new stream created with this offset truncates the file to the
+ * checkpoint and appends to it.
+ * </p>
+ * <p>
+ * If the data is gzip compressed, it is written by a
+ * {@link ParallelGZIPOutputStream} as a sequence of gzip members. Each
+ * checkpoint finishes the current member so that the file up to the checkpoint
+ * is a complete gzip file. The next write starts a new member. Concatenated
+ * gzip members are read as a single stream by
+ * {@link java.util.zip.GZIPInputStream}.
+ * </p>
+ */
+public class CheckpointOutputStream extends OutputStream {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private FileChannel channel;
+	private OutputStream fileOut;
+	private boolean gzip;
+	private ParallelGZIPOutputStream member;
+
+	/**
+	 * @param file
+	 *            The file to write to.
+	 * @param offset
+	 *            The checkpoint to resume from, i.e. the length to which the
+	 *            file is truncated before writing. 0 starts a new file.
+	 * @param gzip
+	 *            Whether to compress the written data.
+	 * @throws IOException
+	 *             If opening the file fails or it is shorter than
+	 *             <tt>offset</tt>.
+	 */
+	@SuppressWarnings("resource")
+	public CheckpointOutputStream(File file, long offset, boolean gzip) throws IOException {
+		if (offset == 0) {
+			channel = new FileOutputStream(file).getChannel();
+		} else {
+			channel = new RandomAccessFile(file, "rw").getChannel();
+			if (channel.size() < offset) {
+				channel.close();
+				throw new IOException("Cannot resume " + file + " at offset " + offset + " because it only has "
+						+ channel.size() + " bytes.");
+			}
+			channel.truncate(offset);
+			channel.position(offset);
+		}
+		this.fileOut = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+		this.gzip = gzip;
+	}
+
+	private OutputStream out() throws IOException {
+		if (!gzip)
+			return fileOut;
+		if (member == null)
+			member = BioPortalToolUtils.getGzipOutputStream(new NonClosingOutputStream(fileOut));
+		return member;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out().write(b);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out().write(b, off, len);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		if (member != null)
+			member.flush();
+		fileOut.flush();
+	}
+
+	/**
+	 * Finishes the current gzip member, if any, and forces all data written so
+	 * far to disk.
+	 * 
+	 * @return The file length, which is the offset to resume from.
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	public long checkpoint() throws IOException {
+		if (member != null) {
+			member.finish();
+			member = null;
+		}
+		fileOut.flush();
+		channel.force(false);
+		return channel.position();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			if (member != null)
+				member.finish();
+			fileOut.flush();
+		} finally {
+			fileOut.close();
+		}
+	}
+
+	/**
+	 * Lets a gzip member be finished without closing the file.
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream {
+		public NonClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.flush();
+		}
+	}
+}
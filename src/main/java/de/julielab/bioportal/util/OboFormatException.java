@@ -0,0 +1,31 @@
+package de.julielab.bioportal.util;
+
+public class OboFormatException extends BioPortalOntologyToolsException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 2608431530916271844L;
+
+	public OboFormatException() {
+		super();
+	}
+
+	public OboFormatException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+	public OboFormatException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public OboFormatException(String message) {
+		super(message);
+	}
+
+	public OboFormatException(Throwable cause) {
+		super(cause);
+	}
+
+}
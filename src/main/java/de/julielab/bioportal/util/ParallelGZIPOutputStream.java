@@ -0,0 +1,247 @@
+package de.julielab.bioportal.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * A gzip output stream that compresses blocks of the data in parallel, like
+ * <tt>pigz</tt>. The data is split into blocks of a fixed size and each block
+ * is compressed into a complete gzip member on an executor. The members are
+ * written in order. The result is a standard multi-member gzip file that is
+ * read as a single stream by {@link java.util.zip.GZIPInputStream} and thus by
+ * <tt>FileUtilities.getInputStreamFromFile()</tt>.
+ * </p>
+ * <p>
+ * The number of blocks that are compressed at the same time is limited by a
+ * semaphore that may be shared by several streams, e.g. all streams on the
+ * same executor. A permit is taken when a block is submitted and returned when
+ * its compression is done, so the uncompressed data in flight is bounded
+ * across all streams. In addition, each stream writes its oldest block when
+ * too many compressed blocks wait to be written. The block buffer is only
+ * allocated when data is written. Since each block is compressed
+ * independently, the compression ratio is slightly lower than for a single
+ * member, depending on the block size.
+ * </p>
+ */
+public class ParallelGZIPOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private OutputStream out;
+	private int blockSize;
+	private int level;
+	private ExecutorService executor;
+	private int maxPendingBlocks;
+	private Semaphore blockPermits;
+
+	private byte[] block;
+	private int blockLength;
+	private Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+	private boolean memberWritten;
+	private boolean closed;
+
+	/**
+	 * @param out
+	 *            The stream to write the compressed data to.
+	 * @param blockSize
+	 *            The number of uncompressed bytes per gzip member.
+	 * @param level
+	 *            The compression level, see {@link Deflater}.
+	 * @param executor
+	 *            The executor to compress the blocks on.
+	 * @param maxPendingBlocks
+	 *            The maximum number of blocks of this stream that are
+	 *            compressed or wait to be written at the same time.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, int blockSize, int level, ExecutorService executor,
+			int maxPendingBlocks) {
+		this(out, blockSize, level, executor, maxPendingBlocks, new Semaphore(Math.max(1, maxPendingBlocks)));
+	}
+
+	/**
+	 * @param out
+	 *            The stream to write the compressed data to.
+	 * @param blockSize
+	 *            The number of uncompressed bytes per gzip member.
+	 * @param level
+	 *            The compression level, see {@link Deflater}.
+	 * @param executor
+	 *            The executor to compress the blocks on.
+	 * @param maxPendingBlocks
+	 *            The maximum number of blocks of this stream that are
+	 *            compressed or wait to be written at the same time.
+	 * @param blockPermits
+	 *            The permits for blocks being compressed, possibly shared with
+	 *            other streams.
+	 */
+	public ParallelGZIPOutputStream(OutputStream out, int blockSize, int level, ExecutorService executor,
+			int maxPendingBlocks, Semaphore blockPermits) {
+		if (blockSize <= 0)
+			throw new IllegalArgumentException("The block size must be positive but was " + blockSize);
+		this.out = out;
+		this.blockSize = blockSize;
+		this.level = level;
+		this.executor = executor;
+		this.maxPendingBlocks = Math.max(1, maxPendingBlocks);
+		this.blockPermits = blockPermits;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (block == null)
+			block = new byte[blockSize];
+		block[blockLength++] = (byte) b;
+		if (blockLength == blockSize)
+			submitBlock();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (block == null)
+				block = new byte[blockSize];
+			int n = Math.min(len, blockSize - blockLength);
+			System.arraycopy(b, off, block, blockLength, n);
+			blockLength += n;
+			off += n;
+			len -= n;
+			if (blockLength == blockSize)
+				submitBlock();
+		}
+	}
+
+	/**
+	 * Writes the blocks that have been compressed so far and flushes the
+	 * underlying stream. Like for {@link java.util.zip.GZIPOutputStream}, the
+	 * data of the current, incomplete block is not flushed.
+	 */
+	@Override
+	public void flush() throws IOException {
+		while (!pendingBlocks.isEmpty() && pendingBlocks.peek().isDone())
+			writeOldestBlock();
+		out.flush();
+	}
+
+	/**
+	 * Compresses and writes all remaining data without closing the underlying
+	 * stream. Writing more data afterwards starts a new gzip member.
+	 *
+	 * @throws IOException
+	 *             If writing fails.
+	 */
+	public void finish() throws IOException {
+		submitBlock();
+		while (!pendingBlocks.isEmpty())
+			writeOldestBlock();
+		// an empty gzip file still consists of one member
+		if (!memberWritten) {
+			out.write(compress(new byte[0], 0, level));
+			memberWritten = true;
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			finish();
+		} finally {
+			// blocks that are still being compressed return their permits when
+			// they are done
+			pendingBlocks.clear();
+			out.close();
+		}
+	}
+
+	private void submitBlock() throws IOException {
+		if (blockLength == 0)
+			return;
+		byte[] data = block;
+		int length = blockLength;
+		int compressionLevel = level;
+		try {
+			blockPermits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to compress a block");
+		}
+		try {
+			pendingBlocks.add(executor.submit(() -> {
+				try {
+					return compress(data, length, compressionLevel);
+				} finally {
+					blockPermits.release();
+				}
+			}));
+		} catch (RejectedExecutionException e) {
+			blockPermits.release();
+			throw new IOException("The compression of a block could not be started", e);
+		}
+		block = null;
+		blockLength = 0;
+		while (pendingBlocks.size() > maxPendingBlocks)
+			writeOldestBlock();
+	}
+
+	private void writeOldestBlock() throws IOException {
+		Future<byte[]> oldestBlock = pendingBlocks.poll();
+		try {
+			out.write(oldestBlock.get());
+			memberWritten = true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the compression of a block");
+		} catch (ExecutionException e) {
+			throw new IOException("The compression of a block failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Compresses the data into a complete gzip member.
+	 */
+	private static byte[] compress(byte[] data, int length, int level) {
+		Deflater deflater = new Deflater(level, true);
+		try {
+			ByteArrayOutputStream member = new ByteArrayOutputStream(length / 3 + 64);
+			member.write(HEADER, 0, HEADER.length);
+			deflater.setInput(data, 0, length);
+			deflater.finish();
+			byte[] buffer = new byte[Math.max(512, Math.min(length, 1 << 16))];
+			while (!deflater.finished()) {
+				int n = deflater.deflate(buffer);
+				member.write(buffer, 0, n);
+			}
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, length);
+			writeIntLE(member, (int) crc.getValue());
+			writeIntLE(member, length);
+			return member.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static void writeIntLE(ByteArrayOutputStream os, int value) {
+		os.write(value & 0xff);
+		os.write((value >>> 8) & 0xff);
+		os.write((value >>> 16) & 0xff);
+		os.write((value >>> 24) & 0xff);
+	}
+}
@@ -0,0 +1,170 @@
+package de.julielab.bioportal.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>
+ * Reads a source stream ahead on a dedicated thread. The thread fills a fixed
+ * number of buffers from the source and hands them over to the consumer which
+ * returns them when they have been read. Thus, expensive reading like gzip
+ * decompression overlaps with the processing of the data, e.g. parsing, on the
+ * consuming thread. The memory use is bounded by the number and size of the
+ * buffers.
+ * </p>
+ * <p>
+ * The source stream is read and closed by the read-ahead thread only. Errors
+ * of the source are thrown by the <tt>read</tt> call that reaches them.
+ * </p>
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+	public static final int DEFAULT_NUM_BUFFERS = 4;
+
+	private static final Chunk END = new Chunk(null, 0, null);
+
+	private InputStream source;
+	private BlockingQueue<byte[]> freeBuffers;
+	// one more slot than buffers so that the end or an error can always be
+	// added without blocking
+	private BlockingQueue<Chunk> filledChunks;
+	private Thread readAheadThread;
+	private volatile boolean closed;
+
+	private Chunk current;
+	private int pos;
+
+	public ReadAheadInputStream(InputStream source, String name) {
+		this(source, name, DEFAULT_BUFFER_SIZE, DEFAULT_NUM_BUFFERS);
+	}
+
+	/**
+	 * @param source
+	 *            The stream to read ahead.
+	 * @param name
+	 *            A name for the read-ahead thread.
+	 * @param bufferSize
+	 *            The size of each buffer.
+	 * @param numBuffers
+	 *            The number of buffers.
+	 */
+	public ReadAheadInputStream(InputStream source, String name, int bufferSize, int numBuffers) {
+		if (numBuffers < 2)
+			throw new IllegalArgumentException("At least two buffers are required but " + numBuffers + " were given");
+		this.source = source;
+		this.freeBuffers = new ArrayBlockingQueue<>(numBuffers);
+		this.filledChunks = new ArrayBlockingQueue<>(numBuffers + 1);
+		for (int i = 0; i < numBuffers; i++)
+			freeBuffers.add(new byte[bufferSize]);
+		readAheadThread = new Thread(this::readAhead, "read-ahead-" + name);
+		readAheadThread.setDaemon(true);
+		readAheadThread.start();
+	}
+
+	private void readAhead() {
+		try (InputStream is = source) {
+			while (!closed) {
+				byte[] buffer = freeBuffers.take();
+				int length = 0;
+				int n = 0;
+				try {
+					while (length < buffer.length && (n = is.read(buffer, length, buffer.length - length)) != -1)
+						length += n;
+				} finally {
+					// the data before an error of the source is read, too
+					if (length > 0)
+						filledChunks.add(new Chunk(buffer, length, null));
+				}
+				if (n == -1) {
+					filledChunks.add(END);
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			// closed by the consumer
+		} catch (IOException | RuntimeException e) {
+			filledChunks.add(new Chunk(null, 0, e));
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!ensureData())
+			return -1;
+		return current.data[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!ensureData())
+			return -1;
+		int n = Math.min(len, current.length - pos);
+		System.arraycopy(current.data, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return current != null && current.data != null ? current.length - pos : 0;
+	}
+
+	/**
+	 * Makes sure that the current chunk has unread data.
+	 *
+	 * @return <tt>false</tt> if the end of the source has been reached.
+	 */
+	private boolean ensureData() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+		if (current != null && pos < current.length)
+			return true;
+		if (current == END)
+			return false;
+		if (current != null)
+			freeBuffers.add(current.data);
+		try {
+			current = filledChunks.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for data to be read ahead");
+		}
+		pos = 0;
+		if (current.error != null) {
+			Exception error = current.error;
+			current = END;
+			if (error instanceof IOException)
+				throw new IOException(error.getMessage(), error);
+			throw (RuntimeException) error;
+		}
+		return current != END;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		readAheadThread.interrupt();
+		current = null;
+		filledChunks.clear();
+	}
+
+	private static class Chunk {
+		private byte[] data;
+		private int length;
+		private Exception error;
+
+		private Chunk(byte[] data, int length, Exception error) {
+			this.data = data;
+			this.length = length;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package de.julielab.bioportal.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>
+ * A bounded pool of canonical string instances that can be shared by
+ * concurrent threads. Equal strings that are interned get the same instance so
+ * that strings that occur very often, like the IRIs of upper level classes
+ * that are the parents of many classes and are imported by many ontologies,
+ * are kept in memory only once.
+ * </p>
+ * <p>
+ * In contrast to {@link String#intern()}, the pool is bounded: when it exceeds
+ * its maximum size, it is cleared and filled anew. Thus, frequent strings
+ * quickly return to the pool while strings of ontologies that have been
+ * finished do not stay in memory. Strings longer than a maximum length are not
+ * interned at all because long strings, e.g. definitions, rarely repeat.
+ * </p>
+ */
+public class StringInterner {
+
+	public static final int DEFAULT_MAX_SIZE = 1 << 16;
+	public static final int DEFAULT_MAX_LENGTH = 256;
+
+	private int maxSize;
+	private int maxLength;
+	private ConcurrentHashMap<String, String> pool;
+	private LongAdder hits = new LongAdder();
+	private LongAdder misses = new LongAdder();
+	private AtomicInteger resets = new AtomicInteger();
+
+	public StringInterner() {
+		this(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * @param maxSize
+	 *            The maximum number of strings in the pool.
+	 * @param maxLength
+	 *            The maximum length of interned strings.
+	 */
+	public StringInterner(int maxSize, int maxLength) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("The maximum pool size must be positive but was " + maxSize);
+		this.maxSize = maxSize;
+		this.maxLength = maxLength;
+		this.pool = new ConcurrentHashMap<>(Math.min(maxSize, 1 << 16));
+	}
+
+	/**
+	 * @param s
+	 *            A string, may be <tt>null</tt>.
+	 * @return The pooled instance equal to <tt>s</tt> or <tt>s</tt> itself if
+	 *         it is <tt>null</tt>, too long or has not been interned before.
+	 */
+	public String intern(String s) {
+		if (s == null || s.length() > maxLength)
+			return s;
+		String pooled = pool.putIfAbsent(s, s);
+		if (pooled != null) {
+			hits.increment();
+			return pooled;
+		}
+		misses.increment();
+		if (pool.size() > maxSize) {
+			pool.clear();
+			resets.incrementAndGet();
+		}
+		return s;
+	}
+
+	/**
+	 * @return The number of {@link #intern(String)} calls that returned a
+	 *         pooled instance.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of {@link #intern(String)} calls that added a string
+	 *         to the pool.
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return The share of hits among the interned strings.
+	 */
+	public double getHitRate() {
+		long hits = getHits();
+		long lookups = hits + getMisses();
+		return lookups == 0 ? 0 : hits / (double) lookups;
+	}
+
+	/**
+	 * @return How often the pool has been cleared because it exceeded its
+	 *         maximum size.
+	 */
+	public int getResets() {
+		return resets.get();
+	}
+
+	/**
+	 * @return The current number of strings in the pool.
+	 */
+	public int size() {
+		return pool.size();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d lookups, hit rate %.1f%%, %d pooled strings, %d resets", getHits() + getMisses(),
+				getHitRate() * 100, size(), getResets());
+	}
+}
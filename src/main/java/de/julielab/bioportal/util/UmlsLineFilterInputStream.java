@@ -0,0 +1,173 @@
+package de.julielab.bioportal.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Removes the lines of a UMLS Turtle file that contain <tt>"""</tt> followed
+ * by <tt>'''</tt> while the file is read. In such lines, <tt>'''</tt> is most
+ * likely not meant as a string quotation delimiter but is part of a string
+ * value, e.g. a chemical name, that causes the Turtle parser of the OWL API
+ * 5.x to end the string too early and fail.
+ * </p>
+ * <p>
+ * The lines are examined as bytes without decoding them. This is safe for
+ * UTF-8 because the bytes of the quotation marks and of the line feed never
+ * occur within a multi-byte character. All other lines are passed through
+ * unchanged, including their line terminators.
+ * </p>
+ */
+public class UmlsLineFilterInputStream extends FilterInputStream {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferPos;
+	private int bufferLimit;
+	private byte[] line = new byte[1024];
+	private int lineLength;
+	private int linePos;
+	private boolean eof;
+	private int removedLines;
+
+	public UmlsLineFilterInputStream(InputStream in) {
+		super(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (linePos == lineLength && !nextLine())
+			return -1;
+		return line[linePos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (linePos == lineLength && !nextLine())
+			return -1;
+		int read = 0;
+		while (read < len) {
+			int n = Math.min(len - read, lineLength - linePos);
+			System.arraycopy(line, linePos, b, off + read, n);
+			linePos += n;
+			read += n;
+			// only continue with lines that are already buffered
+			if (linePos == lineLength && (bufferPos == bufferLimit || !nextLine()))
+				break;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			if (linePos == lineLength && !nextLine())
+				break;
+			int s = (int) Math.min(n - skipped, lineLength - linePos);
+			linePos += s;
+			skipped += s;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return lineLength - linePos;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+
+	/**
+	 * @return The number of lines that have been removed so far.
+	 */
+	public int getRemovedLines() {
+		return removedLines;
+	}
+
+	/**
+	 * Reads the next line that should not be removed into {@link #line}.
+	 *
+	 * @return <tt>false</tt> if the end of the stream has been reached.
+	 */
+	private boolean nextLine() throws IOException {
+		while (readLine()) {
+			if (!isBroken()) {
+				linePos = 0;
+				return true;
+			}
+			++removedLines;
+		}
+		linePos = lineLength = 0;
+		return false;
+	}
+
+	private boolean readLine() throws IOException {
+		lineLength = 0;
+		while (true) {
+			if (bufferPos == bufferLimit) {
+				if (eof)
+					return lineLength > 0;
+				bufferLimit = in.read(buffer);
+				bufferPos = 0;
+				if (bufferLimit <= 0) {
+					bufferLimit = 0;
+					eof = true;
+					return lineLength > 0;
+				}
+			}
+			int end = bufferPos;
+			while (end < bufferLimit && buffer[end] != '\n')
+				++end;
+			boolean lineEnd = end < bufferLimit;
+			if (lineEnd)
+				// include the line feed
+				++end;
+			append(buffer, bufferPos, end - bufferPos);
+			bufferPos = end;
+			if (lineEnd)
+				return true;
+		}
+	}
+
+	private void append(byte[] bytes, int offset, int length) {
+		if (lineLength + length > line.length)
+			line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+		System.arraycopy(bytes, offset, line, lineLength, length);
+		lineLength += length;
+	}
+
+	/**
+	 * @return Whether the current line contains <tt>'''</tt> after
+	 *         <tt>"""</tt>.
+	 */
+	private boolean isBroken() {
+		int tripleDoubleQuote = indexOfTriple((byte) '"', 0);
+		return tripleDoubleQuote >= 0 && indexOfTriple((byte) '\'', tripleDoubleQuote + 3) >= 0;
+	}
+
+	private int indexOfTriple(byte b, int from) {
+		for (int i = from; i + 2 < lineLength; i++) {
+			if (line[i] == b && line[i + 1] == b && line[i + 2] == b)
+				return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,64 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLAnnotationValue;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.search.EntitySearcher;
+
+public class ClassAnnotationIndexTest {
+	@Test
+	public void valuesAreInEntitySearcherOrder() throws OWLOntologyCreationException, IOException {
+		OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+		OWLDataFactory df = manager.getOWLDataFactory();
+		AnnotationPropertySet properties = new AnnotationPropertySet(manager, new File(""));
+		OWLAnnotationProperty synonym = df
+				.getOWLAnnotationProperty(IRI.create("http://www.geneontology.org/formats/oboInOwl#hasExactSynonym"));
+		OWLAnnotationProperty definition = df
+				.getOWLAnnotationProperty(IRI.create("http://purl.obolibrary.org/obo/IAO_0000115"));
+		OWLOntology o = manager.createOntology(IRI.create("http://test.org/onto"));
+		// several classes with several labels and synonyms so that an order
+		// that differs from EntitySearcher cannot match by chance
+		for (int i = 0; i < 20; i++) {
+			OWLClass c = df.getOWLClass(IRI.create("http://test.org/onto#C" + i));
+			manager.addAxiom(o, df.getOWLDeclarationAxiom(c));
+			for (String value : new String[] { "zeta", "alpha", "Mu", "beta" + i, "gamma" }) {
+				manager.addAxiom(o, df.getOWLAnnotationAssertionAxiom(df.getRDFSLabel(), c.getIRI(),
+						df.getOWLLiteral(value + " label")));
+				manager.addAxiom(o, df.getOWLAnnotationAssertionAxiom(synonym, c.getIRI(),
+						df.getOWLLiteral(value + " synonym", "en")));
+			}
+			// annotations of an axiom are returned by EntitySearcher as well
+			manager.addAxiom(o,
+					df.getOWLAnnotationAssertionAxiom(df.getRDFSLabel(), c.getIRI(), df.getOWLLiteral("annotated"),
+							Collections.singleton(df.getOWLAnnotation(definition, df.getOWLLiteral("axiom definition")))));
+		}
+
+		ClassAnnotationIndex index = new ClassAnnotationIndex(o, properties);
+		for (OWLClass c : o.classesInSignature().collect(Collectors.toList())) {
+			for (OWLAnnotationProperty property : properties.getAllProperties()) {
+				List<OWLAnnotationValue> expected = EntitySearcher.getAnnotations(c, o, property)
+						.map(OWLAnnotation::getValue).collect(Collectors.toList());
+				assertEquals(expected, index.getValues(c.getIRI(), property));
+			}
+			assertEquals(6, index.getValues(c.getIRI(), df.getRDFSLabel()).size());
+			assertEquals(5, index.getValues(c.getIRI(), synonym).size());
+			assertEquals(1, index.getValues(c.getIRI(), definition).size());
+		}
+	}
+}
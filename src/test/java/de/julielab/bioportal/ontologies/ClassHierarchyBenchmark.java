@@ -0,0 +1,92 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+/**
+ * Measures the time of determining the inferred parents of all classes of an
+ * ontology, once by querying the reasoner for the direct super classes of
+ * each class and once by walking the class hierarchy with an
+ * {@link InferredClassHierarchy}. The ontology is classified once in advance;
+ * both modes are run alternately on the same reasoner and their results are
+ * compared. Meant to be run on a mid-size ontology, e.g. of a few ten
+ * thousand classes.
+ *
+ * Usage: ClassHierarchyBenchmark &lt;number of runs&gt; &lt;ontology
+ * file&gt; [&lt;reasoner strategy&gt;]
+ */
+public class ClassHierarchyBenchmark {
+
+	public static void main(String[] args) throws OWLOntologyCreationException {
+		if (args.length < 2) {
+			System.err.println("Usage: " + ClassHierarchyBenchmark.class.getSimpleName()
+					+ " <number of runs> <ontology file> [<reasoner strategy, default: HERMIT>]");
+			System.exit(1);
+		}
+		int runs = Integer.parseInt(args[0]);
+		File file = new File(args[1]);
+		ReasonerStrategy strategy = args.length > 2 ? ReasonerStrategy.valueOf(args[2]) : ReasonerStrategy.HERMIT;
+
+		OntologyLoader ontologyLoader = new OntologyLoader();
+		OWLOntology o = ontologyLoader.loadOntology(file);
+		List<OWLClass> classes = o.classesInSignature(Imports.INCLUDED).collect(Collectors.toList());
+		long time = System.currentTimeMillis();
+		OWLReasoner reasoner = new ReasonerSelector(strategy).select(o).createReasoner(o);
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		System.out.println(String.format("Classified %d classes of %s with %s in %dms", classes.size(),
+				file.getName(), reasoner.getReasonerName(), System.currentTimeMillis() - time));
+
+		// warm up and compare
+		Set<String> queried = queryParents(reasoner, classes);
+		Set<String> walked = walkParents(reasoner, classes);
+		if (!queried.equals(walked))
+			System.out.println("WARNING: the parents differ, " + queried.size() + " queried vs. " + walked.size()
+					+ " walked class-parent pairs");
+		long queryTime = 0;
+		long walkTime = 0;
+		for (int run = 0; run < runs; run++) {
+			time = System.currentTimeMillis();
+			queryParents(reasoner, classes);
+			queryTime += System.currentTimeMillis() - time;
+			time = System.currentTimeMillis();
+			walkParents(reasoner, classes);
+			walkTime += System.currentTimeMillis() - time;
+		}
+		System.out.println(String.format("%s (%d class-parent pairs): per-class queries %dms, hierarchy walk %dms (mean of %d runs)",
+				file.getName(), queried.size(), queryTime / runs, walkTime / runs, runs));
+		reasoner.dispose();
+	}
+
+	private static Set<String> queryParents(OWLReasoner reasoner, List<OWLClass> classes) {
+		Set<String> pairs = new HashSet<>();
+		for (OWLClass c : classes)
+			reasoner.getSuperClasses(c, true).entities()
+					.forEach(parent -> pairs.add(c.getIRI() + " " + parent.getIRI()));
+		return pairs;
+	}
+
+	private static Set<String> walkParents(OWLReasoner reasoner, List<OWLClass> classes) {
+		Set<String> pairs = new HashSet<>();
+		InferredClassHierarchy hierarchy = new InferredClassHierarchy(reasoner);
+		for (OWLClass c : classes) {
+			List<OWLClass> parents = hierarchy.getParents(c);
+			if (parents == null)
+				reasoner.getSuperClasses(c, true).entities()
+						.forEach(parent -> pairs.add(c.getIRI() + " " + parent.getIRI()));
+			else
+				for (OWLClass parent : parents)
+					pairs.add(c.getIRI() + " " + parent.getIRI());
+		}
+		return pairs;
+	}
+}
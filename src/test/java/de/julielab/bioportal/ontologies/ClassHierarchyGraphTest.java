@@ -0,0 +1,96 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import de.julielab.bioportal.ontologies.data.OntologyClass;
+import de.julielab.bioportal.ontologies.data.OntologyClassClosure;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+
+public class ClassHierarchyGraphTest {
+	@Test
+	public void testDiamond() throws IOException {
+		// D has the parents B and C which both have the parent A; E has the
+		// parents D and A; A has the parent Thing which is not a class
+		List<OntologyClass> classes = new ArrayList<>();
+		classes.add(createClass("A", "Thing"));
+		classes.add(createClass("B", "A"));
+		classes.add(createClass("C", "A"));
+		classes.add(createClass("D", "B", "C"));
+		classes.add(createClass("E", "D", "A"));
+		ClassHierarchyGraph graph = new ClassHierarchyGraph(classes.iterator());
+
+		assertEquals(6, graph.size());
+		assertEquals(7, graph.getNumEdges());
+		assertFalse(graph.isClass(graph.getNode("Thing")));
+		assertEquals(-1, graph.getNode("F"));
+
+		assertEquals(0, graph.getDepth(graph.getNode("Thing")));
+		assertEquals(1, graph.getDepth(graph.getNode("A")));
+		assertEquals(3, graph.getDepth(graph.getNode("D")));
+		assertEquals(4, graph.getDepth(graph.getNode("E")));
+
+		assertEquals(3, graph.getChildCount(graph.getNode("A")));
+		assertEquals(0, graph.getChildCount(graph.getNode("E")));
+
+		assertEquals(new HashSet<>(Arrays.asList("A", "B", "C", "D", "Thing")),
+				new HashSet<>(graph.getAncestors(graph.getNode("E"))));
+		// each ancestor is only reported once
+		assertEquals(5, graph.getAncestors(graph.getNode("E")).size());
+		assertTrue(graph.getAncestors(graph.getNode("Thing")).isEmpty());
+
+		StringWriter w = new StringWriter();
+		graph.writeClosures(w);
+		String[] lines = w.toString().split("\n");
+		assertEquals(5, lines.length);
+		OntologyClassClosure closure = BioPortalToolUtils.getGson().fromJson(lines[3], OntologyClassClosure.class);
+		assertEquals("D", closure.id);
+		assertEquals(3, closure.depth);
+		assertEquals(1, closure.childCount);
+		assertEquals(new HashSet<>(Arrays.asList("A", "B", "C", "Thing")), new HashSet<>(closure.ancestors));
+	}
+
+	@Test
+	public void testClosuresInClassesFileOrder() throws IOException {
+		// B occurs as parent of A before it occurs as a class
+		List<OntologyClass> classes = new ArrayList<>();
+		classes.add(createClass("A", "B"));
+		classes.add(createClass("C", "B"));
+		classes.add(createClass("B"));
+		ClassHierarchyGraph graph = new ClassHierarchyGraph(classes.iterator());
+		StringWriter w = new StringWriter();
+		graph.writeClosures(w);
+		List<String> ids = new ArrayList<>();
+		for (String line : w.toString().split("\n"))
+			ids.add(BioPortalToolUtils.getGson().fromJson(line, OntologyClassClosure.class).id);
+		assertEquals(Arrays.asList("A", "C", "B"), ids);
+	}
+
+	@Test
+	public void testCycle() {
+		List<OntologyClass> classes = new ArrayList<>();
+		classes.add(createClass("A", "B"));
+		classes.add(createClass("B", "A"));
+		ClassHierarchyGraph graph = new ClassHierarchyGraph(classes.iterator());
+		assertEquals(Arrays.asList("B"), graph.getAncestors(graph.getNode("A")));
+		assertEquals(1, graph.getDepth(graph.getNode("A")));
+		assertEquals(0, graph.getDepth(graph.getNode("B")));
+	}
+
+	private OntologyClass createClass(String id, String... parents) {
+		ClassRecord record = new ClassRecord();
+		record.id = id;
+		record.parents.addAll(Arrays.asList(parents));
+		return record.toOntologyClass();
+	}
+}
@@ -0,0 +1,87 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import de.julielab.bioportal.util.BioPortalToolUtils;
+
+public class ClassRecordBinaryFormatTest {
+	@Test
+	public void testRoundTrip() throws IOException {
+		Gson gson = BioPortalToolUtils.getGson();
+
+		ClassRecord minimal = new ClassRecord();
+		minimal.id = "http://purl.obolibrary.org/obo/GO_0000001";
+
+		ClassRecord full = new ClassRecord();
+		full.id = "http://qudt.org/schema/qudt#Unit";
+		full.prefLabel = "Unit <of> \"measure\"";
+		full.synonyms.add("syn1");
+		full.synonyms.add("\u00fcnicode \u2028 line separator\ttab");
+		full.definition = "A unit = a \\ quantity\nvalue.";
+		full.parents.add("http://www.w3.org/2002/07/owl#Thing");
+		full.parents.add("http://purl.obolibrary.org/obo/GO_0000001");
+		full.obsolete = true;
+
+		ClassRecord[] records = new ClassRecord[] { minimal, full, full };
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try (ClassRecordBinaryWriter writer = new ClassRecordBinaryWriter(os)) {
+			for (ClassRecord record : records)
+				writer.write(record);
+		}
+
+		try (ClassRecordBinaryReader reader = new ClassRecordBinaryReader(
+				new ByteArrayInputStream(os.toByteArray()))) {
+			for (ClassRecord record : records)
+				assertEquals(gson.toJson(record.toOntologyClass()), gson.toJson(reader.next()));
+			assertFalse(reader.hasNext());
+			// the IRIs of both classes and the owl:Thing parent
+			assertEquals(3, reader.getStringTable().size());
+		}
+	}
+
+	@Test
+	public void testContinueWithStringTable() throws IOException {
+		ClassRecord first = new ClassRecord();
+		first.id = "http://example.org/A";
+		ClassRecord second = new ClassRecord();
+		second.id = "http://example.org/B";
+		second.parents.add("http://example.org/A");
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try (ClassRecordBinaryWriter writer = new ClassRecordBinaryWriter(os)) {
+			writer.write(first);
+		}
+		List<String> stringTable;
+		try (ClassRecordBinaryReader reader = new ClassRecordBinaryReader(
+				new ByteArrayInputStream(os.toByteArray()))) {
+			while (reader.hasNext())
+				reader.next();
+			stringTable = new ArrayList<>(reader.getStringTable());
+		}
+		try (ClassRecordBinaryWriter writer = new ClassRecordBinaryWriter(os, stringTable)) {
+			writer.write(second);
+		}
+
+		try (ClassRecordBinaryReader reader = new ClassRecordBinaryReader(
+				new ByteArrayInputStream(os.toByteArray()))) {
+			ClassRecord record = new ClassRecord();
+			reader.next(record);
+			assertEquals(first.id, record.id);
+			reader.next(record);
+			assertEquals(second.id, record.id);
+			assertEquals(second.parents, record.parents);
+			assertFalse(reader.next(record));
+		}
+	}
+}
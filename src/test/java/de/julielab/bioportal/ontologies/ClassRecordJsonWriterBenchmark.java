@@ -0,0 +1,111 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+
+import com.google.gson.Gson;
+
+import de.julielab.bioportal.ontologies.data.OntologyClass;
+import de.julielab.bioportal.ontologies.data.OntologyClassParents;
+import de.julielab.bioportal.ontologies.data.OntologyClassSynonyms;
+import de.julielab.bioportal.util.BioPortalToolUtils;
+
+/**
+ * Measures the bytes allocated per class for writing the class name output,
+ * once the way it was done before the {@link ClassRecordJsonWriter} - creating
+ * an {@link OntologyClass} with its wrapper objects, serializing it with Gson
+ * and writing the encoded line - and once with a reused {@link ClassRecord}
+ * and the <tt>ClassRecordJsonWriter</tt>. The output goes to a stream that
+ * discards all bytes so that only the serialization is measured.
+ * 
+ * Usage: ClassRecordJsonWriterBenchmark [number of classes]
+ */
+public class ClassRecordJsonWriterBenchmark {
+
+	private static final OutputStream DISCARD = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	public static void main(String[] args) throws IOException {
+		int numClasses = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		List<String[]> classes = createClasses(numClasses);
+		// warm up both paths
+		for (int i = 0; i < 3; i++) {
+			writeWithGson(classes);
+			writeWithRecordWriter(classes);
+		}
+		long gsonBytes = allocatedBytes();
+		writeWithGson(classes);
+		gsonBytes = allocatedBytes() - gsonBytes;
+		long writerBytes = allocatedBytes();
+		writeWithRecordWriter(classes);
+		writerBytes = allocatedBytes() - writerBytes;
+		System.out.println("OntologyClass + Gson.toJson: " + gsonBytes / numClasses + " bytes per class");
+		System.out.println("ClassRecordJsonWriter:       " + writerBytes / numClasses + " bytes per class");
+	}
+
+	private static void writeWithGson(List<String[]> classes) throws IOException {
+		Gson gson = BioPortalToolUtils.getGson();
+		for (String[] c : classes) {
+			OntologyClass ontologyClass = new OntologyClass();
+			ontologyClass.id = c[0];
+			ontologyClass.prefLabel = c[1];
+			OntologyClassSynonyms synonyms = new OntologyClassSynonyms();
+			synonyms.synonyms = new ArrayList<>(Arrays.asList(c[2], c[3]));
+			ontologyClass.synonym = synonyms;
+			ontologyClass.definition = Arrays.asList(c[4]);
+			OntologyClassParents parents = new OntologyClassParents();
+			parents.addParent(c[5]);
+			parents.addParent(c[6]);
+			ontologyClass.parents = parents;
+			IOUtils.write(gson.toJson(ontologyClass) + "\n", DISCARD, "UTF-8");
+		}
+	}
+
+	private static void writeWithRecordWriter(List<String[]> classes) throws IOException {
+		ClassRecord record = new ClassRecord();
+		try (ClassRecordJsonWriter writer = new ClassRecordJsonWriter(DISCARD)) {
+			for (String[] c : classes) {
+				record.clear();
+				record.id = c[0];
+				record.prefLabel = c[1];
+				record.synonyms.add(c[2]);
+				record.synonyms.add(c[3]);
+				record.definition = c[4];
+				record.parents.add(c[5]);
+				record.parents.add(c[6]);
+				writer.write(record);
+			}
+		}
+	}
+
+	private static List<String[]> createClasses(int numClasses) {
+		List<String[]> classes = new ArrayList<>(numClasses);
+		for (int i = 0; i < numClasses; i++) {
+			String id = String.format("http://purl.obolibrary.org/obo/GO_%07d", i);
+			classes.add(new String[] { id, "biological process number " + i, "process " + i, "bp" + i,
+					"A biological process that is represented by the number " + i + " in this benchmark.",
+					String.format("http://purl.obolibrary.org/obo/GO_%07d", i / 2),
+					String.format("http://purl.obolibrary.org/obo/GO_%07d", i / 3) });
+		}
+		return classes;
+	}
+
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,83 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import de.julielab.bioportal.util.BioPortalToolUtils;
+
+public class ClassRecordJsonWriterTest {
+	@Test
+	public void testOutputEqualsGson() throws IOException {
+		Gson gson = BioPortalToolUtils.getGson();
+
+		ClassRecord minimal = new ClassRecord();
+		minimal.id = "http://purl.obolibrary.org/obo/GO_0000001";
+		minimal.prefLabel = "GO_0000001";
+
+		ClassRecord full = new ClassRecord();
+		full.id = "http://qudt.org/schema/qudt#Unit";
+		full.prefLabel = "Unit <of> \"measure\" & 'more'";
+		full.synonyms.add("syn1");
+		full.synonyms.add("\u00fcnicode \u2028 line separator\ttab");
+		full.definition = "A unit = a \\ quantity\nvalue.";
+		full.parents.add("http://www.w3.org/2002/07/owl#Thing");
+		full.parents.add("http://qudt.org/schema/qudt#Quantity");
+		full.obsolete = true;
+
+		StringWriter sw = new StringWriter();
+		StringBuilder expected = new StringBuilder();
+		try (ClassRecordJsonWriter writer = new ClassRecordJsonWriter(sw)) {
+			for (ClassRecord record : new ClassRecord[] { minimal, full, minimal }) {
+				writer.write(record);
+				expected.append(gson.toJson(record.toOntologyClass())).append("\n");
+			}
+		}
+		assertEquals(expected.toString(), sw.toString());
+	}
+
+	@Test
+	public void testCompactIrisAreExpandedByReader() throws IOException {
+		Gson gson = BioPortalToolUtils.getGson();
+
+		ClassRecord record = new ClassRecord();
+		record.id = "http://purl.obolibrary.org/obo/GO_0000002";
+		record.prefLabel = "mitochondrial genome maintenance";
+		record.parents.add("http://purl.obolibrary.org/obo/GO_0007005");
+		record.parents.add("http://www.w3.org/2002/07/owl#Thing");
+		record.parents.add("urn:no-namespace");
+
+		IriPrefixTable prefixTable = new IriPrefixTable();
+		StringWriter sw = new StringWriter();
+		try (ClassRecordJsonWriter writer = new ClassRecordJsonWriter(sw, prefixTable)) {
+			writer.write(record);
+		}
+		assertTrue(sw.toString().contains("\"0:GO_0000002\""));
+		assertEquals(Arrays.asList("http://purl.obolibrary.org/obo/", "http://www.w3.org/2002/07/owl#"),
+				prefixTable.getNamespaces());
+
+		try (ClassRecordJsonReader reader = new ClassRecordJsonReader(
+				new BufferedReader(new StringReader(sw.toString())),
+				new IriPrefixTable(prefixTable.getNamespaces()))) {
+			assertEquals(gson.toJson(record.toOntologyClass()), gson.toJson(reader.next()));
+			assertFalse(reader.hasNext());
+		}
+	}
+
+	@Test
+	public void testEmptyOutput() throws IOException {
+		StringWriter sw = new StringWriter();
+		new ClassRecordJsonWriter(sw).close();
+		assertEquals("", sw.toString());
+	}
+}
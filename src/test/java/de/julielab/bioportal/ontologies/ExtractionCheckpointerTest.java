@@ -0,0 +1,111 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import de.julielab.bioportal.ontologies.data.ExtractionManifestEntry;
+import de.julielab.java.utilities.FileUtilities;
+
+public class ExtractionCheckpointerTest {
+	@Test
+	public void testResumeEqualsUninterruptedRun() throws IOException {
+		File dir = Files.createTempDirectory("extractioncheckpointer").toFile();
+		try {
+			List<ClassRecord> records = createRecords(20);
+
+			File uninterruptedDir = new File(dir, "uninterrupted");
+			uninterruptedDir.mkdirs();
+			try (ExtractionCheckpointer checkpointer = createCheckpointer(uninterruptedDir)) {
+				writeRecords(checkpointer, records, records.size());
+				checkpointer.commit();
+			}
+
+			File resumedDir = new File(dir, "resumed");
+			resumedDir.mkdirs();
+			try (ExtractionCheckpointer checkpointer = createCheckpointer(resumedDir)) {
+				assertEquals(0, checkpointer.getResumeIndex());
+				// the last checkpoint is after 8 classes, the records up to 11
+				// are written but not checkpointed
+				writeRecords(checkpointer, records, 11);
+			}
+			try (ExtractionCheckpointer checkpointer = createCheckpointer(resumedDir)) {
+				assertEquals(8, checkpointer.getResumeIndex());
+				writeRecords(checkpointer, records, records.size());
+				checkpointer.commit();
+			}
+
+			for (String name : new String[] { "ONT.cls.gz", "ONT.cls.bin.gz" })
+				assertArrayEquals(name, readUncompressed(new File(uninterruptedDir, name)),
+						readUncompressed(new File(resumedDir, name)));
+			String prefixesName = "ONT.cls.prefixes.json.gz";
+			assertEquals(IriPrefixTable.read(new File(uninterruptedDir, prefixesName)).getNamespaces(),
+					IriPrefixTable.read(new File(resumedDir, prefixesName)).getNamespaces());
+			for (File file : resumedDir.listFiles())
+				assertFalse(file.getName(), file.getName().endsWith(ExtractionCheckpointer.PART_EXT)
+						|| file.getName().endsWith(ExtractionCheckpointer.CHECKPOINT_EXT));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	private ExtractionCheckpointer createCheckpointer(File dir) throws IOException {
+		ExtractionManifestEntry inputs = new ExtractionManifestEntry();
+		inputs.acronym = "ONT";
+		inputs.input = "ONT.owl";
+		inputs.inputSize = 1;
+		inputs.inputHash = "hash";
+		inputs.settings = "settings";
+		return new ExtractionCheckpointer(new File(dir, "ONT.cls.gz"), new File(dir, "ONT.cls.bin.gz"),
+				new File(dir, "ONT.cls.prefixes.json.gz"), inputs, "asserted", 4);
+	}
+
+	/**
+	 * Writes the records from the resume index of the checkpointer up to
+	 * <tt>end</tt>, one class at a time.
+	 */
+	private void writeRecords(ExtractionCheckpointer checkpointer, List<ClassRecord> records, int end)
+			throws IOException {
+		for (int i = (int) checkpointer.getResumeIndex(); i < end; i++) {
+			checkpointer.getWriter().write(records.get(i));
+			checkpointer.classesProcessed(1);
+		}
+	}
+
+	/**
+	 * Creates records whose IRIs use namespaces that first occur in different
+	 * parts of the output, also after the last checkpoint of the interrupted
+	 * run.
+	 */
+	private List<ClassRecord> createRecords(int n) {
+		List<ClassRecord> records = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			ClassRecord record = new ClassRecord();
+			record.id = "http://example.org/ns" + (i / 3) + "#Class" + i;
+			record.prefLabel = "class " + i;
+			record.synonyms.add("synonym " + (i % 4));
+			if (i > 0)
+				record.parents.add(records.get(i / 2).id);
+			record.obsolete = i % 5 == 0;
+			records.add(record);
+		}
+		return records;
+	}
+
+	private byte[] readUncompressed(File file) throws IOException {
+		try (InputStream is = FileUtilities.getInputStreamFromFile(file)) {
+			return IOUtils.toByteArray(is);
+		}
+	}
+}
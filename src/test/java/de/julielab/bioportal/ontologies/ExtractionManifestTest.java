@@ -0,0 +1,99 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import de.julielab.bioportal.ontologies.data.ExtractionManifestEntry;
+
+public class ExtractionManifestTest {
+	@Test
+	public void testChangedInputsAndSettings() throws IOException {
+		File dir = Files.createTempDirectory("extractionmanifest").toFile();
+		try {
+			File input = new File(dir, "ONT.owl");
+			Files.write(input.toPath(), "version 1".getBytes(StandardCharsets.UTF_8));
+			File submission = new File(dir, "ONT.submission.json.gz");
+			ExtractionManifest manifest = ExtractionManifest.load(dir);
+			ExtractionManifestEntry entry = manifest.createEntry("ONT", input, submission, "settings");
+			assertFalse(manifest.isUnchanged(entry));
+			manifest.update(entry);
+
+			// an unchanged input is skipped, also by a later run
+			manifest = ExtractionManifest.load(dir);
+			assertTrue(manifest.isUnchanged(manifest.createEntry("ONT", input, submission, "settings")));
+
+			// changed settings
+			assertFalse(manifest.isUnchanged(manifest.createEntry("ONT", input, submission, "other settings")));
+
+			// a changed submission
+			Files.write(submission.toPath(), "submission".getBytes(StandardCharsets.UTF_8));
+			assertFalse(manifest.isUnchanged(manifest.createEntry("ONT", input, submission, "settings")));
+			Files.delete(submission.toPath());
+
+			// a changed input with the same size
+			Files.write(input.toPath(), "version 2".getBytes(StandardCharsets.UTF_8));
+			input.setLastModified(input.lastModified() + 2000);
+			assertFalse(manifest.isUnchanged(manifest.createEntry("ONT", input, submission, "settings")));
+
+			assertEquals(Collections.emptyList(), manifest.removeEntriesNotIn(Arrays.asList("ONT")));
+			assertEquals(Arrays.asList("ONT"), manifest.removeEntriesNotIn(Arrays.asList("OTHER")));
+			assertEquals(null, ExtractionManifest.load(dir).getEntry("ONT"));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	@Test
+	public void testRunSkipsUnchangedAndRemovesDeletedOntologies() throws Exception {
+		File dir = Files.createTempDirectory("extractionmanifest").toFile();
+		try {
+			File inputDir = new File(dir, "ontologies");
+			File submissionsDir = new File(dir, "info");
+			File outputDir = new File(dir, "output");
+			inputDir.mkdirs();
+			submissionsDir.mkdirs();
+			File input = new File(inputDir, "QUDTmini.owl.gz");
+			FileUtils.copyFile(new File("src/test/resources/QUDTmini.owl.gz"), input);
+			File classesFile = new File(outputDir, "QUDTmini" + BioPortalToolConstants.CLASSES_EXT + ".gz");
+
+			// an output without manifest entry might be outdated
+			outputDir.mkdirs();
+			Files.write(classesFile.toPath(), "stale".getBytes(StandardCharsets.UTF_8));
+			createExtractor(false).run(inputDir, submissionsDir, outputDir);
+			assertTrue(classesFile.length() > "stale".length());
+
+			// unchanged inputs and settings
+			classesFile.setLastModified(classesFile.lastModified() - 10000);
+			long lastModified = classesFile.lastModified();
+			createExtractor(false).run(inputDir, submissionsDir, outputDir);
+			assertEquals(lastModified, classesFile.lastModified());
+
+			// changed settings
+			createExtractor(true).run(inputDir, submissionsDir, outputDir);
+			assertTrue(classesFile.lastModified() != lastModified);
+
+			// a removed input
+			Files.delete(input.toPath());
+			createExtractor(true).run(inputDir, submissionsDir, outputDir);
+			assertFalse(classesFile.exists());
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+
+	private OntologyClassNameExtractor createExtractor(boolean filterDeprecated) {
+		return new OntologyClassNameExtractor(Executors.newFixedThreadPool(1), false, filterDeprecated);
+	}
+}
@@ -0,0 +1,66 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+
+public class InferredHierarchyCacheTest {
+	@Test
+	public void testCachedHierarchyEqualsReasonerParents() throws OWLOntologyCreationException, IOException {
+		OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+		OWLDataFactory df = m.getOWLDataFactory();
+		OWLOntology o = m.createOntology(IRI.create("http://example.org/test"));
+		OWLClass a = df.getOWLClass(IRI.create("http://example.org/A"));
+		OWLClass b = df.getOWLClass(IRI.create("http://example.org/B"));
+		OWLClass c = df.getOWLClass(IRI.create("http://example.org/C"));
+		OWLClass d = df.getOWLClass(IRI.create("http://example.org/D"));
+		m.addAxiom(o, df.getOWLSubClassOfAxiom(b, a));
+		m.addAxiom(o, df.getOWLSubClassOfAxiom(c, a));
+		m.addAxiom(o, df.getOWLSubClassOfAxiom(d, b));
+		m.addAxiom(o, df.getOWLSubClassOfAxiom(d, c));
+		OWLReasoner reasoner = new StructuralReasonerFactory().createReasoner(o);
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+
+		InferredClassHierarchy hierarchy = new InferredClassHierarchy(reasoner, o.classesInSignature());
+		List<OWLClass> classes = o.classesInSignature().collect(Collectors.toList());
+		for (OWLClass cls : classes)
+			assertEquals(reasoner.getSuperClasses(cls, true).entities().sorted().collect(Collectors.toList()),
+					hierarchy.getParents(cls));
+
+		File cacheDir = Files.createTempDirectory("hierarchycache").toFile();
+		try {
+			InferredHierarchyCache cache = new InferredHierarchyCache(cacheDir, 0, 0);
+			String key = InferredHierarchyCache.getKey("inputhash", "STRUCTURAL");
+			assertNull(cache.load(key, df));
+			cache.store(key, hierarchy);
+			InferredClassHierarchy cached = cache.load(key, OWLManager.getOWLDataFactory());
+			assertNotNull(cached);
+			assertEquals(reasoner.getReasonerName(), cached.getReasonerName());
+			for (OWLClass cls : classes)
+				assertEquals(hierarchy.getParents(cls), cached.getParents(cls));
+			assertEquals(1, cache.getHits());
+			assertEquals(1, cache.getMisses());
+		} finally {
+			FileUtils.deleteDirectory(cacheDir);
+		}
+	}
+}
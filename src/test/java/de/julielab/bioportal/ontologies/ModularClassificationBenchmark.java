@@ -0,0 +1,66 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+
+/**
+ * Measures the time of classifying an ontology as a whole and with the
+ * {@link ModularClassifier} for different numbers of modules, each with one
+ * thread per module. Reports the wall clock time, the summed module time,
+ * the parallelism, i.e. the summed module time divided by the wall clock
+ * time, and the speedup, i.e. the wall clock time of the classification as a
+ * whole divided by that of the modular classification, per module count.
+ * Meant to be run on large ontologies that take minutes to classify.
+ *
+ * Usage: ModularClassificationBenchmark &lt;ontology file&gt;
+ * &lt;reasoner strategy&gt; &lt;module count&gt; [&lt;module count&gt;
+ * ...]
+ */
+public class ModularClassificationBenchmark {
+
+	public static void main(String[] args) throws OWLOntologyCreationException, InterruptedException {
+		if (args.length < 3) {
+			System.err.println("Usage: " + ModularClassificationBenchmark.class.getSimpleName()
+					+ " <ontology file> <reasoner strategy> <module count> [<module count> ...]");
+			System.exit(1);
+		}
+		File file = new File(args[0]);
+		OntologyLoader ontologyLoader = new OntologyLoader();
+		OWLOntology o = ontologyLoader.loadOntology(file);
+		OWLReasonerFactory reasonerFactory = new ReasonerSelector(ReasonerStrategy.valueOf(args[1])).select(o);
+		ReasoningTimeLimiter reasoningTimeLimiter = new ReasoningTimeLimiter(0);
+
+		long time = System.currentTimeMillis();
+		OWLReasoner reasoner = reasonerFactory.createReasoner(o);
+		reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+		new InferredClassHierarchy(reasoner);
+		reasoner.dispose();
+		long wholeTime = System.currentTimeMillis() - time;
+		System.out.println(String.format("%s with %s as a whole: %dms", file.getName(),
+				reasonerFactory.getReasonerName(), wholeTime));
+
+		for (int i = 2; i < args.length; i++) {
+			int numModules = Integer.parseInt(args[i]);
+			ExecutorService executor = Executors.newFixedThreadPool(numModules);
+			try {
+				ModularClassifier.Result result = new ModularClassifier(executor, numModules).classify(o,
+						reasonerFactory, reasoningTimeLimiter);
+				System.out.println(String.format(
+						"%s with %s in %d modules (largest %d axioms): %dms, summed over the modules %dms, parallelism %.2f, speedup over the whole %.2f",
+						file.getName(), reasonerFactory.getReasonerName(), result.getNumModules(),
+						result.getLargestModule(), result.getTime(), result.getSummedModuleTime(),
+						result.getParallelism(), (double) wholeTime / result.getTime()));
+			} finally {
+				executor.shutdown();
+			}
+		}
+		reasoningTimeLimiter.shutDown();
+	}
+}
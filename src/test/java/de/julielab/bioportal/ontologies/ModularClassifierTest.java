@@ -0,0 +1,90 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.parameters.Imports;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+
+public class ModularClassifierTest {
+	@Test
+	public void modularHierarchyEqualsSingleReasonerHierarchy()
+			throws OWLOntologyCreationException, InterruptedException {
+		OWLReasonerFactory reasonerFactory = new org.semanticweb.HermiT.ReasonerFactory();
+		ReasoningTimeLimiter reasoningTimeLimiter = new ReasoningTimeLimiter(0);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (String acronym : new String[] { "QUDTmini", "OBIBmini" }) {
+				OntologyLoader ontologyLoader = new OntologyLoader();
+				OWLOntology o = ontologyLoader.loadOntology(new File("src/test/resources/" + acronym + ".owl.gz"));
+				List<OWLClass> classes = o.classesInSignature(Imports.INCLUDED).collect(Collectors.toList());
+
+				OWLReasoner reasoner = reasonerFactory.createReasoner(o);
+				reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+				InferredClassHierarchy expected = new InferredClassHierarchy(reasoner, classes.stream());
+				reasoner.dispose();
+
+				ModularClassifier.Result result = new ModularClassifier(executor, 3).classify(o, reasonerFactory,
+						reasoningTimeLimiter);
+				assertNotNull(result);
+				for (OWLClass c : classes)
+					assertEquals(acronym + ": " + c, new HashSet<>(expected.getParents(c)),
+							new HashSet<>(result.getHierarchy().getParents(c)));
+			}
+		} finally {
+			executor.shutdown();
+			reasoningTimeLimiter.shutDown();
+		}
+	}
+
+	@Test
+	public void timedOutModuleCancelsTheOther() throws OWLOntologyCreationException, InterruptedException {
+		OWLReasonerFactory reasonerFactory = new org.semanticweb.HermiT.ReasonerFactory();
+		AtomicBoolean timedOut = new AtomicBoolean();
+		CountDownLatch cancelled = new CountDownLatch(1);
+		// QUDTmini has two modules: the first one times out, the other would
+		// take very long
+		ReasoningTimeLimiter reasoningTimeLimiter = new ReasoningTimeLimiter(0) {
+			@Override
+			public OWLReasoner createClassifiedReasoner(OWLOntology o, OWLReasonerFactory reasonerFactory) {
+				if (timedOut.compareAndSet(false, true))
+					return null;
+				try {
+					Thread.sleep(60000);
+				} catch (InterruptedException e) {
+					cancelled.countDown();
+				}
+				return null;
+			}
+		};
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			OWLOntology o = new OntologyLoader().loadOntology(new File("src/test/resources/QUDTmini.owl.gz"));
+			long time = System.currentTimeMillis();
+			assertNull(new ModularClassifier(executor, 2).classify(o, reasonerFactory, reasoningTimeLimiter));
+			assertTrue(System.currentTimeMillis() - time < 30000);
+			assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+		} finally {
+			executor.shutdownNow();
+			reasoningTimeLimiter.shutDown();
+		}
+	}
+}
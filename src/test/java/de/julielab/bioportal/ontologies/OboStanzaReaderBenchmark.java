@@ -0,0 +1,111 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.parameters.Imports;
+
+import de.julielab.bioportal.util.OboFormatException;
+
+/**
+ * Compares the time and the retained heap of extracting the classes of OBO
+ * files once by loading them with the OWL API and once with the
+ * {@link OboStanzaReader}. The records are written to a stream that discards
+ * all bytes. Meant to be run on the large OBO ontologies of a BioPortal
+ * download, e.g. GO, CHEBI or NCBITAXON, with a heap large enough for the OWL
+ * API path.
+ *
+ * Usage: OboStanzaReaderBenchmark &lt;obo file&gt; [&lt;obo file&gt; ...]
+ */
+public class OboStanzaReaderBenchmark {
+
+	private static final OutputStream DISCARD = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	public static void main(String[] args)
+			throws IOException, OWLOntologyCreationException, OboFormatException {
+		if (args.length == 0) {
+			System.err.println("Usage: " + OboStanzaReaderBenchmark.class.getSimpleName()
+					+ " <obo file> [<obo file> ...]");
+			System.exit(1);
+		}
+		for (String fileName : args) {
+			File file = new File(fileName);
+			System.out.println(file.getName() + ":");
+			runOWLAPI(file);
+			runOboStanzaReader(file);
+		}
+	}
+
+	private static void runOWLAPI(File file) throws IOException, OWLOntologyCreationException {
+		long heapBefore = usedHeap();
+		long time = System.currentTimeMillis();
+		OntologyLoader ontologyLoader = new OntologyLoader();
+		AnnotationPropertySet properties = new AnnotationPropertySet(ontologyLoader.getOntologyManager(),
+				new File(""));
+		OWLOntology o = ontologyLoader.loadOntology(file);
+		long loadingTime = System.currentTimeMillis() - time;
+		long heap = usedHeap() - heapBefore;
+		time = System.currentTimeMillis();
+		int numRecords = writeRecords(new OWLOntologyClassRecordExtractor(properties, false, o, null, null),
+				o.classesInSignature(Imports.INCLUDED).iterator());
+		long writingTime = System.currentTimeMillis() - time;
+		print("OWL API", loadingTime, writingTime, heap, numRecords);
+		ontologyLoader.clearLoadedOntologies();
+	}
+
+	private static void runOboStanzaReader(File file) throws IOException, OboFormatException {
+		long heapBefore = usedHeap();
+		long time = System.currentTimeMillis();
+		AnnotationPropertySet properties = new AnnotationPropertySet(new OntologyLoader().getOntologyManager(),
+				new File(""));
+		OboStanzaReader reader = new OboStanzaReader(properties);
+		reader.read(file);
+		long loadingTime = System.currentTimeMillis() - time;
+		long heap = usedHeap() - heapBefore;
+		time = System.currentTimeMillis();
+		int numRecords = writeRecords(reader.getRecordExtractor(properties, false, file.getName()),
+				reader.getClasses().iterator());
+		long writingTime = System.currentTimeMillis() - time;
+		print("OboStanzaReader", loadingTime, writingTime, heap, numRecords);
+	}
+
+	private static int writeRecords(ClassRecordExtractor recordExtractor, Iterator<OWLClass> classes)
+			throws IOException {
+		int numRecords = 0;
+		ClassRecord record = new ClassRecord();
+		try (ClassRecordJsonWriter writer = new ClassRecordJsonWriter(DISCARD)) {
+			while (classes.hasNext()) {
+				if (recordExtractor.extractClass(classes.next(), record)) {
+					writer.write(record);
+					++numRecords;
+				}
+			}
+		}
+		return numRecords;
+	}
+
+	private static void print(String engine, long loadingTime, long writingTime, long heap, int numRecords) {
+		System.out.println(String.format("  %-16s reading: %6dms, writing: %6dms, retained heap: %5dMB, records: %d",
+				engine, loadingTime, writingTime, heap / (1024 * 1024), numRecords));
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,72 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+
+import de.julielab.java.utilities.FileUtilities;
+
+public class OboStanzaReaderTest {
+	@Test
+	public void testSameClassesAsOWLAPI() throws Exception {
+		File ontologyFile = new File("src/test/resources/OBOmini.obo");
+		for (boolean filterDeprecated : new boolean[] { false, true }) {
+			OntologyLoader ontologyLoader = new OntologyLoader();
+			AnnotationPropertySet properties = new AnnotationPropertySet(ontologyLoader.getOntologyManager(),
+					new File(""));
+			OWLOntology o = ontologyLoader.loadOntology(ontologyFile);
+			OntologyClassNameExtractor nameExtractor = new OntologyClassNameExtractor(
+					Executors.newCachedThreadPool(Executors.defaultThreadFactory()), false, filterDeprecated);
+			File owlApiClassesFile = File.createTempFile("OBOmini", BioPortalToolConstants.CLASSES_EXT + ".gz");
+			Method method = OntologyClassNameExtractor.class.getDeclaredMethod("writeNames",
+					AnnotationPropertySet.class, File.class, OWLOntology.class, OWLReasoner.class);
+			method.setAccessible(true);
+			method.invoke(nameExtractor, properties, owlApiClassesFile, o, null);
+			nameExtractor.shutDown();
+
+			OboStanzaReader reader = new OboStanzaReader(properties);
+			reader.read(ontologyFile);
+			ClassRecordExtractor recordExtractor = reader.getRecordExtractor(properties, filterDeprecated,
+					"OBOmini");
+			File oboClassesFile = File.createTempFile("OBOmini", BioPortalToolConstants.CLASSES_EXT + ".gz");
+			try (ClassRecordJsonWriter jsonWriter = new ClassRecordJsonWriter(
+					FileUtilities.getOutputStreamToFile(oboClassesFile))) {
+				ClassRecord record = new ClassRecord();
+				for (OWLClass c : reader.getClasses()) {
+					if (recordExtractor.extractClass(c, record))
+						jsonWriter.write(record);
+				}
+			}
+
+			List<String> owlApiClasses = readClasses(owlApiClassesFile);
+			assertEquals(filterDeprecated ? 4 : 5, owlApiClasses.size());
+			assertEquals(owlApiClasses, readClasses(oboClassesFile));
+			Files.delete(owlApiClassesFile.toPath());
+			Files.delete(oboClassesFile.toPath());
+		}
+	}
+
+	private List<String> readClasses(File classesFile) throws IOException {
+		List<String> classes = new ArrayList<>();
+		try (BufferedReader br = FileUtilities.getReaderFromFile(classesFile)) {
+			String line;
+			while ((line = br.readLine()) != null)
+				classes.add(line);
+		}
+		Collections.sort(classes);
+		return classes;
+	}
+}
@@ -1,20 +1,27 @@
 package de.julielab.bioportal.ontologies;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 
 import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
 
+
 import de.julielab.bioportal.ontologies.OntologyClassNameExtractor;
 import de.julielab.java.utilities.FileUtilities;
 
@@ -142,4 +149,127 @@ public class OntologyClassNameExtractorTest {
 		method.setAccessible(true);
 		method.invoke(nameExtractor, properties, classesFile, o, reasoner);
 	}
+
+	@Test
+	public void extractionModesProduceIdenticalOutput() throws Exception {
+		for (String acronym : new String[] { "QUDTmini", "OBIBmini" }) {
+			File ontologyFile = new File("src/test/resources/" + acronym + ".owl.gz");
+			OntologyLoader ontologyLoader = new OntologyLoader();
+			AnnotationPropertySet properties = new AnnotationPropertySet(ontologyLoader.getOntologyManager(),
+					new File(""));
+			OWLOntology o = ontologyLoader.loadOntology(ontologyFile);
+
+			List<String> outputs = new ArrayList<>();
+			// annotation index on/off, number of class extraction threads, classes
+			// per chunk; the small chunks make several chunks run in parallel
+			int defaultChunkSize = OntologyClassNameExtractor.DEFAULT_CLASS_CHUNK_SIZE;
+			for (int[] mode : new int[][] { { 0, 1, defaultChunkSize }, { 1, 1, defaultChunkSize },
+					{ 1, 3, defaultChunkSize }, { 1, 3, 1 }, { 1, 3, 2 }, { 0, 2, 3 } }) {
+				OntologyClassNameExtractor nameExtractor = new OntologyClassNameExtractor(
+						Executors.newCachedThreadPool(Executors.defaultThreadFactory()), false, false);
+				nameExtractor.setUseAnnotationIndex(mode[0] == 1);
+				nameExtractor.setClassExtractionThreads(mode[1]);
+				nameExtractor.setClassChunkSize(mode[2]);
+				File classesFile = File.createTempFile(acronym, BioPortalToolConstants.CLASSES_EXT + ".gz");
+				Method method = OntologyClassNameExtractor.class.getDeclaredMethod("writeNames",
+						AnnotationPropertySet.class, File.class, OWLOntology.class, OWLReasoner.class);
+				method.setAccessible(true);
+				method.invoke(nameExtractor, properties, classesFile, o, null);
+				nameExtractor.shutDown();
+				try (BufferedReader br = FileUtilities.getReaderFromFile(classesFile)) {
+					StringBuilder sb = new StringBuilder();
+					String line;
+					while ((line = br.readLine()) != null)
+						sb.append(line).append("\n");
+					outputs.add(sb.toString());
+				}
+				Files.delete(classesFile.toPath());
+			}
+			for (int i = 1; i < outputs.size(); i++)
+				assertEquals(outputs.get(0), outputs.get(i));
+		}
+	}
+
+	@Test
+	public void streamingEngineProducesSameClassesAsOWLAPI() throws Exception {
+		for (String acronym : new String[] { "QUDTmini", "OBIBmini" }) {
+			File ontologyFile = new File("src/test/resources/" + acronym + ".owl.gz");
+			OntologyLoader ontologyLoader = new OntologyLoader();
+			AnnotationPropertySet properties = new AnnotationPropertySet(ontologyLoader.getOntologyManager(),
+					new File(""));
+			OWLOntology o = ontologyLoader.loadOntology(ontologyFile);
+
+			OntologyClassNameExtractor nameExtractor = new OntologyClassNameExtractor(
+					Executors.newCachedThreadPool(Executors.defaultThreadFactory()), false, false);
+			File owlApiClassesFile = File.createTempFile(acronym, BioPortalToolConstants.CLASSES_EXT + ".gz");
+			Method method = OntologyClassNameExtractor.class.getDeclaredMethod("writeNames",
+					AnnotationPropertySet.class, File.class, OWLOntology.class, OWLReasoner.class);
+			method.setAccessible(true);
+			method.invoke(nameExtractor, properties, owlApiClassesFile, o, null);
+			nameExtractor.shutDown();
+
+			StreamingRDFClassReader reader = new StreamingRDFClassReader(properties);
+			reader.read(ontologyFile);
+			ClassRecordExtractor recordExtractor = reader.getRecordExtractor(properties, false, acronym);
+			File streamingClassesFile = File.createTempFile(acronym, BioPortalToolConstants.CLASSES_EXT + ".gz");
+			try (ClassRecordJsonWriter jsonWriter = new ClassRecordJsonWriter(
+					FileUtilities.getOutputStreamToFile(streamingClassesFile))) {
+				ClassRecord record = new ClassRecord();
+				for (OWLClass c : reader.getClasses()) {
+					if (recordExtractor.extractClass(c, record))
+						jsonWriter.write(record);
+				}
+			}
+
+			assertEquals(readClasses(owlApiClassesFile), readClasses(streamingClassesFile));
+			Files.delete(owlApiClassesFile.toPath());
+			Files.delete(streamingClassesFile.toPath());
+		}
+	}
+
+	@Test
+	public void annotationOnlyLoadingProducesSameClasses() throws Exception {
+		long droppedAxioms = 0;
+		for (String acronym : new String[] { "QUDTmini", "OBIBmini" }) {
+			File ontologyFile = new File("src/test/resources/" + acronym + ".owl.gz");
+			List<List<String>> outputs = new ArrayList<>();
+			for (boolean annotationOnly : new boolean[] { false, true }) {
+				OntologyLoader ontologyLoader = new OntologyLoader();
+				ontologyLoader.setAnnotationOnly(annotationOnly);
+				AnnotationPropertySet properties = new AnnotationPropertySet(ontologyLoader.getOntologyManager(),
+						new File(""));
+				OWLOntology o = ontologyLoader.loadOntology(ontologyFile);
+				if (annotationOnly)
+					droppedAxioms += ontologyLoader.getAxiomFilter().getNumDroppedAxioms();
+
+				OntologyClassNameExtractor nameExtractor = new OntologyClassNameExtractor(
+						Executors.newCachedThreadPool(Executors.defaultThreadFactory()), false, false);
+				File classesFile = File.createTempFile(acronym, BioPortalToolConstants.CLASSES_EXT + ".gz");
+				Method method = OntologyClassNameExtractor.class.getDeclaredMethod("writeNames",
+						AnnotationPropertySet.class, File.class, OWLOntology.class, OWLReasoner.class);
+				method.setAccessible(true);
+				method.invoke(nameExtractor, properties, classesFile, o, null);
+				nameExtractor.shutDown();
+				outputs.add(readClasses(classesFile));
+				Files.delete(classesFile.toPath());
+			}
+			assertEquals(outputs.get(0), outputs.get(1));
+		}
+		assertTrue(droppedAxioms > 0);
+	}
+
+	/**
+	 * Reads the records of a classes file, sorted by their JSON lines. The
+	 * records themselves are not normalized.
+	 */
+	private List<String> readClasses(File classesFile) throws IOException {
+		List<String> classes = new ArrayList<>();
+		try (BufferedReader br = FileUtilities.getReaderFromFile(classesFile)) {
+			String line;
+			while ((line = br.readLine()) != null)
+				classes.add(line);
+		}
+		Collections.sort(classes);
+		return classes;
+	}
 }
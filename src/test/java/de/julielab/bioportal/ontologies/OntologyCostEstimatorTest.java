@@ -0,0 +1,43 @@
+package de.julielab.bioportal.ontologies;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class OntologyCostEstimatorTest {
+	@Test
+	public void testGzipAndPlainFilesAreComparable() throws IOException {
+		File dir = Files.createTempDirectory("ontologycostestimator").toFile();
+		try {
+			// 300 gzipped bytes stand for about 3000 uncompressed bytes
+			File gzipFile = new File(dir, "GZ.owl.gz");
+			Files.write(gzipFile.toPath(), new byte[300]);
+			File plainFile = new File(dir, "PLAIN.obo");
+			Files.write(plainFile.toPath(), new byte[2000]);
+			// a directory with a gzipped and a plain file
+			File ontologyDir = new File(dir, "DIR");
+			ontologyDir.mkdirs();
+			Files.write(new File(ontologyDir, "main.owl.gz").toPath(), new byte[100]);
+			Files.write(new File(ontologyDir, "import.owl").toPath(), new byte[500]);
+
+			List<File> files = Arrays.asList(plainFile, ontologyDir, gzipFile);
+			OntologyCostEstimator costEstimator = new OntologyCostEstimator(null);
+			Map<File, Long> costs = costEstimator.estimateCosts(files);
+			assertEquals(300L * OntologyCostEstimator.GZIP_COMPRESSION_RATIO, (long) costs.get(gzipFile));
+			assertEquals(2000L, (long) costs.get(plainFile));
+			assertEquals(100L * OntologyCostEstimator.GZIP_COMPRESSION_RATIO + 500, (long) costs.get(ontologyDir));
+			assertEquals(Arrays.asList(gzipFile, plainFile, ontologyDir),
+					costEstimator.sortByDescendingCost(files, costs));
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+	}
+}
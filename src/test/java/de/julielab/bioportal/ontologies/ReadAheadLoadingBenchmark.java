@@ -0,0 +1,56 @@
+package de.julielab.bioportal.ontologies;
+
+import java.io.File;
+
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+/**
+ * Measures the time of loading gzipped ontology files with the
+ * {@link OntologyLoader}, once with decompression on the parsing thread and
+ * once with the read-ahead decompression on a separate thread. Both modes are
+ * run alternately to even out caching and JIT effects. Meant to be run on
+ * large <tt>.owl.gz</tt> or <tt>.umls.gz</tt> files of a BioPortal download.
+ *
+ * Usage: ReadAheadLoadingBenchmark &lt;number of runs&gt; &lt;gz file&gt;
+ * [&lt;gz file&gt; ...]
+ */
+public class ReadAheadLoadingBenchmark {
+
+	public static void main(String[] args) throws OWLOntologyCreationException {
+		if (args.length < 2) {
+			System.err.println("Usage: " + ReadAheadLoadingBenchmark.class.getSimpleName()
+					+ " <number of runs> <gz file> [<gz file> ...]");
+			System.exit(1);
+		}
+		int runs = Integer.parseInt(args[0]);
+		for (int i = 1; i < args.length; i++) {
+			File file = new File(args[i]);
+			// warm up
+			load(file, false);
+			load(file, true);
+			long directTime = 0;
+			long readAheadTime = 0;
+			int axioms = 0;
+			for (int run = 0; run < runs; run++) {
+				long time = System.currentTimeMillis();
+				axioms = load(file, false);
+				directTime += System.currentTimeMillis() - time;
+				time = System.currentTimeMillis();
+				load(file, true);
+				readAheadTime += System.currentTimeMillis() - time;
+			}
+			System.out.println(String.format("%s (%d axioms): direct %dms, read-ahead %dms (mean of %d runs)",
+					file.getName(), axioms, directTime / runs, readAheadTime / runs, runs));
+		}
+	}
+
+	private static int load(File file, boolean readAhead) throws OWLOntologyCreationException {
+		OntologyLoader ontologyLoader = new OntologyLoader();
+		ontologyLoader.setReadAhead(readAhead);
+		OWLOntology o = ontologyLoader.loadOntology(file);
+		int axioms = o.getAxiomCount();
+		ontologyLoader.clearLoadedOntologies();
+		return axioms;
+	}
+}
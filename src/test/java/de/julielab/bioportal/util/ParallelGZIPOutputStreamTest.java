@@ -0,0 +1,84 @@
+package de.julielab.bioportal.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import de.julielab.java.utilities.FileUtilities;
+
+public class ParallelGZIPOutputStreamTest {
+	@Test
+	public void testRoundTrip() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		File file = Files.createTempFile("parallelgzip", ".gz").toFile();
+		try {
+			Semaphore permits = new Semaphore(2);
+			ByteArrayOutputStream expected = new ByteArrayOutputStream();
+			try (ParallelGZIPOutputStream os = new ParallelGZIPOutputStream(new FileOutputStream(file), 1000,
+					Deflater.DEFAULT_COMPRESSION, executor, 4, permits)) {
+				for (int i = 0; i < 2000; i++) {
+					byte[] line = ("line " + i + "\n").getBytes(StandardCharsets.UTF_8);
+					if (i % 2 == 0) {
+						os.write(line);
+					} else {
+						for (byte b : line)
+							os.write(b);
+					}
+					expected.write(line);
+					if (i == 500)
+						os.flush();
+				}
+				os.finish();
+				// a new member after finish
+				byte[] tail = "tail".getBytes(StandardCharsets.UTF_8);
+				os.write(tail);
+				expected.write(tail);
+			}
+			assertEquals(2, permits.availablePermits());
+
+			byte[] gzipRead;
+			try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(Files.readAllBytes(file.toPath())))) {
+				gzipRead = IOUtils.toByteArray(is);
+			}
+			assertArrayEquals(expected.toByteArray(), gzipRead);
+			byte[] utilitiesRead;
+			try (InputStream is = FileUtilities.getInputStreamFromFile(file)) {
+				utilitiesRead = IOUtils.toByteArray(is);
+			}
+			assertArrayEquals(expected.toByteArray(), utilitiesRead);
+		} finally {
+			executor.shutdown();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEmptyStream() throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		try {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			new ParallelGZIPOutputStream(compressed, 1000, Deflater.DEFAULT_COMPRESSION, executor, 1).close();
+			try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()))) {
+				assertEquals(0, IOUtils.toByteArray(is).length);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package de.julielab.bioportal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ReadAheadInputStreamTest {
+	@Test
+	public void testSourceErrorIsThrownByRead() throws IOException {
+		IOException sourceError = new IOException("corrupt input");
+		InputStream source = new InputStream() {
+			private int n;
+
+			@Override
+			public int read() throws IOException {
+				if (n == 10)
+					throw sourceError;
+				return n++;
+			}
+		};
+		try (ReadAheadInputStream is = new ReadAheadInputStream(source, "test", 4, 2)) {
+			for (int i = 0; i < 10; i++)
+				assertEquals(i, is.read());
+			try {
+				is.read();
+				fail("The error of the source was not thrown");
+			} catch (IOException e) {
+				assertSame(sourceError, e.getCause());
+			}
+			assertEquals(-1, is.read());
+		}
+
+		RuntimeException runtimeError = new IllegalStateException("bug");
+		source = new InputStream() {
+			@Override
+			public int read() {
+				throw runtimeError;
+			}
+		};
+		try (ReadAheadInputStream is = new ReadAheadInputStream(source, "test", 4, 2)) {
+			is.read();
+			fail("The error of the source was not thrown");
+		} catch (IllegalStateException e) {
+			assertSame(runtimeError, e);
+		}
+	}
+
+	@Test
+	public void testCloseStopsThreadWaitingForBuffers() throws Exception {
+		CountDownLatch sourceClosed = new CountDownLatch(1);
+		// an endless source fills all buffers and the thread waits for a free
+		// one
+		InputStream source = new InputStream() {
+			@Override
+			public int read() {
+				return 'a';
+			}
+
+			@Override
+			public void close() {
+				sourceClosed.countDown();
+			}
+		};
+		ReadAheadInputStream is = new ReadAheadInputStream(source, "test", 16, 2);
+		assertEquals('a', is.read());
+		Thread.sleep(100);
+		is.close();
+		assertTrue(sourceClosed.await(10, TimeUnit.SECONDS));
+		try {
+			is.read();
+			fail("Reading a closed stream did not fail");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testCloseStopsThreadBlockedInSource() throws Exception {
+		CountDownLatch readStarted = new CountDownLatch(1);
+		CountDownLatch sourceClosed = new CountDownLatch(1);
+		// the source blocks until its thread is interrupted
+		InputStream source = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				readStarted.countDown();
+				try {
+					new CountDownLatch(1).await();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				return -1;
+			}
+
+			@Override
+			public void close() {
+				sourceClosed.countDown();
+			}
+		};
+		ReadAheadInputStream is = new ReadAheadInputStream(source, "test", 16, 2);
+		assertTrue(readStarted.await(10, TimeUnit.SECONDS));
+		is.close();
+		assertTrue(sourceClosed.await(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testReadsSource() throws IOException {
+		byte[] data = new byte[1000];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte) i;
+		try (ReadAheadInputStream is = new ReadAheadInputStream(new ByteArrayInputStream(data), "test", 64, 3)) {
+			byte[] read = new byte[data.length];
+			int length = 0;
+			int n;
+			while ((n = is.read(read, length, Math.min(100, read.length - length))) > 0)
+				length += n;
+			assertEquals(data.length, length);
+			for (int i = 0; i < data.length; i++)
+				assertEquals(data[i], read[i]);
+			assertEquals(-1, is.read());
+		}
+	}
+}
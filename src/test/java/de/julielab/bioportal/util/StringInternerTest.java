@@ -0,0 +1,46 @@
+package de.julielab.bioportal.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class StringInternerTest {
+	@Test
+	public void testHits() {
+		StringInterner interner = new StringInterner(10, 5);
+		String a = new String("abc");
+		assertSame(a, interner.intern(a));
+		assertSame(a, interner.intern(new String("abc")));
+		assertEquals(1, interner.getHits());
+		assertEquals(1, interner.getMisses());
+		assertEquals(0.5, interner.getHitRate(), 0);
+		assertNull(interner.intern(null));
+		// too long strings are passed through and not counted
+		String longString = new String("abcdef");
+		assertSame(longString, interner.intern(longString));
+		assertNotSame(longString, interner.intern(new String("abcdef")));
+		assertEquals(2, interner.getHits() + interner.getMisses());
+		assertEquals(1, interner.size());
+	}
+
+	@Test
+	public void testBound() {
+		StringInterner interner = new StringInterner(3, 10);
+		for (int i = 0; i < 3; i++)
+			interner.intern("s" + i);
+		assertEquals(3, interner.size());
+		assertEquals(0, interner.getResets());
+		// the fourth string exceeds the maximum size and clears the pool
+		interner.intern("s3");
+		assertEquals(0, interner.size());
+		assertEquals(1, interner.getResets());
+		String s0 = new String("s0");
+		assertSame(s0, interner.intern(s0));
+		assertEquals(1, interner.size());
+		assertEquals(0, interner.getHits());
+		assertEquals(5, interner.getMisses());
+	}
+}
@@ -0,0 +1,98 @@
+package de.julielab.bioportal.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class UmlsLineFilterInputStreamTest {
+	/**
+	 * The expression of the former <tt>BioPortalToolUtils.fixUmlsFile()</tt>
+	 * that was applied to each line read by a {@link BufferedReader}.
+	 */
+	private static final Pattern BASELINE = Pattern.compile("\"\"\".*'''");
+
+	@Test
+	public void testSameLinesAsBaseline() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append("@prefix skos: <http://www.w3.org/2004/02/skos/core#> .\n");
+		sb.append("<http://x.org/C1> skos:prefLabel \"\"\"2',3'''-trichloro\"\"\"@en .\n");
+		sb.append("<http://x.org/C2> skos:prefLabel '''before''' ; skos:altLabel \"\"\"after\"\"\" .\n");
+		sb.append("<http://x.org/C3> skos:prefLabel \"\"\"ünicode '''\"\"\" .\r\n");
+		sb.append("<http://x.org/C4> skos:prefLabel \"\"\"crlf\"\"\" .\r\n");
+		sb.append("\n");
+		// lines around the end of the 64KiB read buffer of the filter
+		for (int i = 0; sb.length() < (1 << 16) + 200; i++) {
+			if (i % 7 == 0)
+				sb.append("<http://x.org/D" + i + "> skos:prefLabel \"\"\"d" + i + "'''x\"\"\" .\n");
+			else
+				sb.append("<http://x.org/D" + i + "> skos:prefLabel \"\"\"d" + i + "\"\"\" .\n");
+		}
+		// a long line whose quotes lie in different buffers
+		sb.append("\"\"\"");
+		for (int i = 0; i < 1 << 16; i++)
+			sb.append('a');
+		sb.append("''' .\n");
+		sb.append("<http://x.org/Last> skos:prefLabel \"\"\"last '''\"\"\" .\n");
+		sb.append("<http://x.org/Final> skos:prefLabel \"\"\"no line feed\"\"\" .");
+		byte[] input = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+		List<String> baselineLines = new BufferedReader(new StringReader(sb.toString())).lines()
+				.collect(Collectors.toList());
+		List<String> keptLines = baselineLines.stream().filter(l -> !BASELINE.matcher(l).find())
+				.collect(Collectors.toList());
+		int removedLines = baselineLines.size() - keptLines.size();
+		assertTrue(removedLines > 100);
+
+		// the filter keeps the line terminators of the kept lines
+		StringBuilder expected = new StringBuilder();
+		int start = 0;
+		while (start < sb.length()) {
+			int end = sb.indexOf("\n", start);
+			end = end < 0 ? sb.length() : end + 1;
+			String line = sb.substring(start, end);
+			if (!BASELINE.matcher(line.replaceAll("\r?\n$", "")).find())
+				expected.append(line);
+			start = end;
+		}
+		byte[] expectedBytes = expected.toString().getBytes(StandardCharsets.UTF_8);
+
+		// read byte by byte
+		ByteArrayOutputStream singleBytes = new ByteArrayOutputStream();
+		try (UmlsLineFilterInputStream is = new UmlsLineFilterInputStream(new ByteArrayInputStream(input))) {
+			int b;
+			while ((b = is.read()) >= 0)
+				singleBytes.write(b);
+			assertEquals(removedLines, is.getRemovedLines());
+		}
+		assertArrayEquals(expectedBytes, singleBytes.toByteArray());
+
+		// read in chunks that do not align with lines or the buffer
+		ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+		try (UmlsLineFilterInputStream is = new UmlsLineFilterInputStream(new ByteArrayInputStream(input))) {
+			byte[] b = new byte[1000];
+			int n;
+			while ((n = is.read(b, 0, 777)) >= 0)
+				chunks.write(b, 0, n);
+			assertEquals(removedLines, is.getRemovedLines());
+		}
+		assertArrayEquals(expectedBytes, chunks.toByteArray());
+
+		List<String> filteredLines = new BufferedReader(
+				new InputStreamReader(new ByteArrayInputStream(chunks.toByteArray()), StandardCharsets.UTF_8))
+						.lines().collect(Collectors.toList());
+		assertEquals(keptLines, filteredLines);
+	}
+}